@@ -11,4 +11,14 @@ public class GasTooExpensiveException extends Exception {
 	 */
 	private static final long serialVersionUID = -2581151114207596829L;
 
+	public GasTooExpensiveException() {
+	}
+
+	/**
+	 * Exception with suppression and a writable stack trace set as given, shared instances turn both off
+	 */
+	protected GasTooExpensiveException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
 }
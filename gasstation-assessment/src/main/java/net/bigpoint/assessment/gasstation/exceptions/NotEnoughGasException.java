@@ -11,4 +11,14 @@ public class NotEnoughGasException extends Exception {
 	 */
 	private static final long serialVersionUID = -4577139900795204370L;
 
+	public NotEnoughGasException() {
+	}
+
+	/**
+	 * Exception with suppression and a writable stack trace set as given, shared instances turn both off
+	 */
+	protected NotEnoughGasException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
 }
@@ -0,0 +1,29 @@
+package net.bigpoint.assessment.gasstation.exceptions;
+
+/**
+ * Lightweight {@link GasTooExpensiveException} without a stack trace.
+ * 
+ * Rejections are a normal outcome of buying gas, so filling in a stack trace for each of them is wasted work.
+ * The exception carries no state and can be cached and thrown again, {@link #INSTANCE} is shared for that.
+ * 
+ */
+public class StacklessGasTooExpensiveException extends GasTooExpensiveException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = -7920533218716427318L;
+
+	/**
+	 * Shared instance
+	 */
+	public static final StacklessGasTooExpensiveException INSTANCE = new StacklessGasTooExpensiveException();
+
+	/**
+	 * No stack trace is recorded and nothing can be suppressed or set as cause, so the shared instance never changes
+	 */
+	public StacklessGasTooExpensiveException() {
+		super(null, null, false, false);
+	}
+
+}
@@ -0,0 +1,39 @@
+package net.bigpoint.assessment.gasstation.exceptions;
+
+/**
+ * This exception is thrown whenever gas could not be bought because all gas pumps of the type were busy and the
+ * customer was not let in to wait for one, or waited too long, or past its own deadline.
+ *
+ * Like {@link StacklessNotEnoughGasException} it has no stack trace and is shared, one instance per reason.
+ *
+ */
+public class StationBusyException extends NotEnoughGasException {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 2217950583262148390L;
+
+	/**
+	 * Too many customers were already waiting
+	 */
+	public static final StationBusyException QUEUE_FULL = new StationBusyException("Customer queue is full");
+
+	/**
+	 * The customer waited longer than allowed for a gas pump
+	 */
+	public static final StationBusyException QUEUE_TIMED_OUT = new StationBusyException("Timed out waiting for a gas pump");
+
+	/**
+	 * The deadline of the customer passed or the customer was interrupted while waiting for a gas pump
+	 */
+	public static final StationBusyException TIMED_OUT = new StationBusyException("Deadline passed waiting for a gas pump");
+
+	/**
+	 * No stack trace is recorded and nothing can be suppressed or set as cause, so the shared instances never change
+	 */
+	protected StationBusyException(String reason) {
+		super(reason, null, false, false);
+	}
+
+}
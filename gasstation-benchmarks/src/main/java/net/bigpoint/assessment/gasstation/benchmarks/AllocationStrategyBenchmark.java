@@ -0,0 +1,131 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+import net.bigpoint.assessment.gasstation.implementation.StandardPumpAllocationStrategy;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * The pump allocation strategies serving the same seeded stream of customers on 8 threads. Demand slightly exceeds
+ * the gas in the gas pumps so fragmented remainders show up as cancellations , reported next to the time with the
+ * sales. Gas is pumped for real , amounts are scaled down to keep the sleeps of GasPump.pumpGas in the milliseconds
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AllocationStrategyBenchmark {
+
+    private final static int GAS_PUMPS_PER_TYPE = 4;
+    private final static double GAS_PUMP_LITRES = 6.0;
+
+    private final static int CUSTOMERS = 3000;
+    private final static int CUSTOMER_THREADS = 8;
+
+    //Customer amounts between 0.005 and 0.05 litres , 0 to 5 milliseconds of pumping
+    private final static double MIN_LITRES = 0.005;
+    private final static double MAX_LITRES = 0.05;
+
+    private final static long SEED = 42L;
+
+    @Param({"BLOCKING", "TRY_LOCK"})
+    public PumpSelectionMode selectionMode;
+
+    @Param({"FIRST_FIT", "BEST_FIT", "MOST_REMAINING"})
+    public StandardPumpAllocationStrategy allocationStrategy;
+
+    private GasStationManager stationManager;
+
+    private ExecutorService executorService;
+
+    /**
+     * Sales and cancellations of an iteration , reported by JMH next to the time
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Outcome {
+
+        public long sales;
+
+        public long cancellations;
+
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+
+        stationManager = new GasStationManager(selectionMode, allocationStrategy);
+
+        for(GasType gasType : GasType.values()){
+            stationManager.setPrice(gasType, 1.0);
+
+            for(int i = 0; i < GAS_PUMPS_PER_TYPE; i++){
+                stationManager.addGasPump(new GasPump(gasType, GAS_PUMP_LITRES));
+            }
+        }
+
+        executorService = Executors.newFixedThreadPool(CUSTOMER_THREADS);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public void serveCustomers(Outcome outcome) throws InterruptedException {
+
+        Random random = new Random(SEED);
+
+        for(int i = 0; i < CUSTOMERS; i++){
+
+            final GasType gasType = GasType.values()[random.nextInt(GasType.values().length)];
+            final double amountInLitres = MIN_LITRES + random.nextDouble() * (MAX_LITRES - MIN_LITRES);
+
+            executorService.execute(new Runnable() {
+                public void run() {
+                    try {
+                        stationManager.buyGas(gasType, amountInLitres, 1.0);
+                    } catch (NotEnoughGasException ex) {
+                        // counted by the station
+                    } catch (GasTooExpensiveException ex) {
+                        // counted by the station
+                    }
+                }
+            });
+        }
+
+        executorService.shutdown();
+        executorService.awaitTermination(10, TimeUnit.MINUTES);
+
+        outcome.sales = stationManager.getNumberOfSales();
+        outcome.cancellations = stationManager.getNumberOfCancellationsNoGas();
+    }
+
+}
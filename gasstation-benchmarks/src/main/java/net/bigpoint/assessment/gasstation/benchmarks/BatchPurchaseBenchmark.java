@@ -0,0 +1,88 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+import net.bigpoint.assessment.gasstation.implementation.PurchaseRequest;
+import net.bigpoint.assessment.gasstation.implementation.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * buyGasBatch against one tryBuyGas call per request of the same seeded batch. Both report the time of a whole
+ * batch , divide by batchSize for the time per request
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BatchPurchaseBenchmark {
+
+    private final static long SEED = 42L;
+
+    @Param({"1", "10", "50", "200"})
+    public int batchSize;
+
+    private GasStationManager stationManager;
+
+    private List<PurchaseRequest> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        stationManager = Stations.create(PumpSelectionMode.BLOCKING, 4, Stations.GAS_PUMP_LITRES);
+
+        Random random = new Random(SEED);
+        batch = new ArrayList<PurchaseRequest>(batchSize);
+
+        for(int i = 0; i < batchSize; i++){
+            GasType gasType = GasType.values()[random.nextInt(GasType.values().length)];
+            batch.add(new PurchaseRequest(gasType, Stations.LITRES, Stations.PRICE));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public int tryBuyGasOneByOne() {
+
+        int sold = 0;
+
+        for(PurchaseRequest request : batch){
+            if(stationManager.tryBuyGas(request.getType(), request.getAmountInLiters(), request.getMaxPricePerLiter()).isSold()){
+                sold++;
+            }
+        }
+
+        return sold;
+    }
+
+    @Benchmark
+    public List<PurchaseResult> buyGasBatch() {
+        return stationManager.buyGasBatch(batch);
+    }
+
+}
@@ -0,0 +1,96 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Throughput of successful purchases by 1 , 4 and 16 customer threads , for different numbers of gas pumps ,
+ * gas type mixes and selection modes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class BuyGasBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int gasPumpsPerType;
+
+    @Param({"REGULAR", "ALL"})
+    public String typeMix;
+
+    @Param({"BLOCKING", "TRY_LOCK"})
+    public PumpSelectionMode selectionMode;
+
+    private GasStationManager stationManager;
+
+    private GasType[] gasTypes;
+
+    /**
+     * Gas type of the next purchase of a customer thread
+     */
+    @State(Scope.Thread)
+    public static class Customer {
+
+        int purchases;
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stationManager = Stations.create(selectionMode, gasPumpsPerType, Stations.GAS_PUMP_LITRES);
+        gasTypes = Stations.gasTypes(typeMix);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public double buyGas1Thread(Customer customer) throws NotEnoughGasException, GasTooExpensiveException {
+        return buyGas(customer);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public double buyGas4Threads(Customer customer) throws NotEnoughGasException, GasTooExpensiveException {
+        return buyGas(customer);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public double buyGas16Threads(Customer customer) throws NotEnoughGasException, GasTooExpensiveException {
+        return buyGas(customer);
+    }
+
+    private double buyGas(Customer customer) throws NotEnoughGasException, GasTooExpensiveException {
+        GasType gasType = gasTypes[customer.purchases++ % gasTypes.length];
+        return stationManager.buyGas(gasType, Stations.LITRES, Stations.PRICE);
+    }
+
+}
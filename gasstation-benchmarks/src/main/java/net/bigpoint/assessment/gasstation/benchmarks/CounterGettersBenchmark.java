@@ -0,0 +1,103 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+import net.bigpoint.assessment.gasstation.implementation.PurchaseResult;
+import net.bigpoint.assessment.gasstation.implementation.StationStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Cost of the counter getters on their own and while customers keep buying gas , which updates the counters
+ * being summed
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Group)
+public class CounterGettersBenchmark {
+
+    /**
+     * Sales made before measuring , so the counters are not empty
+     */
+    private final static int WARMUP_SALES = 100000;
+
+    @Param({"4", "64"})
+    public int gasPumpsPerType;
+
+    private GasStationManager stationManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        stationManager = Stations.create(PumpSelectionMode.BLOCKING, gasPumpsPerType, Stations.GAS_PUMP_LITRES);
+
+        for(int i = 0; i < WARMUP_SALES; i++){
+            stationManager.tryBuyGas(GasType.values()[i % GasType.values().length], Stations.LITRES, Stations.PRICE);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    @Group("getRevenue")
+    public double getRevenue() {
+        return stationManager.getRevenue();
+    }
+
+    @Benchmark
+    @Group("getNumberOfSales")
+    public int getNumberOfSales() {
+        return stationManager.getNumberOfSales();
+    }
+
+    @Benchmark
+    @Group("getNumberOfCancellationsNoGas")
+    public int getNumberOfCancellationsNoGas() {
+        return stationManager.getNumberOfCancellationsNoGas();
+    }
+
+    @Benchmark
+    @Group("getStatistics")
+    public StationStatistics getStatistics() {
+        return stationManager.getStatistics();
+    }
+
+    @Benchmark
+    @Group("getRevenueWhileBuying")
+    @GroupThreads(1)
+    public double getRevenueWhileBuying() {
+        return stationManager.getRevenue();
+    }
+
+    @Benchmark
+    @Group("getRevenueWhileBuying")
+    @GroupThreads(3)
+    public PurchaseResult buyGas() {
+        return stationManager.tryBuyGas(GasType.REGULAR, Stations.LITRES, Stations.PRICE);
+    }
+
+}
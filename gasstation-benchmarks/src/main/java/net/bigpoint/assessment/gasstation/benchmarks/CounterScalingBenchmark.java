@@ -0,0 +1,65 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * The revenue and sales counters of GasStationManager - a shared AtomicLong against a striped LongAdder , updated by
+ * 1 thread and by a thread per available processor
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class CounterScalingBenchmark {
+
+    /**
+     * Revenue of a sale in minor currency units
+     */
+    private final static long SALE_IN_MINOR_UNITS = 1665;
+
+    private final AtomicLong atomicRevenue = new AtomicLong();
+
+    private final LongAdder stripedRevenue = new LongAdder();
+
+    @Benchmark
+    @Threads(1)
+    public long atomicLong1Thread() {
+        return atomicRevenue.addAndGet(SALE_IN_MINOR_UNITS);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long atomicLongAllThreads() {
+        return atomicRevenue.addAndGet(SALE_IN_MINOR_UNITS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void longAdder1Thread() {
+        stripedRevenue.add(SALE_IN_MINOR_UNITS);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void longAdderAllThreads() {
+        stripedRevenue.add(SALE_IN_MINOR_UNITS);
+    }
+
+}
@@ -0,0 +1,79 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * A surge of 64 customer threads at 2 gas pumps , sampled from arrival to the price being paid or the customer being
+ * turned away. Without a queue the customers race for the gas pump locks , with a queue they are served in arrival
+ * order and the surplus is turned away. Gas is pumped for real , 2 milliseconds per purchase
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(64)
+@State(Scope.Benchmark)
+public class CustomerQueueBenchmark {
+
+    private final static int GAS_PUMPS = 2;
+
+    private final static double LITRES = 0.02;
+
+    private final static int MAX_QUEUE_DEPTH = 16;
+    private final static long QUEUE_TIMEOUT_MILLIS = 50;
+
+    @Param({"NONE", "FIFO"})
+    public String queue;
+
+    private GasStationManager stationManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        GasStationManager.Builder builder = GasStationManager.builder();
+
+        if("FIFO".equals(queue)){
+            builder.customerQueue(MAX_QUEUE_DEPTH, QUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        stationManager = builder.build();
+        stationManager.setPrice(GasType.REGULAR, 1.0);
+
+        for(int i = 0; i < GAS_PUMPS; i++){
+            stationManager.addGasPump(new GasPump(GasType.REGULAR, Stations.GAS_PUMP_LITRES));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public PurchaseResult tryBuyGas() {
+        return stationManager.tryBuyGas(GasType.REGULAR, LITRES, 1.0);
+    }
+
+}
@@ -0,0 +1,119 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.ExecutionMode;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Wall time of serving 10k concurrent customers - customers calling buyGas on a fixed pool of 200 platform threads
+ * against buyGasAsync with dispatcher lanes and with a virtual thread per purchase. Gas is pumped for real ,
+ * 5 milliseconds per customer
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ExecutionModeBenchmark {
+
+    private final static int CUSTOMERS = 10000;
+
+    private final static int FIXED_POOL_THREADS = 200;
+
+    private final static int GAS_PUMPS_PER_TYPE = 300;
+
+    private final static double LITRES = 0.05;
+
+    /**
+     * FIXED_POOL for buyGas on the fixed pool , else the execution mode of buyGasAsync
+     */
+    @Param({"FIXED_POOL", "DISPATCHER_LANES", "VIRTUAL_THREADS"})
+    public String customers;
+
+    private GasStationManager stationManager;
+
+    private ExecutorService executorService;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+
+        boolean fixedPool = "FIXED_POOL".equals(customers);
+
+        stationManager = GasStationManager.builder()
+                .selectionMode(PumpSelectionMode.TRY_LOCK)
+                .executionMode(fixedPool ? ExecutionMode.DISPATCHER_LANES : ExecutionMode.valueOf(customers))
+                .build();
+
+        for(GasType gasType : GasType.values()){
+            stationManager.setPrice(gasType, 1.0);
+
+            for(int i = 0; i < GAS_PUMPS_PER_TYPE; i++){
+                stationManager.addGasPump(new GasPump(gasType, 1000));
+            }
+        }
+
+        executorService = fixedPool ? Executors.newFixedThreadPool(FIXED_POOL_THREADS) : null;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+
+        if(executorService != null){
+            executorService.shutdown();
+        }
+
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public void serveCustomers() {
+
+        List<CompletableFuture<?>> served = new ArrayList<CompletableFuture<?>>(CUSTOMERS);
+
+        for(int i = 0; i < CUSTOMERS; i++){
+
+            final GasType gasType = GasType.values()[i % GasType.values().length];
+
+            if(executorService == null){
+                served.add(stationManager.buyGasAsync(gasType, LITRES, 1.0));
+                continue;
+            }
+
+            served.add(CompletableFuture.runAsync(() -> {
+                try {
+                    stationManager.buyGas(gasType, LITRES, 1.0);
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }, executorService));
+        }
+
+        CompletableFuture.allOf(served.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+}
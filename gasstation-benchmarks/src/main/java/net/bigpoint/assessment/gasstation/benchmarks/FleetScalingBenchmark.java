@@ -0,0 +1,103 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.implementation.GasStationFleet;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Purchases at random gas stations of a fleet of 10k by 1 , 4 and 16 customer threads , and summing the sales of the
+ * whole fleet. The throughput per thread should stay flat up to the number of processors
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class FleetScalingBenchmark {
+
+    private final static int STATIONS = 10000;
+
+    private GasStationFleet fleet;
+
+    private List<GasStationManager> stations;
+
+    private String[] stationIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        fleet = new GasStationFleet();
+        stations = new ArrayList<GasStationManager>(STATIONS);
+        stationIds = new String[STATIONS];
+
+        for(int i = 0; i < STATIONS; i++){
+
+            GasStationManager stationManager = Stations.create(PumpSelectionMode.BLOCKING, 1, Stations.GAS_PUMP_LITRES);
+
+            stationIds[i] = "station-" + i;
+            stations.add(stationManager);
+            fleet.addStation(stationIds[i], stationManager);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for(GasStationManager stationManager : stations){
+            stationManager.shutdown();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public double buyGas1Thread() throws NotEnoughGasException, GasTooExpensiveException {
+        return buyGas();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public double buyGas4Threads() throws NotEnoughGasException, GasTooExpensiveException {
+        return buyGas();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public double buyGas16Threads() throws NotEnoughGasException, GasTooExpensiveException {
+        return buyGas();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public long numberOfSales() {
+        return fleet.getNumberOfSales();
+    }
+
+    private double buyGas() throws NotEnoughGasException, GasTooExpensiveException {
+        String stationId = stationIds[ThreadLocalRandom.current().nextInt(STATIONS)];
+        return fleet.buyGas(stationId, GasType.REGULAR, Stations.LITRES, Stations.PRICE);
+    }
+
+}
@@ -0,0 +1,109 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PurchaseResult;
+import net.bigpoint.assessment.gasstation.implementation.TransactionJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Cost of the journal on the purchase path - purchases without a journal and with a journal in a temporary
+ * directory , committed in groups by the journal thread. The journal is compacted between iterations so the
+ * directory stays small
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+    /**
+     * Segments small enough for compaction to have full segments to fold
+     */
+    final static int RECORDS_PER_SEGMENT = 1 << 18;
+
+    @Param({"OFF", "ON"})
+    public String journal;
+
+    private Path directory;
+
+    private TransactionJournal transactionJournal;
+
+    private GasStationManager stationManager;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        GasStationManager.Builder builder = GasStationManager.builder();
+
+        if("ON".equals(journal)){
+            directory = Files.createTempDirectory("gas-station-journal");
+            transactionJournal = open(directory);
+            builder.journal(transactionJournal);
+        }
+
+        stationManager = Stations.create(builder, 1, Stations.GAS_PUMP_LITRES);
+    }
+
+    @TearDown(Level.Iteration)
+    public void compact() throws IOException {
+        if(transactionJournal != null){
+            transactionJournal.compact();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+
+        if(transactionJournal != null){
+            transactionJournal.awaitCommitted();
+            transactionJournal.close();
+            delete(directory);
+        }
+
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public PurchaseResult tryBuyGas() {
+        return stationManager.tryBuyGas(GasType.REGULAR, Stations.LITRES, Stations.PRICE);
+    }
+
+    static TransactionJournal open(Path directory) throws IOException {
+        return new TransactionJournal(directory, RECORDS_PER_SEGMENT,
+                TransactionJournal.DEFAULT_COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    static void delete(Path directory) throws IOException {
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for(Path file : files){
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+}
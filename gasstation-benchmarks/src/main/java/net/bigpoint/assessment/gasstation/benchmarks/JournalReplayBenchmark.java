@@ -0,0 +1,94 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.TransactionJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Restarting a gas station from a journal of 2 million purchases , replaying every segment and replaying the
+ * checkpoint written by compaction
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(2)
+@State(Scope.Benchmark)
+public class JournalReplayBenchmark {
+
+    private final static int PURCHASES = 2000000;
+
+    @Param({"false", "true"})
+    public boolean compacted;
+
+    private Path directory;
+
+    private TransactionJournal journal;
+
+    private GasStationManager restored;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+
+        directory = Files.createTempDirectory("gas-station-journal");
+
+        TransactionJournal written = JournalBenchmark.open(directory);
+        GasStationManager stationManager = Stations.create(GasStationManager.builder().journal(written), 1, Stations.GAS_PUMP_LITRES);
+
+        for(int i = 0; i < PURCHASES; i++){
+            stationManager.tryBuyGas(GasType.REGULAR, Stations.LITRES, Stations.PRICE);
+        }
+
+        written.awaitCommitted();
+
+        if(compacted){
+            written.compact();
+        }
+
+        written.close();
+        stationManager.shutdown();
+    }
+
+    @Setup(Level.Iteration)
+    public void openJournal() throws IOException {
+        journal = JournalBenchmark.open(directory);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeJournal() throws IOException {
+        journal.close();
+        restored.shutdown();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        JournalBenchmark.delete(directory);
+    }
+
+    @Benchmark
+    public GasStationManager replay() {
+        restored = GasStationManager.builder().journal(journal).build();
+        return restored;
+    }
+
+}
@@ -0,0 +1,80 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.implementation.DispenseMode;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Pump lookup of buyGas - the number of gas pumps of other gas types grows while the number of gas pumps of the
+ * requested gas type stays the same , so the time per purchase should stay flat
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PumpLookupBenchmark {
+
+    /**
+     * Gas pumps of the requested gas type
+     */
+    private final static int REGULAR_GAS_PUMPS = 2;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int otherGasPumps;
+
+    private GasStationManager stationManager;
+
+    /**
+     * Gas station where the regular gas pumps are added last , the worst case for a linear scan
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        stationManager = GasStationManager.builder().dispenseMode(DispenseMode.INSTANT).build();
+
+        for(GasType gasType : GasType.values()){
+            stationManager.setPrice(gasType, Stations.PRICE);
+        }
+
+        for(int i = 0; i < otherGasPumps; i++){
+            stationManager.addGasPump(new GasPump(i % 2 == 0 ? GasType.SUPER : GasType.DIESEL, 1000));
+        }
+
+        for(int i = 0; i < REGULAR_GAS_PUMPS; i++){
+            stationManager.addGasPump(new GasPump(GasType.REGULAR, Stations.GAS_PUMP_LITRES));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public double buyGas() throws NotEnoughGasException, GasTooExpensiveException {
+        return stationManager.buyGas(GasType.REGULAR, Stations.LITRES, Stations.PRICE);
+    }
+
+}
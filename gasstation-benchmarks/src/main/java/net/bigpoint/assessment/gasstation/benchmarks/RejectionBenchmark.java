@@ -0,0 +1,114 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+import net.bigpoint.assessment.gasstation.implementation.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Cost of turning customers away , gas too expensive and not enough gas , thrown by buyGas and returned by
+ * tryBuyGas , against a freshly constructed exception thrown from some call depth. Rejected purchases never touch
+ * the gas of a gas pump so the station stays the same all run
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RejectionBenchmark {
+
+    /**
+     * More than any gas pump holds
+     */
+    private final static double TOO_MANY_LITRES = 20;
+
+    /**
+     * Call depth the fresh exception is thrown from , close to a caller inside a web or game framework
+     */
+    private final static int CALL_DEPTH = 50;
+
+    @Param({"1", "16"})
+    public int gasPumpsPerType;
+
+    private GasStationManager stationManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stationManager = Stations.create(PumpSelectionMode.BLOCKING, gasPumpsPerType, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public Exception buyGasTooExpensive() throws NotEnoughGasException {
+        try {
+            stationManager.buyGas(GasType.REGULAR, Stations.LITRES, Stations.PRICE / 2);
+            throw new IllegalStateException("Expected GasTooExpensiveException");
+        } catch (GasTooExpensiveException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Exception buyGasNoGas() throws GasTooExpensiveException {
+        try {
+            stationManager.buyGas(GasType.REGULAR, TOO_MANY_LITRES, Stations.PRICE);
+            throw new IllegalStateException("Expected NotEnoughGasException");
+        } catch (NotEnoughGasException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public Exception freshException() {
+        try {
+            throwFromDepth(CALL_DEPTH);
+            throw new IllegalStateException("Expected GasTooExpensiveException");
+        } catch (GasTooExpensiveException ex) {
+            return ex;
+        }
+    }
+
+    @Benchmark
+    public PurchaseResult tryBuyGasTooExpensive() {
+        return stationManager.tryBuyGas(GasType.REGULAR, Stations.LITRES, Stations.PRICE / 2);
+    }
+
+    @Benchmark
+    public PurchaseResult tryBuyGasNoGas() {
+        return stationManager.tryBuyGas(GasType.REGULAR, TOO_MANY_LITRES, Stations.PRICE);
+    }
+
+    private static void throwFromDepth(int depth) throws GasTooExpensiveException {
+        if(depth == 0){
+            throw new GasTooExpensiveException();
+        }
+        throwFromDepth(depth - 1);
+    }
+
+}
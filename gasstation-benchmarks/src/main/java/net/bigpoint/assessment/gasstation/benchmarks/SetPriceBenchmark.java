@@ -0,0 +1,86 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+import net.bigpoint.assessment.gasstation.implementation.PurchaseResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Price changes competing with each other and with purchases reading the prices. Prices alternate between two
+ * values every customer can afford , so every purchase is a sale
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Group)
+public class SetPriceBenchmark {
+
+    private GasStationManager stationManager;
+
+    /**
+     * Price changes of a thread
+     */
+    @State(Scope.Thread)
+    public static class PriceChanges {
+
+        int changes;
+
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        stationManager = Stations.create(PumpSelectionMode.BLOCKING, 4, Stations.GAS_PUMP_LITRES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    @Group("setPriceOnly")
+    @GroupThreads(4)
+    public void setPriceContended(PriceChanges priceChanges) {
+        changePrice(priceChanges);
+    }
+
+    @Benchmark
+    @Group("setPriceWhileBuying")
+    @GroupThreads(1)
+    public void setPrice(PriceChanges priceChanges) {
+        changePrice(priceChanges);
+    }
+
+    @Benchmark
+    @Group("setPriceWhileBuying")
+    @GroupThreads(3)
+    public PurchaseResult buyGas() {
+        return stationManager.tryBuyGas(GasType.REGULAR, Stations.LITRES, Stations.PRICE);
+    }
+
+    private void changePrice(PriceChanges priceChanges) {
+        GasType gasType = GasType.values()[priceChanges.changes % GasType.values().length];
+        stationManager.setPrice(gasType, (priceChanges.changes++ & 1) == 0 ? Stations.PRICE : Stations.PRICE / 2);
+    }
+
+}
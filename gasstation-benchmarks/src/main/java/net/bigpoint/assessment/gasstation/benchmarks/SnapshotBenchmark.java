@@ -0,0 +1,90 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.DispenseMode;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.StationSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Snapshots of gas stations with thousands of gas pumps that have been selling for a while - exporting a snapshot
+ * and restoring a gas station from it. The size of the snapshot is printed when the trial starts
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    private final static int SALES_PER_GAS_PUMP = 20;
+
+    @Param({"1000", "5000", "20000"})
+    public int gasPumps;
+
+    private GasStationManager stationManager;
+
+    private StationSnapshot snapshot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        stationManager = GasStationManager.builder().dispenseMode(DispenseMode.INSTANT).build();
+
+        for(GasType gasType : GasType.values()){
+            stationManager.setPrice(gasType, Stations.PRICE);
+        }
+
+        for(int i = 0; i < gasPumps; i++){
+            stationManager.addGasPump(new GasPump(GasType.values()[i % GasType.values().length], 0.1));
+        }
+
+        //First fit fills one gas pump after the other
+        for(int i = 0; i < gasPumps * SALES_PER_GAS_PUMP; i++){
+            stationManager.tryBuyGas(GasType.values()[i % GasType.values().length], 0.001 * (1 + i % 7), Stations.PRICE);
+        }
+
+        snapshot = stationManager.export();
+
+        System.out.printf("%n%d gas pumps : %d bytes (%.1f per gas pump)%n", gasPumps, snapshot.getSize(),
+                (double) snapshot.getSize() / gasPumps);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public StationSnapshot export() {
+        return stationManager.export();
+    }
+
+    /**
+     * The restored gas station starts no threads until it serves an asynchronous purchase , so it is left to the
+     * garbage collector
+     */
+    @Benchmark
+    public GasStationManager restore() {
+        return GasStationManager.restore(snapshot);
+    }
+
+}
@@ -0,0 +1,84 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.implementation.DispenseMode;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.PumpSelectionMode;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Gas stations for the benchmarks. Gas is dispensed instantly so the benchmarks measure the gas station and not
+ * the sleep of GasPump.pumpGas
+ */
+final class Stations {
+
+    /**
+     * Price of every gas type
+     */
+    final static double PRICE = 1.5;
+
+    /**
+     * Litres of a purchase , small enough for the gas pumps never to run dry during a run
+     */
+    final static double LITRES = 0.001;
+
+    /**
+     * Litres of every gas pump
+     */
+    final static double GAS_PUMP_LITRES = 1e9;
+
+    private Stations() {
+    }
+
+    /**
+     * Gas station with the same number of gas pumps for every gas type
+     *
+     * @param selectionMode
+     * @param gasPumpsPerType
+     * @param litres gas of every gas pump
+     * @return gasStationManager
+     */
+    static GasStationManager create(PumpSelectionMode selectionMode, int gasPumpsPerType, double litres) {
+        return create(GasStationManager.builder().selectionMode(selectionMode), gasPumpsPerType, litres);
+    }
+
+    /**
+     * Gas station built by the given builder with the same number of gas pumps for every gas type
+     *
+     * @param builder
+     * @param gasPumpsPerType
+     * @param litres gas of every gas pump
+     * @return gasStationManager
+     */
+    static GasStationManager create(GasStationManager.Builder builder, int gasPumpsPerType, double litres) {
+
+        GasStationManager stationManager = builder
+                .dispenseMode(DispenseMode.INSTANT)
+                .build();
+
+        for(GasType gasType : GasType.values()){
+
+            stationManager.setPrice(gasType, PRICE);
+
+            for(int i = 0; i < gasPumpsPerType; i++){
+                stationManager.addGasPump(new GasPump(gasType, litres));
+            }
+        }
+
+        return stationManager;
+    }
+
+    /**
+     * Gas types customers ask for
+     *
+     * @param typeMix REGULAR for a single gas type , ALL for every gas type in turn
+     * @return gasTypes
+     */
+    static GasType[] gasTypes(String typeMix) {
+        return "ALL".equals(typeMix) ? GasType.values() : new GasType[] {GasType.valueOf(typeMix)};
+    }
+
+}
@@ -0,0 +1,83 @@
+package net.bigpoint.assessment.gasstation.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.implementation.GasStationManager;
+import net.bigpoint.assessment.gasstation.implementation.TransactionLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Purchases with the transaction log off and on. The log writes to a logger whose handler discards the formatted
+ * records , so only the cost of the log itself is measured
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class TransactionLogBenchmark {
+
+    @Param({"OFF", "ON"})
+    public String transactionLog;
+
+    private TransactionLog log;
+
+    private GasStationManager stationManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        log = TransactionLog.DISABLED;
+
+        if("ON".equals(transactionLog)){
+
+            Logger logger = Logger.getLogger(TransactionLogBenchmark.class.getName());
+            logger.setUseParentHandlers(false);
+            logger.addHandler(new Handler() {
+                public void publish(LogRecord record) {
+                }
+                public void flush() {
+                }
+                public void close() {
+                }
+            });
+
+            log = new TransactionLog(logger);
+        }
+
+        stationManager = Stations.create(GasStationManager.builder().transactionLog(log), 1, Stations.GAS_PUMP_LITRES);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        log.close();
+        stationManager.shutdown();
+    }
+
+    @Benchmark
+    public double buyGas() throws NotEnoughGasException, GasTooExpensiveException {
+        return stationManager.buyGas(GasType.REGULAR, Stations.LITRES, Stations.PRICE);
+    }
+
+}
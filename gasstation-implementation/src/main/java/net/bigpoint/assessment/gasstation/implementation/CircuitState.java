@@ -0,0 +1,27 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * State of the circuit breaker of a gas pump , see GasStationManager.Builder.circuitBreaker
+ */
+public enum CircuitState {
+
+    /**
+     * Customers are served by the gas pump as usual
+     */
+    CLOSED,
+
+    /**
+     * The gas pump dispensed too slowly or failed too often in a row , customers are served by the other gas pumps
+     * of its type as long as they have enough gas
+     */
+    OPEN,
+
+    /**
+     * One customer is served by the gas pump to probe whether it recovered
+     */
+    HALF_OPEN;
+
+}
@@ -0,0 +1,141 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Bounded first in first out queue of the customers of a gas type waiting for a gas pump. One permit per gas pump ,
+ * a customer holds a permit from claiming a gas pump until served. Only customers who find no free gas pump wait ,
+ * those beyond the maximum depth are turned away at once and those waiting longer than the timeout give up
+ */
+final class CustomerQueue {
+
+    /**
+     * Outcome of entering the queue
+     */
+    enum Admission {
+
+        /**
+         * Holds a permit , has to leave the queue when done
+         */
+        ADMITTED,
+
+        /**
+         * Turned away , the maximum depth was reached
+         */
+        QUEUE_FULL,
+
+        /**
+         * Gave up waiting at the timeout of the queue
+         */
+        TIMED_OUT,
+
+        /**
+         * Gave up waiting at the deadline of the customer , before the timeout of the queue
+         */
+        DEADLINE_PASSED,
+
+        /**
+         * Gave up waiting when interrupted , the interrupt status is kept
+         */
+        INTERRUPTED;
+
+    }
+
+    /**
+     * Permits of the gas pumps not claimed by a customer , handed out in arrival order
+     */
+    private final Semaphore gasPumpsFree = new Semaphore(0, true);
+
+    /**
+     * Customers waiting for a permit
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    private final int maxDepth;
+
+    private final long timeoutNanos;
+
+    /**
+     * Queue of at most maxDepth waiting customers , each waiting at most timeoutNanos
+     *
+     * @param maxDepth
+     * @param timeoutNanos
+     */
+    CustomerQueue(int maxDepth, long timeoutNanos) {
+        this.maxDepth = maxDepth;
+        this.timeoutNanos = timeoutNanos;
+    }
+
+    /**
+     * One more gas pump serves the queue
+     */
+    void addGasPump() {
+        gasPumpsFree.release();
+    }
+
+    /**
+     * Wait for a permit in arrival order. An interrupted customer gives up , the interrupt status is kept
+     *
+     * @return admission
+     */
+    Admission enter() {
+        return enter(Long.MAX_VALUE);
+    }
+
+    /**
+     * Wait for a permit in arrival order , at most maxWaitNanos or the timeout of the queue whichever is shorter.
+     * An interrupted customer gives up , the interrupt status is kept
+     *
+     * @param maxWaitNanos
+     * @return admission
+     */
+    Admission enter(long maxWaitNanos) {
+
+        //Served at once while a gas pump is free and nobody waits ahead , not counted against the depth
+        if(!gasPumpsFree.hasQueuedThreads() && gasPumpsFree.tryAcquire()){
+            return Admission.ADMITTED;
+        }
+
+        //Turned away without waiting
+        if(waiting.incrementAndGet() > maxDepth){
+            waiting.decrementAndGet();
+            return Admission.QUEUE_FULL;
+        }
+
+        try {
+            //Timed tryAcquire keeps the arrival order , the untimed one would jump the queue
+            if(gasPumpsFree.tryAcquire(Math.min(timeoutNanos, maxWaitNanos), TimeUnit.NANOSECONDS)){
+                return Admission.ADMITTED;
+            }
+
+            return maxWaitNanos < timeoutNanos ? Admission.DEADLINE_PASSED : Admission.TIMED_OUT;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return Admission.INTERRUPTED;
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    /**
+     * Give the permit back after being served
+     */
+    void leave() {
+        gasPumpsFree.release();
+    }
+
+    /**
+     * Get the number of customers waiting for a gas pump
+     *
+     * @return (int) depth
+     */
+    int getDepth() {
+        return waiting.get();
+    }
+
+}
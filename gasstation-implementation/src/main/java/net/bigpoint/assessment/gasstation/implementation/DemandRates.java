@@ -0,0 +1,92 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Recent demand per gas type , fed by the gas station on every sale and cancellation because of gas too expensive
+ * while a PricingEngine is attached
+ */
+final class DemandRates {
+
+    /**
+     * Buckets of every window , the rates move on by a sixtieth of the window
+     */
+    private final static int BUCKETS = 60;
+
+    /**
+     * Milli litres sold per gas type ordinal
+     */
+    private final SlidingWindowRate[] milliLitresSold;
+
+    /**
+     * Sales per gas type ordinal
+     */
+    private final SlidingWindowRate[] sales;
+
+    /**
+     * Cancellations because of gas too expensive per gas type ordinal
+     */
+    private final SlidingWindowRate[] cancellationsTooExpensive;
+
+    DemandRates(long window, TimeUnit unit) {
+
+        int gasTypes = GasType.values().length;
+
+        this.milliLitresSold = new SlidingWindowRate[gasTypes];
+        this.sales = new SlidingWindowRate[gasTypes];
+        this.cancellationsTooExpensive = new SlidingWindowRate[gasTypes];
+
+        for(int i = 0; i < gasTypes; i++){
+            milliLitresSold[i] = new SlidingWindowRate(window, unit, BUCKETS);
+            sales[i] = new SlidingWindowRate(window, unit, BUCKETS);
+            cancellationsTooExpensive[i] = new SlidingWindowRate(window, unit, BUCKETS);
+        }
+    }
+
+    /**
+     * Count a sale or cancellation , other kinds are ignored
+     *
+     * @param kind
+     * @param type
+     * @param milliLitres
+     */
+    void record(TransactionLog.Kind kind, GasType type, long milliLitres) {
+
+        if(kind == TransactionLog.Kind.SALE){
+            long now = System.nanoTime();
+            milliLitresSold[type.ordinal()].record(milliLitres, now);
+            sales[type.ordinal()].record(1, now);
+        } else if(kind == TransactionLog.Kind.CANCELLED_TOO_EXPENSIVE){
+            cancellationsTooExpensive[type.ordinal()].record(1);
+        }
+    }
+
+    /**
+     * @param type
+     * @return the milli litres sold over the window
+     */
+    SlidingWindowRate getMilliLitresSold(GasType type) {
+        return milliLitresSold[type.ordinal()];
+    }
+
+    /**
+     * @param type
+     * @return the sales over the window
+     */
+    SlidingWindowRate getSales(GasType type) {
+        return sales[type.ordinal()];
+    }
+
+    /**
+     * @param type
+     * @return the cancellations because of gas too expensive over the window
+     */
+    SlidingWindowRate getCancellationsTooExpensive(GasType type) {
+        return cancellationsTooExpensive[type.ordinal()];
+    }
+
+}
@@ -0,0 +1,23 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * How GasStationManager dispenses gas from a gas pump
+ */
+public enum DispenseMode {
+    
+    /**
+     * Gas is pumped in real time , GasPump.pumpGas sleeps 100 milliseconds per litre
+     */
+    TIMED,
+    
+    /**
+     * Gas is not pumped from the GasPump , sales are only counted in the ledger of the gas station , for simulations
+     * running on a virtual clock and benchmarks. GasPump.getRemainingAmount does not see these sales , read the gas
+     * left from GasStationManager.getInventory or getAvailableLitres
+     */
+    INSTANT;
+    
+}
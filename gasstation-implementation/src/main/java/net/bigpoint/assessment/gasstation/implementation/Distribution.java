@@ -0,0 +1,81 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.SplittableRandom;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Distribution of a value of a simulated customer , e.g. the seconds until the next customer arrives or the
+ * litres a customer wants. Samples are drawn from the random numbers of the simulation so runs with the same seed
+ * draw the same values
+ */
+public abstract class Distribution {
+    
+    /**
+     * Draw a value
+     * 
+     * @param random
+     * @return (double) value
+     */
+    public abstract double sample(SplittableRandom random);
+    
+    /**
+     * Always the same value
+     * 
+     * @param value
+     * @return distribution
+     */
+    public static Distribution fixed(final double value) {
+        
+        return new Distribution() {
+            @Override
+            public double sample(SplittableRandom random) {
+                return value;
+            }
+        };
+    }
+    
+    /**
+     * Values spread evenly from minimum up to maximum
+     * 
+     * @param minimum
+     * @param maximum
+     * @return distribution
+     */
+    public static Distribution uniform(final double minimum, final double maximum) {
+        
+        if(!(minimum <= maximum)){
+            throw new InvalidParameterException();
+        }
+        
+        return new Distribution() {
+            @Override
+            public double sample(SplittableRandom random) {
+                return minimum + random.nextDouble() * (maximum - minimum);
+            }
+        };
+    }
+    
+    /**
+     * Exponentially distributed values with the given mean , the time between arrivals of a Poisson process
+     * 
+     * @param mean
+     * @return distribution
+     */
+    public static Distribution exponential(final double mean) {
+        
+        if(!(mean > 0)){
+            throw new InvalidParameterException();
+        }
+        
+        return new Distribution() {
+            @Override
+            public double sample(SplittableRandom random) {
+                return -mean * Math.log(1.0 - random.nextDouble());
+            }
+        };
+    }
+    
+}
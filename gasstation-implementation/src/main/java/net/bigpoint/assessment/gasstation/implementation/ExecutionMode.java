@@ -0,0 +1,23 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * How GasStationManager runs asynchronous purchases
+ */
+public enum ExecutionMode {
+    
+    /**
+     * Purchases are queued on the lane of the reserved gas pump and served by a pool of platform threads ,
+     * at most one thread per gas pump
+     */
+    DISPATCHER_LANES,
+    
+    /**
+     * Every purchase runs on its own virtual thread , waiting for a gas pump and pumping block the virtual
+     * thread only. Gas pumps are guarded by ReentrantLock so blocked virtual threads do not pin their carrier
+     */
+    VIRTUAL_THREADS;
+    
+}
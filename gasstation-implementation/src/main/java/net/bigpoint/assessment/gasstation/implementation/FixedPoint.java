@@ -0,0 +1,64 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Fixed point volumes and money of the gas station : milli litres and minor currency units , tenths of cents , as
+ * long. Litres and prices of the GasStation interface are converted once when a purchase comes in and back when
+ * the price to pay goes out , everything in between is exact integer arithmetic
+ */
+final class FixedPoint {
+
+    private FixedPoint() {
+    }
+
+    /**
+     * Convert an amount of money to minor currency units , rounded to the nearest
+     *
+     * @param currencyUnits
+     * @return (long) minorUnits
+     */
+    static long toMinorUnits(double currencyUnits) {
+        return Math.round(currencyUnits * GasStationManager.MINOR_UNITS_PER_CURRENCY_UNIT);
+    }
+
+    /**
+     * Convert minor currency units to an amount of money
+     *
+     * @param minorUnits
+     * @return (double) currencyUnits
+     */
+    static double toCurrencyUnits(long minorUnits) {
+        return (double) minorUnits / GasStationManager.MINOR_UNITS_PER_CURRENCY_UNIT;
+    }
+
+    /**
+     * Convert milli litres to litres
+     *
+     * @param milliLitres
+     * @return (double) litres
+     */
+    static double toLitres(long milliLitres) {
+        return (double) milliLitres / ManagedPump.MILLI_LITRES_PER_LITRE;
+    }
+
+    /**
+     * Price of an amount of gas in minor currency units , half a minor unit rounded up. Whole litres and the milli
+     * litres left over are priced apart , so the product never exceeds a long before the price of the whole amount
+     * would
+     *
+     * @param milliLitres
+     * @param pricePerLitreInMinorUnits
+     * @return (long) priceInMinorUnits
+     */
+    static long priceOf(long milliLitres, long pricePerLitreInMinorUnits) {
+
+        long litres = milliLitres / ManagedPump.MILLI_LITRES_PER_LITRE;
+        long leftOverMilliLitres = milliLitres % ManagedPump.MILLI_LITRES_PER_LITRE;
+
+        return litres * pricePerLitreInMinorUnits
+                + Math.floorDiv(leftOverMilliLitres * pricePerLitreInMinorUnits + ManagedPump.MILLI_LITRES_PER_LITRE / 2, ManagedPump.MILLI_LITRES_PER_LITRE);
+    }
+
+}
@@ -0,0 +1,63 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Dispenses gas from a gas pump claimed by the calling thread , one per DispenseMode. The amount is already reserved
+ * and is counted in the ledger of the gas station after it was dispensed
+ */
+interface GasDispenser {
+
+    /**
+     * Pump gas with the sleep of GasPump.pumpGas , which swallows an interrupt. Thread.sleep only returns early when
+     * interrupted , so a sleep cut short gets its interrupt back. The gas has left the gas pump either way
+     */
+    GasDispenser TIMED = new GasDispenser() {
+
+        @Override
+        public void dispense(GasPump gasPump, double amountInLiters) {
+
+            long sleepMillis = (long) (amountInLiters * GasStationManager.MILLIS_PER_LITRE);
+
+            //No sleep to cut short
+            if(sleepMillis == 0){
+                gasPump.pumpGas(amountInLiters);
+                return;
+            }
+
+            long pumpingStart = System.nanoTime();
+
+            gasPump.pumpGas(amountInLiters);
+
+            if(System.nanoTime() - pumpingStart < TimeUnit.MILLISECONDS.toNanos(sleepMillis)){
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    };
+
+    /**
+     * Leave the gas pump alone , the sale is only counted in the ledger of the gas station
+     */
+    GasDispenser INSTANT = new GasDispenser() {
+
+        @Override
+        public void dispense(GasPump gasPump, double amountInLiters) {
+            // pumping time is simulated by the caller
+        }
+
+    };
+
+    /**
+     * Dispense gas from a gas pump
+     *
+     * @param gasPump
+     * @param amountInLiters
+     */
+    void dispense(GasPump gasPump, double amountInLiters);
+
+}
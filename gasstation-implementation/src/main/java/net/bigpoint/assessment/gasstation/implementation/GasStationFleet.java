@@ -0,0 +1,351 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import net.bigpoint.assessment.gasstation.GasStation;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.exceptions.StacklessNotEnoughGasException;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Fleet of gas stations identified by a station id. The stations are spread over partitions by the hash of their id ,
+ * each partition with a map and counters of its own , so purchases at different stations share no state.
+ * Partitions only split the state , they have no worker threads of their own and purchases run on the thread of
+ * the customer. Totals of the fleet are summed from the stations without blocking purchases
+ */
+public class GasStationFleet {
+
+    /**
+     * Partitions of the fleet , a power of two
+     */
+    private final Partition[] partitions;
+
+    /**
+     * Mask selecting a partition from the hash of a station id
+     */
+    private final int partitionMask;
+
+    /**
+     * Fleet with four partitions per available processor
+     */
+    public GasStationFleet(){
+        this(Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Fleet with at least the given number of partitions , rounded up to a power of two
+     *
+     * @param partitionCount
+     */
+    public GasStationFleet(int partitionCount){
+
+        if(partitionCount <= 0 || partitionCount > 1 << 30){
+            throw new InvalidParameterException();
+        }
+
+        int powerOfTwo = Integer.highestOneBit(partitionCount);
+        if(powerOfTwo < partitionCount){
+            powerOfTwo <<= 1;
+        }
+
+        partitions = new Partition[powerOfTwo];
+        for(int i = 0; i < partitions.length; i++){
+            partitions[i] = new Partition();
+        }
+        partitionMask = powerOfTwo - 1;
+    }
+
+    /**
+     * Add a gas station without nearby stations
+     *
+     * @param stationId
+     * @param station
+     */
+    public void addStation(String stationId, GasStation station) {
+        addStation(stationId, station, Collections.<String>emptyList());
+    }
+
+    /**
+     * Add a gas station with the ids of the stations its customers are sent to when it has no gas for them ,
+     * nearest first. Nearby stations may be added later
+     *
+     * @param stationId
+     * @param station
+     * @param nearbyStationIds
+     * @throws InvalidParameterException when a station with the id was already added
+     */
+    public void addStation(String stationId, GasStation station, List<String> nearbyStationIds) {
+
+        if(stationId == null || station == null || nearbyStationIds == null || nearbyStationIds.contains(null)){
+            throw new InvalidParameterException();
+        }
+
+        FleetStation fleetStation = new FleetStation(station, new ArrayList<String>(nearbyStationIds));
+
+        if(partitionOf(stationId).stations.putIfAbsent(stationId, fleetStation) != null){
+            throw new InvalidParameterException("Station " + stationId + " already added");
+        }
+    }
+
+    /**
+     * Get a gas station of the fleet
+     *
+     * @param stationId
+     * @return station , null when no station has the id
+     */
+    public GasStation getStation(String stationId) {
+
+        FleetStation fleetStation = partitionOf(stationId).stations.get(stationId);
+
+        return fleetStation == null ? null : fleetStation.station;
+    }
+
+    /**
+     * Get number of gas stations in the fleet
+     *
+     * @return (int) noOfStations
+     */
+    public int getNumberOfStations() {
+
+        int noOfStations = 0;
+        for(Partition partition : partitions){
+            noOfStations += partition.stations.size();
+        }
+
+        return noOfStations;
+    }
+
+    /**
+     *
+     * Customer buys gas at a station of the fleet. When the station has no gas pump with enough gas or does not sell
+     * the gas type at all , having no price for it , the customer tries the nearby stations in order and the first one
+     * with enough gas serves the customer. Invalid amounts and prices are rejected before any station is tried.
+     * Each station counts its own cancellations , also when a nearby station served the customer
+     *
+     * @param stationId
+     * @param type
+     * @param amountInLiters
+     * @param maxPricePerLiter
+     * @return (double) priceToPay
+     * @throws NotEnoughGasException when neither the station nor a nearby station had enough gas
+     * @throws GasTooExpensiveException when the station was too expensive , nearby stations are not tried
+     * @throws InvalidParameterException when no station has the id or the parameters are invalid
+     */
+    public double buyGas(String stationId, GasType type, double amountInLiters, double maxPricePerLiter) throws NotEnoughGasException, GasTooExpensiveException {
+
+        Partition partition = partitionOf(stationId);
+        FleetStation fleetStation = partition.stations.get(stationId);
+
+        if(fleetStation == null){
+            throw new InvalidParameterException("No station " + stationId);
+        }
+
+        //Checks for validity of params , NaN included , before the customer is sent anywhere
+        if(type == null || !(amountInLiters > 0) || !(maxPricePerLiter > 0)){
+            throw new InvalidParameterException();
+        }
+
+        NotEnoughGasException noGas;
+
+        try {
+            return fleetStation.station.buyGas(type, amountInLiters, maxPricePerLiter);
+        } catch (NotEnoughGasException ex) {
+            noGas = ex;
+        } catch (InvalidParameterException ex) {
+            
+            if(sellsGasType(fleetStation.station, type)){
+                throw ex;
+            }
+            noGas = StacklessNotEnoughGasException.INSTANCE;
+        }
+
+        //Sends the customer to the nearby stations
+        for(String nearbyStationId : fleetStation.nearbyStationIds){
+
+            FleetStation nearbyStation = partitionOf(nearbyStationId).stations.get(nearbyStationId);
+
+            if(nearbyStation == null){
+                continue;
+            }
+
+            try {
+                double priceToPay = nearbyStation.station.buyGas(type, amountInLiters, maxPricePerLiter);
+                partition.fallbacks.increment();
+                return priceToPay;
+            } catch (NotEnoughGasException ex) {
+                // tries the next one
+            } catch (GasTooExpensiveException ex) {
+                // tries the next one
+            } catch (InvalidParameterException ex) {
+                
+                if(sellsGasType(nearbyStation.station, type)){
+                    throw ex;
+                }
+                // does not sell the gas type , tries the next one
+            }
+        }
+
+        throw noGas;
+    }
+
+    /**
+     * Get revenue of all stations
+     *
+     * @return (double) revenue
+     */
+    public double getRevenue() {
+
+        double revenue = 0;
+        for(Partition partition : partitions){
+            for(FleetStation fleetStation : partition.stations.values()){
+                revenue += fleetStation.station.getRevenue();
+            }
+        }
+
+        return revenue;
+    }
+
+    /**
+     * Get number of sales of all stations
+     *
+     * @return (long) noOfSales
+     */
+    public long getNumberOfSales() {
+
+        long noOfSales = 0;
+        for(Partition partition : partitions){
+            for(FleetStation fleetStation : partition.stations.values()){
+                noOfSales += fleetStation.station.getNumberOfSales();
+            }
+        }
+
+        return noOfSales;
+    }
+
+    /**
+     * Get number of cancellations because of no gas of all stations
+     *
+     * @return (long) noOfCancellationsNoGas
+     */
+    public long getNumberOfCancellationsNoGas() {
+
+        long noOfCancellationsNoGas = 0;
+        for(Partition partition : partitions){
+            for(FleetStation fleetStation : partition.stations.values()){
+                noOfCancellationsNoGas += fleetStation.station.getNumberOfCancellationsNoGas();
+            }
+        }
+
+        return noOfCancellationsNoGas;
+    }
+
+    /**
+     * Get number of cancellations because of gas too expensive of all stations
+     *
+     * @return (long) noOfCancellationsTooExpensive
+     */
+    public long getNumberOfCancellationsTooExpensive() {
+
+        long noOfCancellationsTooExpensive = 0;
+        for(Partition partition : partitions){
+            for(FleetStation fleetStation : partition.stations.values()){
+                noOfCancellationsTooExpensive += fleetStation.station.getNumberOfCancellationsTooExpensive();
+            }
+        }
+
+        return noOfCancellationsTooExpensive;
+    }
+
+    /**
+     * Get number of customers served by a nearby station
+     *
+     * @return (long) noOfFallbacks
+     */
+    public long getNumberOfFallbacks() {
+
+        long noOfFallbacks = 0;
+        for(Partition partition : partitions){
+            noOfFallbacks += partition.fallbacks.sum();
+        }
+
+        return noOfFallbacks;
+    }
+
+    /**
+     * Get number of partitions
+     *
+     * @return (int) partitionCount
+     */
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    /**
+     * Check if a station sells the gas type , having a positive price for it
+     *
+     * @param station
+     * @param type
+     * @return (boolean) sold
+     */
+    private static boolean sellsGasType(GasStation station, GasType type) {
+
+        try {
+            return station.getPrice(type) > 0;
+        } catch (InvalidParameterException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Partition of a station id , the hash is spread so ids differing only in high bits use different partitions
+     *
+     * @param stationId
+     * @return partition
+     */
+    private Partition partitionOf(String stationId) {
+
+        if(stationId == null){
+            throw new InvalidParameterException();
+        }
+
+        int hash = stationId.hashCode();
+
+        return partitions[(hash ^ (hash >>> 16)) & partitionMask];
+    }
+
+    /**
+     * Stations of a partition and the customers they sent to nearby stations
+     */
+    private static final class Partition {
+
+        final ConcurrentHashMap<String, FleetStation> stations = new ConcurrentHashMap<String, FleetStation>();
+
+        final LongAdder fallbacks = new LongAdder();
+
+    }
+
+    /**
+     * Gas station of the fleet with its nearby stations
+     */
+    private static final class FleetStation {
+
+        final GasStation station;
+
+        final List<String> nearbyStationIds;
+
+        FleetStation(GasStation station, List<String> nearbyStationIds) {
+            this.station = station;
+            this.nearbyStationIds = nearbyStationIds;
+        }
+
+    }
+
+}
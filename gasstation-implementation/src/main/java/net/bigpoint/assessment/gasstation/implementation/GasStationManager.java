@@ -1,18 +1,37 @@
 package net.bigpoint.assessment.gasstation.implementation;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.security.InvalidParameterException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import net.bigpoint.assessment.gasstation.GasPump;
 import net.bigpoint.assessment.gasstation.GasStation;
 import net.bigpoint.assessment.gasstation.GasType;
 import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
 import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.exceptions.StacklessGasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.StacklessNotEnoughGasException;
+import net.bigpoint.assessment.gasstation.exceptions.StationBusyException;
 
 /**
  *
@@ -28,181 +47,1700 @@ public class GasStationManager implements GasStation {
     private CopyOnWriteArrayList<GasPump> gasPumps;
     
     /**
-     * Collection of gas types and their prices
+     * Gas pumps indexed by gas type, so a purchase only scans pumps of the requested type.
+     * Every gas type is registered up front, the map itself is never modified afterwards
      */
-    private ConcurrentHashMap<GasType,Double> gasTypePrices;
+    private EnumMap<GasType,CopyOnWriteArrayList<ManagedPump>> gasPumpsByType;
     
     /**
-     * Total number of cancellations because of no gas
+     * Read-only views of the gas pumps , created once so handing them out allocates nothing
      */
-    private AtomicInteger noOfCancellationsNoGas;
+    private final Collection<GasPump> gasPumpsView;
+    private final EnumMap<GasType, List<GasPump>> gasPumpViewsByType;
+    private final EnumMap<GasType, List<ManagedPump>> managedPumpViewsByType;
     
-     /**
-     * Total number of cancellations because of gas too expensive
+    /**
+     * How a gas pump is claimed for a purchase
+     */
+    private final PumpSelectionMode selectionMode;
+    
+    /**
+     * Which gas pumps of a type a purchase is served from , replaced by a simulation while it runs
+     */
+    private volatile PumpAllocationStrategy allocationStrategy;
+    
+    /**
+     * How asynchronous purchases are run
+     */
+    private final ExecutionMode executionMode;
+    
+    /**
+     * How gas is dispensed from a gas pump
+     */
+    private final DispenseMode dispenseMode;
+    
+    /**
+     * Dispenses gas for the dispense mode
+     */
+    private final GasDispenser dispenser;
+    
+    /**
+     * Customers waiting for a gas pump per gas type in arrival order , null without admission control.
+     * Every gas type is registered up front, the map itself is never modified afterwards
+     */
+    private final EnumMap<GasType,CustomerQueue> customerQueues;
+    
+    /**
+     * Receives the latency of every purchase phase
+     */
+    private final StationMetricsListener metricsListener;
+    
+    /**
+     * Purchases are only timed when a listener other than NO_OP is set
+     */
+    private final boolean metricsEnabled;
+    
+    /**
+     * Prices of the gas types , replaced as a whole on every price change
+     */
+    private final AtomicReference<PriceTable> priceTable;
+    
+    /**
+     * Sales and cancellations per gas type , station totals are summed from these.
+     * Every gas type is registered up front, the map itself is never modified afterwards
+     */
+    private EnumMap<GasType,SalesCounters> countersByType;
+    
+    /**
+     * Milliseconds GasPump.pumpGas sleeps per litre
+     */
+    final static long MILLIS_PER_LITRE = 100;
+    
+    /**
+     * Customers wait for a gas pump until interrupted
+     */
+    private final static long NO_TIMEOUT = Long.MAX_VALUE;
+    
+    /**
+     * Nanoseconds GasPump.pumpGas sleeps per milli litre
+     */
+    private final static long NANOS_PER_MILLI_LITRE = TimeUnit.MILLISECONDS.toNanos(MILLIS_PER_LITRE) / ManagedPump.MILLI_LITRES_PER_LITRE;
+    
+    /**
+     * Minor currency units per currency unit , tenths of cents
+     */
+    final static long MINOR_UNITS_PER_CURRENCY_UNIT = 1000;
+    
+    /**
+     * Threads of the gas station serving asynchronous purchases , one per gas pump at most with dispatcher lanes
+     * or one virtual thread per purchase
+     */
+    private final ExecutorService dispatcher;
+    
+    /**
+     * Asynchronous log of sales and cancellations
+     */
+    private final TransactionLog transactionLog;
+    
+    /**
+     * Durable journal the gas station is rebuilt from , null without one
+     */
+    private final TransactionJournal journal;
+    
+    /**
+     * Index of the next gas pump added
+     */
+    private final AtomicInteger pumpIndexes;
+    
+    /**
+     * Keeps snapshots from seeing a sale counted for its gas type but not yet for its gas pump
+     */
+    private final SnapshotGate snapshotGate;
+    
+    /**
+     * One snapshot at a time
+     */
+    private final ReentrantLock snapshotLock;
+    
+    /**
+     * Recent demand fed to the attached PricingEngine , null without one
      */
-    private AtomicInteger noOfCancellationsTooExpensive;
+    private final AtomicReference<DemandRates> demandRates;
     
     /**
-     * Total number of sales
+     * Slow or failed dispenses in a row a gas pump is taken out of the selection at , 0 without health tracking
      */
-    private AtomicInteger noOfSales;
+    private final int failureThreshold;
     
     /**
-     * Total revenue made
+     * Time a gas pump stays out of the selection before a customer probes it
      */
-    private AtomicLong revenue;
+    private final long openNanos;
     
     /**
-     * Util Logger instances - for logging to console
+     * A dispense is slow when it takes longer than slowFactor times what it should plus the grace time
      */
-    private static Logger LOG = Logger.getLogger(GasStationManager.class.getName());
+    private final double slowFactor;
+    private final long slowGraceNanos;
     
     public GasStationManager(){
+        this(new Builder());
+    }
+    
+    /**
+     * Gas station claiming gas pumps with the given selection mode
+     * 
+     * @param selectionMode 
+     */
+    public GasStationManager(PumpSelectionMode selectionMode){
+        this(new Builder().selectionMode(selectionMode));
+    }
+    
+    /**
+     * Gas station allocating gas pumps with the given strategy
+     * 
+     * @param allocationStrategy 
+     */
+    public GasStationManager(PumpAllocationStrategy allocationStrategy){
+        this(new Builder().allocationStrategy(allocationStrategy));
+    }
+    
+    /**
+     * Gas station claiming gas pumps with the given selection mode , in the order of the allocation strategy
+     * 
+     * @param selectionMode 
+     * @param allocationStrategy 
+     */
+    public GasStationManager(PumpSelectionMode selectionMode, PumpAllocationStrategy allocationStrategy){
+        this(new Builder().selectionMode(selectionMode).allocationStrategy(allocationStrategy));
+    }
+    
+    private GasStationManager(Builder builder){
+        
+        if(builder.selectionMode == null || builder.allocationStrategy == null || builder.executionMode == null
+                || builder.dispenseMode == null
+                || builder.metricsListener == null || builder.transactionLog == null
+                || builder.maxQueueDepth < 0 || builder.queueTimeoutNanos < 0
+                || builder.failureThreshold < 0 || builder.openNanos <= 0
+                || !(builder.slowFactor >= 1) || builder.slowGraceNanos < 0){
+            throw new InvalidParameterException();
+        }
+        
+        this.selectionMode = builder.selectionMode;
+        this.allocationStrategy = builder.allocationStrategy;
+        this.executionMode = builder.executionMode;
+        this.dispenseMode = builder.dispenseMode;
+        this.dispenser = builder.dispenseMode == DispenseMode.INSTANT ? GasDispenser.INSTANT : GasDispenser.TIMED;
+        this.metricsListener = builder.metricsListener;
+        this.metricsEnabled = builder.metricsListener != StationMetricsListener.NO_OP;
+        this.transactionLog = builder.transactionLog;
+        this.journal = builder.journal;
+        this.pumpIndexes = new AtomicInteger();
+        this.snapshotGate = new SnapshotGate();
+        this.snapshotLock = new ReentrantLock();
+        this.demandRates = new AtomicReference<DemandRates>();
+        this.failureThreshold = builder.failureThreshold;
+        this.openNanos = builder.openNanos;
+        this.slowFactor = builder.slowFactor;
+        this.slowGraceNanos = builder.slowGraceNanos;
         
         // Initializations
         gasPumps = new CopyOnWriteArrayList<GasPump>();
-        gasTypePrices = new ConcurrentHashMap<GasType, Double>();
+        gasPumpsByType = new EnumMap<GasType, CopyOnWriteArrayList<ManagedPump>>(GasType.class);
+        for(GasType gasType : GasType.values()){
+            gasPumpsByType.put(gasType, new CopyOnWriteArrayList<ManagedPump>());
+        }
+        priceTable = new AtomicReference<PriceTable>(PriceTable.EMPTY);
+        
+        gasPumpsView = Collections.unmodifiableList(gasPumps);
+        gasPumpViewsByType = new EnumMap<GasType, List<GasPump>>(GasType.class);
+        managedPumpViewsByType = new EnumMap<GasType, List<ManagedPump>>(GasType.class);
+        for(GasType gasType : GasType.values()){
+            gasPumpViewsByType.put(gasType, new GasPumpView(gasPumpsByType.get(gasType)));
+            managedPumpViewsByType.put(gasType, Collections.unmodifiableList(gasPumpsByType.get(gasType)));
+        }
+        
+        if(builder.maxQueueDepth == Integer.MAX_VALUE && builder.queueTimeoutNanos == Long.MAX_VALUE){
+            customerQueues = null;
+        } else {
+            customerQueues = new EnumMap<GasType, CustomerQueue>(GasType.class);
+            for(GasType gasType : GasType.values()){
+                customerQueues.put(gasType, new CustomerQueue(builder.maxQueueDepth, builder.queueTimeoutNanos));
+            }
+        }
+        
+        countersByType = new EnumMap<GasType, SalesCounters>(GasType.class);
+        for(GasType gasType : GasType.values()){
+            countersByType.put(gasType, new SalesCounters());
+        }
+        
+        if(executionMode == ExecutionMode.VIRTUAL_THREADS){
+            dispatcher = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("gas-station-customer-", 1).factory());
+        } else {
+            dispatcher = Executors.newCachedThreadPool(Thread.ofPlatform().name("gas-station-dispatcher-", 1).daemon(true).factory());
+        }
+        
+        if(journal != null){
+            try {
+                restoreState(journal.replay());
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+    
+    /**
+     * Start building a gas station
+     * 
+     * @return builder
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * Add a new pump to the collection of gas pumps
+     * @param pump 
+     */
+    public void addGasPump(GasPump pump) {
+      
+      ManagedPump managedPump = new ManagedPump(pump, this.pumpIndexes.getAndIncrement());
+      
+      //Journaled before any sale of the gas pump
+      if(this.journal != null){
+          this.journal.appendGasPump(pump.getGasType(), managedPump.getIndex(), ManagedPump.toMilliLitres(pump.getRemainingAmount()));
+      }
+      
+      addManagedPump(managedPump);
+    }
+    
+    /**
+     * Add new pumps to the collection of gas pumps in one go , much cheaper than adding them one by one when
+     * provisioning big gas stations
+     * 
+     * @param pumps
+     * @throws InvalidParameterException when a gas pump is null
+     */
+    public void addGasPumps(Collection<GasPump> pumps) {
+        
+        if(pumps == null || pumps.contains(null)){
+            throw new InvalidParameterException();
+        }
+        
+        List<ManagedPump> managedPumps = new ArrayList<ManagedPump>(pumps.size());
+        
+        for(GasPump pump : pumps){
+            
+            ManagedPump managedPump = new ManagedPump(pump, this.pumpIndexes.getAndIncrement());
+            
+            if(this.journal != null){
+                this.journal.appendGasPump(pump.getGasType(), managedPump.getIndex(), ManagedPump.toMilliLitres(pump.getRemainingAmount()));
+            }
+            
+            managedPumps.add(managedPump);
+        }
+        
+        addManagedPumps(managedPumps);
+    }
+    
+    private void addManagedPump(ManagedPump managedPump) {
+      
+      GasPump pump = managedPump.getGasPump();
+      
+      this.gasPumps.add(pump);
+      this.gasPumpsByType.get(pump.getGasType()).add(managedPump);
+      
+      if(this.customerQueues != null){
+          this.customerQueues.get(pump.getGasType()).addGasPump();
+      }
+    }
+    
+    private void addManagedPumps(List<ManagedPump> managedPumps) {
+        
+        //Copy on write lists are filled in one go , adding gas pumps one by one copies them every time
+        List<GasPump> pumps = new ArrayList<GasPump>(managedPumps.size());
+        EnumMap<GasType, List<ManagedPump>> managedPumpsByType = new EnumMap<GasType, List<ManagedPump>>(GasType.class);
+        for(GasType gasType : GasType.values()){
+            managedPumpsByType.put(gasType, new ArrayList<ManagedPump>());
+        }
+        
+        for(ManagedPump managedPump : managedPumps){
+            pumps.add(managedPump.getGasPump());
+            managedPumpsByType.get(managedPump.getGasPump().getGasType()).add(managedPump);
+        }
+        
+        this.gasPumps.addAll(pumps);
+        
+        for(GasType gasType : GasType.values()){
+            
+            List<ManagedPump> typePumps = managedPumpsByType.get(gasType);
+            this.gasPumpsByType.get(gasType).addAll(typePumps);
+            
+            if(this.customerQueues != null){
+                for(int i = 0; i < typePumps.size(); i++){
+                    this.customerQueues.get(gasType).addGasPump();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Deliver gas to a gas pump of the gas station. The gas pump is taken out of rotation while refilled ,
+     * customers who already reserved gas on it are served after the delivery. The delivery is only kept in the
+     * ledger of the gas station , GasPump.getRemainingAmount does not count it , read the gas left from
+     * getInventory or getAvailableLitres
+     * 
+     * @param pump
+     * @param litres
+     * @throws InvalidParameterException when the gas pump is not part of the gas station or litres is not positive
+     */
+    public void refillGasPump(GasPump pump, double litres) {
+        
+        ManagedPump managedPump = pump == null ? null : findManagedPump(pump);
+        
+        if(managedPump == null || !(litres > 0)){
+            throw new InvalidParameterException();
+        }
+        
+        deliverGas(managedPump, ManagedPump.toMilliLitres(litres), 0);
+    }
+    
+    /**
+     * Find the managed gas pump of a gas pump , null when not part of the gas station
+     * 
+     * @param pump
+     * @return managedPump
+     */
+    ManagedPump findManagedPump(GasPump pump) {
+        
+        for(ManagedPump managedPump : gasPumpsByType.get(pump.getGasType())){
+            if(managedPump.getGasPump() == pump){
+                return managedPump;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Deliver gas to a gas pump , keeping it out of rotation for the refill time
+     * 
+     * @param managedPump
+     * @param milliLitres
+     * @param refillNanos 
+     */
+    void deliverGas(ManagedPump managedPump, long milliLitres, long refillNanos) {
+        
+        GasPump gasPump = managedPump.getGasPump();
+        
+        managedPump.setOutOfRotation(true);
+        managedPump.lock();
+        
+        try {
+            if(refillNanos > 0){
+                try {
+                    TimeUnit.NANOSECONDS.sleep(refillNanos);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            
+            //The ledger of the managed pump counts the delivery , snapshots see it together with the gas it adds
+            snapshotGate.enter();
+            try {
+                managedPump.addDelivered(milliLitres);
+            } finally {
+                snapshotGate.exit();
+            }
+            
+            managedPump.release(milliLitres);
+            
+            if(journal != null){
+                journal.appendRefill(gasPump.getGasType(), managedPump.getIndex(), milliLitres);
+            }
+            
+        } finally {
+            managedPump.setOutOfRotation(false);
+            managedPump.unlock();
+        }
+    }
+    
+    /**
+     * Rebuild prices , gas pumps and counters from the journal or a snapshot
+     * 
+     * @param state 
+     */
+    private void restoreState(JournalState state) {
+        
+        priceTable.set(PriceTable.of(state.prices, state.getPriceVersion()));
+        
+        for(GasType gasType : GasType.values()){
+            addCounters(countersByType.get(gasType), state.countersByType.get(gasType));
+        }
+        
+        List<ManagedPump> restoredPumps = new ArrayList<ManagedPump>(state.pumps.size());
+        
+        for(Map.Entry<Integer, JournalState.PumpState> pump : state.pumps.entrySet()){
+            
+            JournalState.PumpState pumpState = pump.getValue();
+            
+            GasPump gasPump = new GasPump(pumpState.gasType, (double) pumpState.getRemainingMilliLitres() / ManagedPump.MILLI_LITRES_PER_LITRE);
+            ManagedPump managedPump = new ManagedPump(gasPump, pump.getKey(), pumpState.addedMilliLitres);
+            addCounters(managedPump.getCounters(), pumpState.counters);
+            addHealth(managedPump.getHealth(), pumpState.health);
+            
+            restoredPumps.add(managedPump);
+            pumpIndexes.set(pump.getKey() + 1);
+        }
+        
+        addManagedPumps(restoredPumps);
+    }
+    
+    private static void addCounters(SalesCounters counters, SalesCounters restored) {
+        counters.sales.add(restored.sales.sum());
+        counters.milliLitresDispensed.add(restored.milliLitresDispensed.sum());
+        counters.revenue.add(restored.revenue.sum());
+        counters.cancellationsNoGas.add(restored.cancellationsNoGas.sum());
+        counters.cancellationsTooExpensive.add(restored.cancellationsTooExpensive.sum());
+        counters.cancellationsQueueFull.add(restored.cancellationsQueueFull.sum());
+        counters.cancellationsQueueTimedOut.add(restored.cancellationsQueueTimedOut.sum());
+        counters.cancellationsTimedOut.add(restored.cancellationsTimedOut.sum());
+        counters.lockWaitNanos.add(restored.lockWaitNanos.sum());
+    }
+    
+    private static void addHealth(PumpHealth health, PumpHealth restored) {
+        health.dispenses.add(restored.dispenses.sum());
+        health.dispenseNanos.add(restored.dispenseNanos.sum());
+        health.expectedDispenseNanos.add(restored.expectedDispenseNanos.sum());
+        health.slowDispenses.add(restored.slowDispenses.sum());
+        health.trips.add(restored.trips.sum());
+        health.lockHoldNanos.add(restored.lockHoldNanos.sum());
+        health.maxLockHoldNanos.accumulate(restored.maxLockHoldNanos.get());
+    }
+    
+    /**
+     * Take a snapshot of prices , gas pumps and all their counters while customers keep buying gas. Every sale is
+     * either fully in the snapshot or not at all , sales finishing while the snapshot is taken wait for it before
+     * counting. The gas left in a gas pump is what it was added with less what its counted sales dispensed
+     * 
+     * @return stationSnapshot
+     */
+    public StationSnapshot export() {
+        
+        StationSnapshot.Writer writer;
+        
+        snapshotLock.lock();
+        snapshotGate.close();
+        
+        try {
+            //Gas pumps taken inside the gate , a gas pump added and sold on before it closed is in the snapshot
+            List<ManagedPump> managedPumps = new ArrayList<ManagedPump>();
+            for(CopyOnWriteArrayList<ManagedPump> typePumps : gasPumpsByType.values()){
+                managedPumps.addAll(typePumps);
+            }
+            
+            writer = new StationSnapshot.Writer(managedPumps.size());
+            
+            PriceTable prices = priceTable.get();
+            
+            writer.writeHeader(prices);
+            for(GasType gasType : GasType.values()){
+                writer.writeGasType(prices, gasType, countersByType.get(gasType));
+            }
+            
+            writer.writeGasPumpCount(managedPumps.size());
+            for(ManagedPump managedPump : managedPumps){
+                writer.writeGasPump(managedPump);
+            }
+            
+        } finally {
+            snapshotGate.open();
+            snapshotLock.unlock();
+        }
+        
+        return writer.toSnapshot();
+    }
+    
+    /**
+     * Rebuild a gas station from a snapshot with the default configuration
+     * 
+     * @param snapshot
+     * @return gasStationManager
+     */
+    public static GasStationManager restore(StationSnapshot snapshot) {
+        return restore(snapshot, new Builder());
+    }
+    
+    /**
+     * Rebuild a gas station from a snapshot with the configuration of the builder , which must not have a journal.
+     * The gas pumps are new GasPump instances with the gas left in the snapshot
+     * 
+     * @param snapshot
+     * @param builder
+     * @return gasStationManager
+     */
+    public static GasStationManager restore(StationSnapshot snapshot, Builder builder) {
+        
+        if(snapshot == null || builder == null || builder.journal != null){
+            throw new InvalidParameterException();
+        }
+        
+        JournalState state = snapshot.toState();
+        
+        GasStationManager stationManager = builder.build();
+        stationManager.restoreState(state);
+        
+        return stationManager;
+    }
+
+    /**
+     * Get collection of all gas pumps
+     * @return gasPumps
+     */
+    public Collection<GasPump> getGasPumps() {
+      return this.gasPumpsView;
+    }
+    
+    /**
+     * Get the gas pumps of a gas type , in the order they were added. A read-only view following the gas pumps
+     * added later
+     * 
+     * @param type
+     * @return gasPumps
+     */
+    public List<GasPump> getGasPumps(GasType type) {
+      return this.gasPumpViewsByType.get(type);
+    }
+    
+    /**
+     * Get the managed gas pumps of a gas type , in the order they were added
+     * 
+     * @param type
+     * @return managedPumps
+     */
+    public List<ManagedPump> getManagedPumps(GasType type) {
+      return this.managedPumpViewsByType.get(type);
+    }
+    
+    /**
+     * Take the gas type , gas left and busy flag of every gas pump into an inventory , by gas type and in the order
+     * the gas pumps were added. Neither copies the gas pumps nor takes their locks , the inventory is reused and
+     * only grows with the gas station
+     * 
+     * @param inventory to fill , its previous content is replaced
+     * @return inventory
+     */
+    public PumpInventory getInventory(PumpInventory inventory) {
         
-        noOfCancellationsNoGas = new AtomicInteger(0);
-        noOfCancellationsTooExpensive = new AtomicInteger(0);
-        noOfSales = new AtomicInteger(0);
-        revenue = new AtomicLong(0);
+        inventory.clear();
         
+        for(GasType gasType : GasType.values()){
+            
+            CopyOnWriteArrayList<ManagedPump> managedPumps = gasPumpsByType.get(gasType);
+            
+            //Gas pumps are only ever added , every index below the size stays valid
+            for(int i = 0, size = managedPumps.size(); i < size; i++){
+                inventory.add(managedPumps.get(i));
+            }
+        }
         
+        return inventory;
+    }
+    
+    /**
+     * Take an inventory of the gas pumps into a new inventory
+     * 
+     * @return inventory
+     */
+    public PumpInventory getInventory() {
+        return getInventory(new PumpInventory());
     }
 
     /**
-     * Add a new pump to the collection of gas pumps
-     * @param pump 
+     * 
+     * Customer buys gas specifying gas type, amount in litres and maximum price per litre.
+     * Rejections are thrown as shared exceptions without stack trace , customers turned away by the customer queue
+     * get a StationBusyException. A customer interrupted while waiting in the customer queue or for a gas pump gets
+     * StationBusyException.TIMED_OUT , the interrupt status is kept
+     * 
+     * @param type
+     * @param amountInLiters rounded to milli litres , any positive amount buys one milli litre at least
+     * @param maxPricePerLiter
+     * @return
+     * @throws NotEnoughGasException
+     * @throws GasTooExpensiveException 
+     */
+    public double buyGas(GasType type, double amountInLiters, double maxPricePerLiter) throws NotEnoughGasException, GasTooExpensiveException {
+        return priceToPay(tryBuyGas(type, amountInLiters, maxPricePerLiter));
+    }
+    
+    /**
+     * 
+     * Customer buys gas waiting at most the timeout for a gas pump. Customers still waiting in the customer queue or
+     * for a gas pump when the timeout has passed give up with StationBusyException.TIMED_OUT , gas being pumped is
+     * not cut short
+     * 
+     * @param type
+     * @param amountInLiters
+     * @param maxPricePerLiter
+     * @param timeout
+     * @param unit
+     * @return (double) priceToPay
+     * @throws NotEnoughGasException
+     * @throws GasTooExpensiveException 
+     */
+    public double buyGas(GasType type, double amountInLiters, double maxPricePerLiter, long timeout, TimeUnit unit) throws NotEnoughGasException, GasTooExpensiveException {
+        return priceToPay(tryBuyGas(type, amountInLiters, maxPricePerLiter, timeout, unit));
+    }
+    
+    /**
+     * Price to pay of a sale , rejections thrown as shared exceptions without stack trace
+     * 
+     * @param purchaseResult
+     * @return (double) priceToPay
+     * @throws NotEnoughGasException
+     * @throws GasTooExpensiveException 
+     */
+    private static double priceToPay(PurchaseResult purchaseResult) throws NotEnoughGasException, GasTooExpensiveException {
+        
+        switch(purchaseResult.getOutcome()){
+            case NOT_ENOUGH_GAS:
+                throw StacklessNotEnoughGasException.INSTANCE;
+            case GAS_TOO_EXPENSIVE:
+                throw StacklessGasTooExpensiveException.INSTANCE;
+            case QUEUE_FULL:
+                throw StationBusyException.QUEUE_FULL;
+            case QUEUE_TIMED_OUT:
+                throw StationBusyException.QUEUE_TIMED_OUT;
+            case TIMED_OUT:
+                throw StationBusyException.TIMED_OUT;
+            default:
+                return purchaseResult.getPriceToPay();
+        }
+    }
+    
+    /**
+     * 
+     * Customer buys gas specifying gas type, amount in litres and maximum price per litre.
+     * Rejections are reported in the result , no exception is thrown for them. A customer waiting longer than the
+     * timeout of the customer queue gives up with QUEUE_TIMED_OUT. A customer interrupted while waiting in the
+     * customer queue or for a gas pump gives up with TIMED_OUT , the interrupt status is kept
+     * 
+     * @param type
+     * @param amountInLiters rounded to milli litres , any positive amount buys one milli litre at least
+     * @param maxPricePerLiter
+     * @return purchaseResult
+     */
+    public PurchaseResult tryBuyGas(GasType type, double amountInLiters, double maxPricePerLiter) {
+        return tryBuyGas(type, amountInLiters, maxPricePerLiter, 0, NO_TIMEOUT);
+    }
+    
+    /**
+     * 
+     * Customer buys gas waiting at most the timeout for a gas pump , in the customer queue and for the gas pump
+     * together. Given up with TIMED_OUT when the timeout passes or the customer is interrupted while waiting in
+     * either , the interrupt status is kept. Gas being pumped is not cut short
+     * 
+     * @param type
+     * @param amountInLiters
+     * @param maxPricePerLiter
+     * @param timeout
+     * @param unit
+     * @return purchaseResult
+     * @throws InvalidParameterException when the timeout is negative
+     */
+    public PurchaseResult tryBuyGas(GasType type, double amountInLiters, double maxPricePerLiter, long timeout, TimeUnit unit) {
+        
+        if(unit == null || timeout < 0){
+            throw new InvalidParameterException();
+        }
+        
+        return tryBuyGas(type, amountInLiters, maxPricePerLiter, System.nanoTime(), unit.toNanos(timeout));
+    }
+    
+    /**
+     * Customer buys gas waiting at most timeoutNanos from purchaseStart for a gas pump
+     * 
+     * @param type
+     * @param amountInLiters
+     * @param maxPricePerLiter
+     * @param purchaseStart System.nanoTime when the purchase was made
+     * @param timeoutNanos NO_TIMEOUT to wait until interrupted
+     * @return purchaseResult
+     */
+    private PurchaseResult tryBuyGas(GasType type, double amountInLiters, double maxPricePerLiter, long purchaseStart, long timeoutNanos) {
+        
+        long phaseStart = metricsEnabled ? System.nanoTime() : 0;
+        
+        //Prices read once , the customer is charged the price checked
+        PriceTable prices = priceTable.get();
+        
+        //Checks for validity of params , the amount is converted to milli litres once
+        long milliLitres = validateParameters(prices, type, amountInLiters, maxPricePerLiter);
+        
+        phaseStart = recordPhase(type, PurchasePhase.VALIDATION, phaseStart);
+        
+        return checkPriceAndServeGas(prices, type, milliLitres, maxPricePerLiter, phaseStart, purchaseStart, timeoutNanos);
+    }
+    
+    /**
+     * Customer with a validated purchase buys gas at the prices read when the purchase was made , waiting at most
+     * timeoutNanos from purchaseStart for a gas pump
+     * 
+     * @param prices read when the purchase was made
+     * @param type
+     * @param milliLitres
+     * @param maxPricePerLiter
+     * @param phaseStart start of the price check phase
+     * @param purchaseStart System.nanoTime when the purchase was made
+     * @param timeoutNanos NO_TIMEOUT to wait until interrupted
+     * @return purchaseResult
+     */
+    private PurchaseResult checkPriceAndServeGas(PriceTable prices, GasType type, long milliLitres, double maxPricePerLiter, long phaseStart, long purchaseStart, long timeoutNanos) {
+        
+        double gasTypePrice = prices.getPrice(type);
+        
+        //Checks for gas too expensive
+        if(isGasTooExpensive(type, gasTypePrice, milliLitres, maxPricePerLiter)){
+            return PurchaseResult.GAS_TOO_EXPENSIVE;
+        }
+        
+        phaseStart = recordPhase(type, PurchasePhase.PRICE_CHECK, phaseStart);
+        
+        //Nothing to wait for without gas pumps of the type
+        if(customerQueues == null || gasPumpsByType.get(type).isEmpty()){
+            return claimAndServeGas(type, milliLitres, prices.getPriceInMinorUnits(type), phaseStart, purchaseStart, timeoutNanos);
+        }
+        
+        //Waits for a gas pump of the type in arrival order
+        CustomerQueue customerQueue = customerQueues.get(type);
+        CustomerQueue.Admission admission = customerQueue.enter(remainingNanos(purchaseStart, timeoutNanos));
+        
+        phaseStart = recordPhase(type, PurchasePhase.QUEUE_WAIT, phaseStart);
+        
+        if(admission == CustomerQueue.Admission.QUEUE_FULL){
+            
+            countersByType.get(type).cancellationsQueueFull.increment();
+            recordTransaction(TransactionLog.Kind.CANCELLED_QUEUE_FULL, type, TransactionJournal.NONE, milliLitres, 0);
+            return PurchaseResult.QUEUE_FULL;
+        }
+        
+        if(admission == CustomerQueue.Admission.TIMED_OUT){
+            
+            countersByType.get(type).cancellationsQueueTimedOut.increment();
+            recordTransaction(TransactionLog.Kind.CANCELLED_QUEUE_TIMED_OUT, type, TransactionJournal.NONE, milliLitres, 0);
+            return PurchaseResult.QUEUE_TIMED_OUT;
+        }
+        
+        //Given up like a customer interrupted or past the deadline while waiting on the gas pump itself
+        if(admission == CustomerQueue.Admission.DEADLINE_PASSED || admission == CustomerQueue.Admission.INTERRUPTED){
+            return recordTimedOut(type, milliLitres);
+        }
+        
+        try {
+            return claimAndServeGas(type, milliLitres, prices.getPriceInMinorUnits(type), phaseStart, purchaseStart, timeoutNanos);
+        } finally {
+            customerQueue.leave();
+        }
+    }
+    
+    /**
+     * Claim a gas pump with enough gas and serve the customer , not enough gas when there is none. The reserved gas is
+     * given back when the customer gives up waiting for the gas pump
+     * 
+     * @param type
+     * @param milliLitres
+     * @param priceInMinorUnits price per litre
+     * @param phaseStart start of the pump selection phase
+     * @param purchaseStart System.nanoTime when the purchase was made
+     * @param timeoutNanos NO_TIMEOUT to wait until interrupted
+     * @return purchaseResult
+     */
+    private PurchaseResult claimAndServeGas(GasType type, long milliLitres, long priceInMinorUnits, long phaseStart, long purchaseStart, long timeoutNanos) {
+        
+        //Reserves the amount on a gas pump of the requested type
+        ManagedPump servingPump = claimGasPump(type, milliLitres);
+        
+        recordPhase(type, PurchasePhase.PUMP_SELECTION, phaseStart);
+         
+         //Check if no gas pump was found
+         if(servingPump == null){
+             
+             recordNoGas(type, milliLitres);
+             return PurchaseResult.NOT_ENOUGH_GAS;
+         }
+         
+         //Waits for the reserved gas pump unless it was free , the gas pump stays locked until served
+         if(!servingPump.isHeldByCurrentThread() && !lockGasPump(servingPump, type, remainingNanos(purchaseStart, timeoutNanos))){
+             
+             servingPump.release(milliLitres);
+             return recordTimedOut(type, milliLitres);
+         }
+         
+         try {
+             return PurchaseResult.sold(FixedPoint.toCurrencyUnits(serveGas(servingPump, type, milliLitres, priceInMinorUnits)));
+         } finally {
+             servingPump.unlock();
+         }
+    }
+    
+    /**
+     * 
+     * Customer buys gas without waiting for it , the purchase is served on a thread of the gas station.
+     * With dispatcher lanes waiting customers do not hold a thread , they are queued on the lane of the gas pump
+     * reserved for them. With virtual threads the whole purchase runs on a virtual thread of its own
+     * 
+     * @param type
+     * @param amountInLiters
+     * @param maxPricePerLiter
+     * @return future price to pay , failed with NotEnoughGasException or GasTooExpensiveException , or with
+     * RejectedExecutionException when the gas station was shut down before the purchase was queued
+     * @throws IllegalStateException when the gas station has been shut down
+     */
+    public CompletableFuture<Double> buyGasAsync(final GasType type, final double amountInLiters, double maxPricePerLiter) {
+        
+        if(dispatcher.isShutdown()){
+            throw new IllegalStateException("Gas station has been shut down");
+        }
+        
+        //Prices read once , the customer is charged the price checked when the purchase was made in both modes
+        final PriceTable prices = priceTable.get();
+        
+        //Checks for validity of params
+        final long milliLitres = validateParameters(prices, type, amountInLiters, maxPricePerLiter);
+        
+        final CompletableFuture<Double> priceToPay = new CompletableFuture<Double>();
+        
+        //A virtual thread runs the whole purchase
+        if(executionMode == ExecutionMode.VIRTUAL_THREADS){
+            
+            dispatcher.execute(() -> {
+                try {
+                    long phaseStart = metricsEnabled ? System.nanoTime() : 0;
+                    
+                    priceToPay.complete(priceToPay(checkPriceAndServeGas(prices, type, milliLitres, maxPricePerLiter, phaseStart, 0, NO_TIMEOUT)));
+                } catch (NotEnoughGasException | GasTooExpensiveException | RuntimeException ex) {
+                    priceToPay.completeExceptionally(ex);
+                }
+            });
+            
+            return priceToPay;
+        }
+        
+        long phaseStart = metricsEnabled ? System.nanoTime() : 0;
+        
+        final long priceInMinorUnits = prices.getPriceInMinorUnits(type);
+        
+        //Checks for gas too expensive
+        if(isGasTooExpensive(type, prices.getPrice(type), milliLitres, maxPricePerLiter)){
+            priceToPay.completeExceptionally(StacklessGasTooExpensiveException.INSTANCE);
+            return priceToPay;
+        }
+        
+        phaseStart = recordPhase(type, PurchasePhase.PRICE_CHECK, phaseStart);
+        
+        //Reserves the amount without waiting for the gas pump
+        final ManagedPump servingPump = reserveGasPump(type, milliLitres);
+        
+        recordPhase(type, PurchasePhase.PUMP_SELECTION, phaseStart);
+        
+        if(servingPump == null){
+            
+            recordNoGas(type, milliLitres);
+            priceToPay.completeExceptionally(StacklessNotEnoughGasException.INSTANCE);
+            return priceToPay;
+        }
+        
+        final long queuedAt = System.nanoTime();
+        
+        servingPump.submitToLane(new ManagedPump.LaneTask() {
+            public void run() {
+                
+                servingPump.lock();
+                
+                try {
+                    recordLockWait(servingPump, type, System.nanoTime() - queuedAt);
+                    
+                    priceToPay.complete(FixedPoint.toCurrencyUnits(serveGas(servingPump, type, milliLitres, priceInMinorUnits)));
+                } catch (RuntimeException ex) {
+                    priceToPay.completeExceptionally(ex);
+                } catch (Error error) {
+                    priceToPay.completeExceptionally(error);
+                    throw error;
+                } finally {
+                    servingPump.unlock();
+                }
+            }
+            
+            void reject(Throwable cause) {
+                servingPump.release(milliLitres);
+                priceToPay.completeExceptionally(cause);
+            }
+        }, dispatcher);
+        
+        return priceToPay;
+    }
+    
+    /**
+     * 
+     * Fleet of customers buying gas at once. The whole batch is validated before anything is sold and prices are read
+     * once for the batch. The requests of a gas type are packed onto its gas pumps largest first , each into the gas pump
+     * with the least gas that is still enough , so small requests fill the remainders left by large ones. When there is
+     * not enough gas for all of them the largest requests are cancelled. Every gas pump then serves its share of the
+     * batch on its lane , the gas pumps in parallel
+     * 
+     * @param requests
+     * @return purchaseResults in the order of the requests
+     * @throws IllegalStateException when the gas station has been shut down
+     * @throws RejectedExecutionException when the gas station was shut down before the batch was queued
+     */
+    public List<PurchaseResult> buyGasBatch(final List<PurchaseRequest> requests) {
+        
+        if(dispatcher.isShutdown()){
+            throw new IllegalStateException("Gas station has been shut down");
+        }
+        
+        if(requests == null){
+            throw new InvalidParameterException();
+        }
+        
+        //Prices read once for the whole batch
+        final PriceTable prices = priceTable.get();
+        
+        //Checks for validity of params , nothing is sold if one request is invalid
+        final long[] milliLitres = new long[requests.size()];
+        EnumMap<GasType, List<Integer>> positionsByType = new EnumMap<GasType, List<Integer>>(GasType.class);
+        
+        for(int position = 0; position < requests.size(); position++){
+            
+            PurchaseRequest request = requests.get(position);
+            
+            if(request == null){
+                throw new InvalidParameterException();
+            }
+            
+            milliLitres[position] = validateParameters(prices, request.getType(), request.getAmountInLiters(), request.getMaxPricePerLiter());
+            
+            List<Integer> positions = positionsByType.get(request.getType());
+            if(positions == null){
+                positions = new ArrayList<Integer>();
+                positionsByType.put(request.getType(), positions);
+            }
+            positions.add(position);
+        }
+        
+        final PurchaseResult[] results = new PurchaseResult[requests.size()];
+        
+        //Positions of the requests reserved on each gas pump
+        Map<ManagedPump, List<Integer>> reservations = new LinkedHashMap<ManagedPump, List<Integer>>();
+        
+        for(Map.Entry<GasType, List<Integer>> typePositions : positionsByType.entrySet()){
+            
+            GasType type = typePositions.getKey();
+            double gasTypePrice = prices.getPrice(type);
+            
+            //Checks for gas too expensive
+            List<Integer> positions = new ArrayList<Integer>(typePositions.getValue().size());
+            
+            for(Integer position : typePositions.getValue()){
+                
+                if(isGasTooExpensive(type, gasTypePrice, milliLitres[position], requests.get(position).getMaxPricePerLiter())){
+                    results[position] = PurchaseResult.GAS_TOO_EXPENSIVE;
+                } else {
+                    positions.add(position);
+                }
+            }
+            
+            for(Integer position : packingOrder(type, positions, milliLitres)){
+                
+                ManagedPump reservedPump = packGasPump(type, milliLitres[position]);
+                
+                if(reservedPump == null){
+                    recordNoGas(type, milliLitres[position]);
+                    results[position] = PurchaseResult.NOT_ENOUGH_GAS;
+                    continue;
+                }
+                
+                List<Integer> pumpPositions = reservations.get(reservedPump);
+                if(pumpPositions == null){
+                    pumpPositions = new ArrayList<Integer>();
+                    reservations.put(reservedPump, pumpPositions);
+                }
+                pumpPositions.add(position);
+            }
+        }
+        
+        //Every gas pump serves its share on its lane
+        List<CompletableFuture<Void>> servings = new ArrayList<CompletableFuture<Void>>(reservations.size());
+        
+        for(Map.Entry<ManagedPump, List<Integer>> reservation : reservations.entrySet()){
+            
+            final ManagedPump servingPump = reservation.getKey();
+            final List<Integer> pumpPositions = reservation.getValue();
+            final CompletableFuture<Void> served = new CompletableFuture<Void>();
+            final long queuedAt = System.nanoTime();
+            
+            servingPump.submitToLane(new ManagedPump.LaneTask() {
+                public void run() {
+                    
+                    GasType type = servingPump.getGasPump().getGasType();
+                    
+                    servingPump.lock();
+                    
+                    try {
+                        recordLockWait(servingPump, type, System.nanoTime() - queuedAt);
+                        
+                        for(Integer position : pumpPositions){
+                            results[position] = PurchaseResult.sold(FixedPoint.toCurrencyUnits(
+                                    serveGas(servingPump, type, milliLitres[position], prices.getPriceInMinorUnits(type))));
+                        }
+                        served.complete(null);
+                    } catch (RuntimeException ex) {
+                        served.completeExceptionally(ex);
+                    } catch (Error error) {
+                        served.completeExceptionally(error);
+                        throw error;
+                    } finally {
+                        servingPump.unlock();
+                    }
+                }
+                
+                void reject(Throwable cause) {
+                    
+                    for(Integer position : pumpPositions){
+                        servingPump.release(milliLitres[position]);
+                    }
+                    served.completeExceptionally(cause);
+                }
+            }, dispatcher);
+            
+            servings.add(served);
+        }
+        
+        try {
+            CompletableFuture.allOf(servings.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException ex) {
+            
+            if(ex.getCause() instanceof RuntimeException){
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+        
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+    
+    /**
+     * Order the requests of a gas type are packed in. The smallest requests that fit into the gas left in total are
+     * packed first , largest first among them. The other requests follow smallest first and only get what is left over
+     * 
+     * @param type
+     * @param positions of the requests of the gas type
+     * @param milliLitres of all requests of the batch
+     * @return positions in packing order
+     */
+    private List<Integer> packingOrder(GasType type, List<Integer> positions, final long[] milliLitres) {
+        
+        //Smallest first
+        Collections.sort(positions, new Comparator<Integer>() {
+            public int compare(Integer first, Integer second) {
+                return Long.compare(milliLitres[first], milliLitres[second]);
+            }
+        });
+        
+        long availableMilliLitres = 0;
+        for(ManagedPump managedPump : gasPumpsByType.get(type)){
+            availableMilliLitres += managedPump.getAvailableMilliLitres();
+        }
+        
+        //Most requests that fit into the gas left in total
+        int fitting = 0;
+        long fittingMilliLitres = 0;
+        
+        while(fitting < positions.size()){
+            
+            fittingMilliLitres += milliLitres[positions.get(fitting)];
+            
+            if(fittingMilliLitres > availableMilliLitres){
+                break;
+            }
+            fitting++;
+        }
+        
+        List<Integer> packingOrder = new ArrayList<Integer>(positions.size());
+        
+        //Largest first among them , leaves the fewest remainders too small to use
+        for(int i = fitting - 1; i >= 0; i--){
+            packingOrder.add(positions.get(i));
+        }
+        
+        packingOrder.addAll(positions.subList(fitting, positions.size()));
+        
+        return packingOrder;
+    }
+    
+    /**
+     * Reserve the amount on the gas pump of the gas type with the least gas that is still enough , null when no gas pump
+     * has enough gas
+     * 
+     * @param type
+     * @param milliLitres
+     * @return (ManagedPump) reservedPump
+     */
+    private ManagedPump packGasPump(GasType type, long milliLitres) {
+        
+        //Gas pumps with an open circuit only take what the healthy ones cannot
+        if(failureThreshold > 0){
+            
+            ManagedPump reservedPump = packGasPump(type, milliLitres, true);
+            
+            if(reservedPump != null){
+                return reservedPump;
+            }
+        }
+        
+        return packGasPump(type, milliLitres, false);
+    }
+    
+    /**
+     * Reserve the amount on the gas pump with the least gas that is still enough among all or the healthy gas pumps
+     * of the gas type
+     * 
+     * @param type
+     * @param milliLitres
+     * @param healthyOnly
+     * @return (ManagedPump) reservedPump
+     */
+    private ManagedPump packGasPump(GasType type, long milliLitres, boolean healthyOnly) {
+        
+        while(true){
+            
+            //Single scan instead of sorting , a batch packs many requests
+            ManagedPump bestFitPump = null;
+            long bestFitMilliLitres = Long.MAX_VALUE;
+            long now = healthyOnly ? System.nanoTime() : 0;
+            
+            for(ManagedPump candidate : gasPumpsByType.get(type)){
+                
+                if(healthyOnly && !candidate.getHealth().isHealthy(now)){
+                    continue;
+                }
+                
+                long availableMilliLitres = candidate.getAvailableMilliLitres();
+                
+                if(availableMilliLitres >= milliLitres && availableMilliLitres < bestFitMilliLitres){
+                    bestFitPump = candidate;
+                    bestFitMilliLitres = availableMilliLitres;
+                }
+            }
+            
+            if(bestFitPump == null || bestFitPump.tryReserve(milliLitres)){
+                return bestFitPump;
+            }
+            
+            //Another customer reserved the gas meanwhile , scans again
+        }
+    }
+    
+    /**
+     * Serve gas from a gas pump claimed by the calling thread , the amount is already reserved
+     * 
+     * @param servingPump
+     * @param type
+     * @param milliLitres
+     * @param priceInMinorUnits price per litre the purchase was checked against
+     * @return (long) priceToPay in minor currency units
+     */
+    private long serveGas(ManagedPump servingPump, GasType type, long milliLitres, long priceInMinorUnits) {
+        
+        GasPump gasPump = servingPump.getGasPump();
+        
+        long pumpingStart = metricsEnabled || failureThreshold > 0 ? System.nanoTime() : 0;
+        
+        //Pumps exactly the milli litres reserved and counted , GasPump only takes litres
+        double amountInLiters = FixedPoint.toLitres(milliLitres);
+        
+        PumpHealth health = servingPump.getHealth();
+        boolean dispensed = false;
+        
+        if(failureThreshold > 0){
+            //Served by a gas pump due for a probe , this customer is the probe
+            health.tryProbe(pumpingStart, openNanos);
+            long expectedNanos = dispenseMode == DispenseMode.INSTANT ? 0 : milliLitres * NANOS_PER_MILLI_LITRE;
+            health.startDispense(pumpingStart, expectedNanos, (long) (expectedNanos * slowFactor) + slowGraceNanos);
+        }
+        
+        try {
+            dispenser.dispense(gasPump, amountInLiters);
+            dispensed = true;
+        } finally {
+            if(failureThreshold > 0){
+                health.endDispense(System.nanoTime(), !dispensed, failureThreshold);
+            }
+        }
+        
+        recordPhase(type, PurchasePhase.PUMPING, pumpingStart);
+        
+        //Price that customer have to pay , what is counted as revenue to the minor unit
+        long revenueInMinorUnits = FixedPoint.priceOf(milliLitres, priceInMinorUnits);
+        
+        //Counted for the gas type and the gas pump together as far as snapshots can tell
+        snapshotGate.enter();
+        try {
+            countersByType.get(type).recordSale(milliLitres, revenueInMinorUnits);
+            servingPump.getCounters().recordSale(milliLitres, revenueInMinorUnits);
+        } finally {
+            snapshotGate.exit();
+        }
+        
+        recordTransaction(TransactionLog.Kind.SALE, type, servingPump.getIndex(), milliLitres, revenueInMinorUnits);
+        
+        return revenueInMinorUnits;
+    }
+    
+    /**
+     * Claim a gas pump of the gas type with at least milliLitres remaining , null when no gas pump has enough gas.
+     * The amount is reserved on the returned gas pump. In try lock mode or with a customer queue a free gas pump is
+     * also locked by the calling thread , otherwise the caller has to wait for it. Gas pumps without enough gas are
+     * never waited for
+     * 
+     * @param type
+     * @param milliLitres
+     * @return (ManagedPump) servingPump
+     */
+    private ManagedPump claimGasPump(GasType type, long milliLitres) {
+        
+        //Gas pumps in the order of the allocation strategy , healthy ones first
+        List<ManagedPump> candidates = healthyFirst(allocationStrategy.order(gasPumpsByType.get(type), milliLitres));
+        
+        //Skips busy gas pumps first , always with a customer queue so the permit of an admitted customer matches a
+        //free gas pump
+        if(selectionMode == PumpSelectionMode.TRY_LOCK || customerQueues != null){
+            
+            boolean busyPumpSkipped = false;
+            
+            for(ManagedPump candidate : candidates){
+                
+                if(!candidate.tryReserve(milliLitres)){
+                    continue;
+                }
+                
+                if(candidate.tryLock()){
+                    return candidate;
+                }
+                
+                candidate.release(milliLitres);
+                busyPumpSkipped = true;
+            }
+            
+            //No gas pump with enough gas , nothing to wait for
+            if(!busyPumpSkipped){
+                return null;
+            }
+            
+            //Every gas pump with enough gas is busy , waits for the one with the fewest customers
+            ManagedPump leastBusyPump = leastBusyGasPump(candidates, milliLitres);
+            
+            if(leastBusyPump != null && leastBusyPump.tryReserve(milliLitres)){
+                return leastBusyPump;
+            }
+        }
+        
+        //First gas pump with enough gas
+        for(ManagedPump candidate : candidates){
+            
+            if(candidate.tryReserve(milliLitres)){
+                return candidate;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Reserve the amount on a gas pump of the gas type without claiming it , null when no gas pump has enough gas.
+     * In try lock mode idle gas pumps are preferred
+     * 
+     * @param type
+     * @param milliLitres
+     * @return (ManagedPump) reservedPump
+     */
+    private ManagedPump reserveGasPump(GasType type, long milliLitres) {
+        
+        //Gas pumps in the order of the allocation strategy , healthy ones first
+        List<ManagedPump> candidates = healthyFirst(allocationStrategy.order(gasPumpsByType.get(type), milliLitres));
+        
+        if(selectionMode == PumpSelectionMode.TRY_LOCK){
+            
+            for(ManagedPump candidate : candidates){
+                if(candidate.getQueueLength() == 0 && candidate.tryReserve(milliLitres)){
+                    return candidate;
+                }
+            }
+            
+            ManagedPump leastBusyPump = leastBusyGasPump(candidates, milliLitres);
+            
+            if(leastBusyPump != null && leastBusyPump.tryReserve(milliLitres)){
+                return leastBusyPump;
+            }
+        }
+        
+        for(ManagedPump candidate : candidates){
+            if(candidate.tryReserve(milliLitres)){
+                return candidate;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Move gas pumps with an open circuit behind the healthy ones , keeping the order otherwise. A gas pump due for a
+     * probe goes first , the customer it serves claims the probe. Gas pumps with an open circuit are still used when the
+     * healthy ones do not have enough gas , a slow gas pump beats no gas
+     * 
+     * @param candidates
+     * @return candidates , healthy ones first
+     */
+    private List<ManagedPump> healthyFirst(List<ManagedPump> candidates) {
+        
+        if(failureThreshold == 0){
+            return candidates;
+        }
+        
+        long now = System.nanoTime();
+        
+        int healthy = 0;
+        for(ManagedPump candidate : candidates){
+            if(candidate.getHealth().isHealthy(now)){
+                healthy++;
+            }
+        }
+        
+        //Nothing to move , nothing allocated
+        if(healthy == candidates.size()){
+            return candidates;
+        }
+        
+        List<ManagedPump> ordered = new ArrayList<ManagedPump>(candidates.size());
+        List<ManagedPump> unhealthy = new ArrayList<ManagedPump>(candidates.size() - healthy);
+        
+        for(ManagedPump candidate : candidates){
+            
+            PumpHealth health = candidate.getHealth();
+            
+            if(health.isHealthy(now)){
+                ordered.add(candidate);
+            } else if(health.isProbeDue(now, openNanos)){
+                ordered.add(0, candidate);
+            } else {
+                unhealthy.add(candidate);
+            }
+        }
+        
+        ordered.addAll(unhealthy);
+        
+        return ordered;
+    }
+    
+    /**
+     * Wait at most maxWaitNanos for a gas pump to become free and claim it , the time waited is counted for the gas
+     * pump and gas type. An interrupted customer gives up waiting , the interrupt status is kept
+     * 
+     * @param managedPump
+     * @param type
+     * @param maxWaitNanos
+     * @return (boolean) claimed
+     */
+    private boolean lockGasPump(ManagedPump managedPump, GasType type, long maxWaitNanos) {
+        
+        long waitStart = System.nanoTime();
+        boolean claimed;
+        
+        try {
+            claimed = managedPump.tryLock(maxWaitNanos);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            claimed = false;
+        }
+        
+        recordLockWait(managedPump, type, System.nanoTime() - waitStart);
+        
+        return claimed;
+    }
+    
+    /**
+     * Get the nanoseconds a customer may still wait
+     * 
+     * @param purchaseStart System.nanoTime when the purchase was made
+     * @param timeoutNanos
+     * @return (long) remainingNanos , NO_TIMEOUT without a timeout
      */
-    public void addGasPump(GasPump pump) {
-      this.gasPumps.add(pump);
+    private static long remainingNanos(long purchaseStart, long timeoutNanos) {
+        
+        if(timeoutNanos == NO_TIMEOUT){
+            return NO_TIMEOUT;
+        }
+        
+        return timeoutNanos - (System.nanoTime() - purchaseStart);
     }
-
+    
     /**
-     * Get collection of all gas pumps
-     * @return gasPumps
+     * Count the time a customer waited for a gas pump
+     * 
+     * @param managedPump
+     * @param type
+     * @param waitNanos 
      */
-    public Collection<GasPump> getGasPumps() {
-      return this.gasPumps;
+    private void recordLockWait(ManagedPump managedPump, GasType type, long waitNanos) {
+        managedPump.getCounters().lockWaitNanos.add(waitNanos);
+        countersByType.get(type).lockWaitNanos.add(waitNanos);
+        
+        if(metricsEnabled){
+            metricsListener.onPhase(type, PurchasePhase.LOCK_WAIT, waitNanos);
+        }
     }
-
+    
     /**
-     * 
-     * Customer buys gas specifying gas type, amount in litres and maximum price per litre
+     * Report a completed purchase phase to the metrics listener
      * 
      * @param type
-     * @param amountInLiters
-     * @param maxPricePerLiter
-     * @return
-     * @throws NotEnoughGasException
-     * @throws GasTooExpensiveException 
+     * @param phase
+     * @param phaseStart System.nanoTime when the phase started
+     * @return (long) start of the next phase , 0 when metrics are disabled
      */
-    public double buyGas(GasType type, double amountInLiters, double maxPricePerLiter) throws NotEnoughGasException, GasTooExpensiveException {
-      
+    private long recordPhase(GasType type, PurchasePhase phase, long phaseStart) {
         
-        //Checks for validity of params
-        validateParameters(type, amountInLiters, maxPricePerLiter);
+        if(!metricsEnabled){
+            return 0;
+        }
         
-        //Checks for gas too expensive
-        checkGasTooExpensive(type, maxPricePerLiter);
+        long phaseEnd = System.nanoTime();
+        metricsListener.onPhase(type, phase, phaseEnd - phaseStart);
         
-        //Price that customer have to pay
-        double priceToPay = 0.0d;
+        return phaseEnd;
+    }
+    
+    /**
+     * Find the gas pump with enough gas and the fewest customers being served or waiting , null when none has enough gas.
+     * Gas pumps with an open circuit are only waited for when no healthy gas pump has enough gas
+     * 
+     * @param candidates
+     * @param milliLitres
+     * @return (ManagedPump) leastBusyPump
+     */
+    private ManagedPump leastBusyGasPump(List<ManagedPump> candidates, long milliLitres) {
         
-        //Check for if the gas pump
-        boolean gasPumpFound = false;
+        ManagedPump leastBusyPump = null;
+        int leastQueueLength = Integer.MAX_VALUE;
+        boolean leastBusyHealthy = false;
         
-        LOG.log(Level.INFO, "Requested for gas pump type {0} with amount {1}", new Object[]{type, amountInLiters});
+        for(ManagedPump candidate : candidates){
+            
+            if(candidate.getAvailableMilliLitres() < milliLitres){
+                continue;
+            }
+            
+            int queueLength = candidate.getQueueLength();
+            boolean healthy = failureThreshold == 0 || candidate.getHealth().getState() == CircuitState.CLOSED;
+            
+            if(healthy && !leastBusyHealthy || healthy == leastBusyHealthy && queueLength < leastQueueLength){
+                leastBusyPump = candidate;
+                leastQueueLength = queueLength;
+                leastBusyHealthy = healthy;
+            }
+        }
         
-        //Loops through all gas pumps to get right gas pump
-         for(GasPump gasPump : gasPumps){
-             
-             //Checks for right gas pump per type request
-             if(gasPump.getGasType().equals(type)){
-                 
-                 LOG.log(Level.INFO, "Found the right gas pump : {0}", gasPump.getGasType().name());
-                 
-                 //Price of gas type
-                 double gasTypePrice = gasTypePrices.get(gasPump.getGasType());
-                 
-                 //Lock gas pump for thread safety , one gas pump operation at a time
-                 synchronized(gasPump){
-                     
-                     //Checks if gas pump has enough fuel
-                     if(gasPump.getRemainingAmount() >= amountInLiters){ 
-                         
-                        //Serves gas with amountInLiters value
-                         gasPump.pumpGas(amountInLiters);
-                         
-                         priceToPay = amountInLiters * gasTypePrice;
-                         
-                         noOfSales.incrementAndGet();
-                         revenue.addAndGet((long) priceToPay);
-                         
-                         gasPumpFound = true;
-                         
-                         LOG.log(Level.INFO, "{0} gas pump remaining amount of {1}", new Object[]{gasPump.getGasType().name(), gasPump.getRemainingAmount()});
-                         
-                         break;
-                     }
-                     
-                 }
-             }
-         }
-         
-         
-         //Check if no gas pump was found
-         if(!gasPumpFound){
-             
-             noOfCancellationsNoGas.incrementAndGet();
-             throw new NotEnoughGasException();
-         }
-         
-         LOG.log(Level.INFO, "Price to pay {0}", priceToPay);
-         
-         return priceToPay;
+        return leastBusyPump;
     }
     
     /**
-     * Validate Parameters passed
+     * Validate Parameters passed , amounts are rounded to milli litres and a positive amount below half a milli
+     * litre buys one milli litre , the least a gas pump dispenses
      * 
+     * @param prices
      * @param type
      * @param amountInLiters
      * @param maxPricePerLiter
+     * @return (long) milliLitres of the amount
      * @throws IllegalArgumentException 
      */
-    private void validateParameters(GasType type, double amountInLiters, double maxPricePerLiter) throws IllegalArgumentException {
-        if(type == null || !gasTypePrices.containsKey(type) ||  amountInLiters <= 0 || maxPricePerLiter <= 0){
+    private long validateParameters(PriceTable prices, GasType type, double amountInLiters, double maxPricePerLiter) throws IllegalArgumentException {
+        
+        long milliLitres = ManagedPump.toMilliLitres(amountInLiters);
+        
+        if(milliLitres == 0 && amountInLiters > 0){
+            milliLitres = 1;
+        }
+        
+        if(type == null || !prices.isPriced(type) ||  milliLitres <= 0 || maxPricePerLiter <= 0){
             throw new InvalidParameterException();
         }
+        
+        return milliLitres;
     }
     
     /**
-     * Check for gas too expensive
+     * Check for gas too expensive , the cancellation is counted
      * 
      * @param type
+     * @param gasTypePrice
+     * @param milliLitres
      * @param maxPricePerLiter 
+     * @return (boolean) tooExpensive
      */
-    private void checkGasTooExpensive(GasType type,double maxPricePerLiter) throws GasTooExpensiveException{
+    private boolean isGasTooExpensive(GasType type, double gasTypePrice, long milliLitres, double maxPricePerLiter) {
         
          //Checks if price of the gas type requested is greater than  - gas too expenisve
-        if(maxPricePerLiter < gasTypePrices.get(type)){
+        if(maxPricePerLiter < gasTypePrice){
             
             //increase number of cancellations for too expensive
-            noOfCancellationsTooExpensive.incrementAndGet();
-            throw new GasTooExpensiveException();
+            countersByType.get(type).cancellationsTooExpensive.increment();
+            recordTransaction(TransactionLog.Kind.CANCELLED_TOO_EXPENSIVE, type, TransactionJournal.NONE, milliLitres,
+                    FixedPoint.toMinorUnits(maxPricePerLiter));
+            return true;
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Count a customer who gave up waiting for a gas pump at the deadline or when interrupted
+     * 
+     * @param type
+     * @param milliLitres
+     * @return purchaseResult
+     */
+    private PurchaseResult recordTimedOut(GasType type, long milliLitres) {
+        
+        countersByType.get(type).cancellationsTimedOut.increment();
+        recordTransaction(TransactionLog.Kind.CANCELLED_TIMED_OUT, type, TransactionJournal.NONE, milliLitres, 0);
+        
+        return PurchaseResult.TIMED_OUT;
+    }
+    
+    /**
+     * Count a cancellation because of no gas
+     * 
+     * @param type
+     * @param milliLitres 
+     */
+    private void recordNoGas(GasType type, long milliLitres) {
+        countersByType.get(type).cancellationsNoGas.increment();
+        recordTransaction(TransactionLog.Kind.CANCELLED_NO_GAS, type, TransactionJournal.NONE, milliLitres, 0);
+    }
+    
+    /**
+     * Write a sale or cancellation to the transaction log and the journal
+     * 
+     * @param kind
+     * @param type
+     * @param pumpIndex gas pump of a sale , TransactionJournal.NONE for cancellations
+     * @param milliLitres
+     * @param amountInMinorUnits 
+     */
+    private void recordTransaction(TransactionLog.Kind kind, GasType type, int pumpIndex, long milliLitres, long amountInMinorUnits) {
+        
+        transactionLog.record(kind, type, milliLitres, amountInMinorUnits);
+        
+        if(journal != null){
+            journal.appendTransaction(kind, type, pumpIndex, milliLitres, amountInMinorUnits);
+        }
+        
+        DemandRates rates = demandRates.get();
+        if(rates != null){
+            rates.record(kind, type, milliLitres);
+        }
+    }
+    
+    /**
+     * Start feeding sales and cancellations to the demand rates of a pricing engine
+     * 
+     * @param rates
+     * @throws InvalidParameterException when another pricing engine is attached
+     */
+    void attachDemandRates(DemandRates rates) {
+        if(!demandRates.compareAndSet(null, rates)){
+            throw new InvalidParameterException();
         }
     }
     
+    /**
+     * Stop feeding the demand rates of a pricing engine
+     * 
+     * @param rates 
+     */
+    void detachDemandRates(DemandRates rates) {
+        demandRates.compareAndSet(rates, null);
+    }
+    
+    
+    /**
+     * Stop the threads serving asynchronous purchases , purchases already queued are still served
+     */
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+    
+    /**
+     * Get how asynchronous purchases are run
+     * 
+     * @return executionMode
+     */
+    public ExecutionMode getExecutionMode() {
+        return this.executionMode;
+    }
+    
+    /**
+     * Get how gas is dispensed from a gas pump
+     * 
+     * @return dispenseMode
+     */
+    public DispenseMode getDispenseMode() {
+        return this.dispenseMode;
+    }
+    
+    /**
+     * Get the selection mode used to claim gas pumps
+     * 
+     * @return selectionMode
+     */
+    public PumpSelectionMode getSelectionMode() {
+        return this.selectionMode;
+    }
+    
+    /**
+     * Get the strategy deciding which gas pumps a purchase is served from
+     * 
+     * @return allocationStrategy
+     */
+    public PumpAllocationStrategy getAllocationStrategy() {
+        return this.allocationStrategy;
+    }
+    
+    /**
+     * Replace the strategy deciding which gas pumps a purchase is served from , purchases already choosing a gas pump
+     * keep the previous one
+     * 
+     * @param allocationStrategy 
+     */
+    void setAllocationStrategy(PumpAllocationStrategy allocationStrategy) {
+        this.allocationStrategy = allocationStrategy;
+    }
     
     /**
-     * Get current revenue
+     * Get current revenue , exact to the minor currency unit
      * 
      * @return (double) revenue
      */
     public double getRevenue() {
-        return this.revenue.doubleValue();
+        
+        long revenue = 0;
+        for(SalesCounters counters : countersByType.values()){
+            revenue += counters.revenue.sum();
+        }
+        
+        return FixedPoint.toCurrencyUnits(revenue);
     }
 
     /**
@@ -211,7 +1749,13 @@ public class GasStationManager implements GasStation {
      * @return (int) noOfSales
      */
     public int getNumberOfSales() {
-       return this.noOfSales.get();
+        
+        long noOfSales = 0;
+        for(SalesCounters counters : countersByType.values()){
+            noOfSales += counters.sales.sum();
+        }
+        
+        return (int) noOfSales;
     }
 
     /**
@@ -220,7 +1764,13 @@ public class GasStationManager implements GasStation {
      * @return (int) noOfCancellationsNoGas
      */
     public int getNumberOfCancellationsNoGas() {
-        return this.noOfCancellationsNoGas.get();
+        
+        long noOfCancellationsNoGas = 0;
+        for(SalesCounters counters : countersByType.values()){
+            noOfCancellationsNoGas += counters.cancellationsNoGas.sum();
+        }
+        
+        return (int) noOfCancellationsNoGas;
     }
 
     /**
@@ -229,7 +1779,122 @@ public class GasStationManager implements GasStation {
      * @return (int) noOfCancellationsTooExpensive
      */
     public int getNumberOfCancellationsTooExpensive() {
-        return this.noOfCancellationsTooExpensive.get();
+        
+        long noOfCancellationsTooExpensive = 0;
+        for(SalesCounters counters : countersByType.values()){
+            noOfCancellationsTooExpensive += counters.cancellationsTooExpensive.sum();
+        }
+        
+        return (int) noOfCancellationsTooExpensive;
+    }
+    
+    /**
+     * Get number of customers turned away because too many were waiting for a gas pump
+     * 
+     * @return (int) noOfCancellationsQueueFull
+     */
+    public int getNumberOfCancellationsQueueFull() {
+        
+        long noOfCancellationsQueueFull = 0;
+        for(SalesCounters counters : countersByType.values()){
+            noOfCancellationsQueueFull += counters.cancellationsQueueFull.sum();
+        }
+        
+        return (int) noOfCancellationsQueueFull;
+    }
+    
+    /**
+     * Get number of customers given up waiting for a gas pump
+     * 
+     * @return (int) noOfCancellationsQueueTimedOut
+     */
+    public int getNumberOfCancellationsQueueTimedOut() {
+        
+        long noOfCancellationsQueueTimedOut = 0;
+        for(SalesCounters counters : countersByType.values()){
+            noOfCancellationsQueueTimedOut += counters.cancellationsQueueTimedOut.sum();
+        }
+        
+        return (int) noOfCancellationsQueueTimedOut;
+    }
+    
+    /**
+     * Get number of customers whose purchase deadline passed or who were interrupted while waiting for a gas pump
+     * 
+     * @return (int) noOfCancellationsTimedOut
+     */
+    public int getNumberOfCancellationsTimedOut() {
+        
+        long noOfCancellationsTimedOut = 0;
+        for(SalesCounters counters : countersByType.values()){
+            noOfCancellationsTimedOut += counters.cancellationsTimedOut.sum();
+        }
+        
+        return (int) noOfCancellationsTimedOut;
+    }
+    
+    /**
+     * Get number of customers waiting in the customer queue of a gas type , 0 without a customer queue
+     * 
+     * @param type
+     * @return (int) queueDepth
+     */
+    public int getQueueDepth(GasType type) {
+        return customerQueues == null ? 0 : customerQueues.get(type).getDepth();
+    }
+    
+    /**
+     * Get the litres of a gas type not yet reserved by any customer , on gas pumps in rotation or not
+     * 
+     * @param type
+     * @return (double) availableLitres
+     */
+    public double getAvailableLitres(GasType type) {
+        
+        long availableMilliLitres = 0;
+        for(ManagedPump managedPump : gasPumpsByType.get(type)){
+            availableMilliLitres += managedPump.getAvailableMilliLitres();
+        }
+        
+        return (double) availableMilliLitres / ManagedPump.MILLI_LITRES_PER_LITRE;
+    }
+    
+    /**
+     * Get the litres of a gas type ordered and not delivered yet , see RefillScheduler
+     * 
+     * @param type
+     * @return (double) pendingLitres
+     */
+    public double getPendingLitres(GasType type) {
+        
+        long pendingMilliLitres = 0;
+        for(ManagedPump managedPump : gasPumpsByType.get(type)){
+            pendingMilliLitres += managedPump.getPendingMilliLitres();
+        }
+        
+        return (double) pendingMilliLitres / ManagedPump.MILLI_LITRES_PER_LITRE;
+    }
+    
+    /**
+     * Get the sales and cancellations per gas type and per gas pump , without blocking purchases
+     * 
+     * @return statistics
+     */
+    public StationStatistics getStatistics() {
+        
+        EnumMap<GasType, StationStatistics.GasTypeStatistics> gasTypeStatistics = new EnumMap<GasType, StationStatistics.GasTypeStatistics>(GasType.class);
+        List<StationStatistics.PumpStatistics> pumpStatistics = new ArrayList<StationStatistics.PumpStatistics>();
+        
+        for(GasType gasType : GasType.values()){
+            
+            gasTypeStatistics.put(gasType, new StationStatistics.GasTypeStatistics(gasType, countersByType.get(gasType)));
+            
+            for(ManagedPump managedPump : gasPumpsByType.get(gasType)){
+                pumpStatistics.add(new StationStatistics.PumpStatistics(managedPump));
+            }
+        }
+        
+        return new StationStatistics(gasTypeStatistics, pumpStatistics);
     }
 
     /**
@@ -237,20 +1902,245 @@ public class GasStationManager implements GasStation {
      * 
      * @param type
      * @return (double) gasTypePrice
+     * @throws InvalidParameterException when the gas type has no price
      */
     public double getPrice(GasType type) {
-        return this.gasTypePrices.get(type);
+        
+        if(type == null){
+            throw new InvalidParameterException();
+        }
+        
+        return this.priceTable.get().getPrice(type);
+    }
+    
+    /**
+     * Get the prices of all gas types as of now , with the number of price changes made so far
+     * 
+     * @return priceTable
+     */
+    public PriceTable getPriceTable() {
+        return this.priceTable.get();
     }
 
     /**
-     * Set price a particular gas type
+     * Set price a particular gas type , rounded to minor currency units. Purchases already checked keep the price they
+     * were checked against
      * 
      * @param type
      * @param price 
      */
     public void setPrice(GasType type, double price) {
-        synchronized(this) {
-            this.gasTypePrices.put(type, price);
+        
+        if(type == null || Double.isNaN(price) || Double.isInfinite(price)){
+            throw new InvalidParameterException();
+        }
+        
+        //Swaps in a copy with the new price , retried when another price changed meanwhile
+        PriceTable current;
+        PriceTable changed;
+        do {
+            current = this.priceTable.get();
+            changed = current.withPrice(type, price);
+        } while(!this.priceTable.compareAndSet(current, changed));
+        
+        //Replay keeps the price of the highest version , journal order does not matter
+        if(journal != null){
+            journal.appendPrice(type, changed.getPrice(type), changed.getVersion());
+        }
+    }
+    
+    /**
+     * Read-only view of the gas pumps of a gas type , mapped from their managed gas pumps on access
+     */
+    private static final class GasPumpView extends AbstractList<GasPump> implements RandomAccess {
+        
+        private final List<ManagedPump> managedPumps;
+        
+        GasPumpView(List<ManagedPump> managedPumps) {
+            this.managedPumps = managedPumps;
+        }
+        
+        @Override
+        public GasPump get(int index) {
+            return managedPumps.get(index).getGasPump();
+        }
+        
+        @Override
+        public int size() {
+            return managedPumps.size();
+        }
+        
+    }
+    
+    /**
+     * Builder for gas stations , defaults to blocking first fit selection with dispatcher lanes , timed dispensing ,
+     * no metrics , no transaction log , no customer queue , no journal and no circuit breaker
+     */
+    public static class Builder {
+        
+        private PumpSelectionMode selectionMode = PumpSelectionMode.BLOCKING;
+        
+        private PumpAllocationStrategy allocationStrategy = StandardPumpAllocationStrategy.FIRST_FIT;
+        
+        private ExecutionMode executionMode = ExecutionMode.DISPATCHER_LANES;
+        
+        private DispenseMode dispenseMode = DispenseMode.TIMED;
+        
+        private StationMetricsListener metricsListener = StationMetricsListener.NO_OP;
+        
+        private TransactionLog transactionLog = TransactionLog.DISABLED;
+        
+        private int maxQueueDepth = Integer.MAX_VALUE;
+        
+        private long queueTimeoutNanos = Long.MAX_VALUE;
+        
+        private TransactionJournal journal;
+        
+        private int failureThreshold;
+        
+        private long openNanos = TimeUnit.SECONDS.toNanos(30);
+        
+        private double slowFactor = 2;
+        
+        private long slowGraceNanos = TimeUnit.MILLISECONDS.toNanos(500);
+        
+        /**
+         * How a gas pump is claimed for a purchase
+         * 
+         * @param selectionMode
+         * @return builder
+         */
+        public Builder selectionMode(PumpSelectionMode selectionMode) {
+            this.selectionMode = selectionMode;
+            return this;
+        }
+        
+        /**
+         * Which gas pumps of a type a purchase is served from
+         * 
+         * @param allocationStrategy
+         * @return builder
+         */
+        public Builder allocationStrategy(PumpAllocationStrategy allocationStrategy) {
+            this.allocationStrategy = allocationStrategy;
+            return this;
+        }
+        
+        /**
+         * How asynchronous purchases are run
+         * 
+         * @param executionMode
+         * @return builder
+         */
+        public Builder executionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+        
+        /**
+         * How gas is dispensed from a gas pump , INSTANT for simulations
+         * 
+         * @param dispenseMode
+         * @return builder
+         */
+        public Builder dispenseMode(DispenseMode dispenseMode) {
+            this.dispenseMode = dispenseMode;
+            return this;
+        }
+        
+        /**
+         * Receives the latency of every purchase phase , e.g. a LatencyRecorder
+         * 
+         * @param metricsListener
+         * @return builder
+         */
+        public Builder metricsListener(StationMetricsListener metricsListener) {
+            this.metricsListener = metricsListener;
+            return this;
+        }
+        
+        /**
+         * Asynchronous log of sales and cancellations , closing it is left to the caller
+         * 
+         * @param transactionLog
+         * @return builder
+         */
+        public Builder transactionLog(TransactionLog transactionLog) {
+            this.transactionLog = transactionLog;
+            return this;
+        }
+        
+        /**
+         * Customers of a gas type wait for a free gas pump in arrival order. Customers arriving while maxDepth customers
+         * are already waiting are turned away at once , customers waiting longer than the timeout give up. Customers
+         * finding a free gas pump are never turned away , with maxDepth 0 nobody waits.
+         * Only purchases made with buyGas and tryBuyGas wait in the queue
+         * 
+         * @param maxDepth
+         * @param timeout
+         * @param unit
+         * @return builder
+         */
+        public Builder customerQueue(int maxDepth, long timeout, TimeUnit unit) {
+            this.maxQueueDepth = maxDepth;
+            this.queueTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+        
+        /**
+         * Durable journal of sales , cancellations , prices and gas pumps. The gas station is rebuilt from what the
+         * journal already holds , gas pumps and prices of a journal that is not empty must not be added again.
+         * Closing it is left to the caller , what the gas station does after that is no longer journaled
+         * 
+         * @param journal
+         * @return builder
+         */
+        public Builder journal(TransactionJournal journal) {
+            this.journal = journal;
+            return this;
+        }
+        
+        /**
+         * Gas pumps are taken out of the selection after failureThreshold slow or failed dispenses in a row , or at
+         * once when a dispense runs past its allowed time. Customers are served by the other gas pumps of the type
+         * while they have enough gas. After the open time one customer probes the gas pump , a dispense in time puts
+         * it back. Off by default , a failureThreshold of 0 turns health tracking off. The open time defaults to
+         * 30 seconds
+         * 
+         * @param failureThreshold
+         * @param openTime
+         * @param unit
+         * @return builder
+         */
+        public Builder circuitBreaker(int failureThreshold, long openTime, TimeUnit unit) {
+            this.failureThreshold = failureThreshold;
+            this.openNanos = unit.toNanos(openTime);
+            return this;
+        }
+        
+        /**
+         * A dispense is slow when it takes longer than slowFactor times the 100 milliseconds per litre of
+         * GasPump.pumpGas plus the grace time , nothing but the grace time with instant dispensing.
+         * Defaults to twice the time plus half a second
+         * 
+         * @param slowFactor
+         * @param grace
+         * @param unit
+         * @return builder
+         */
+        public Builder slowDispense(double slowFactor, long grace, TimeUnit unit) {
+            this.slowFactor = slowFactor;
+            this.slowGraceNanos = unit.toNanos(grace);
+            return this;
+        }
+        
+        /**
+         * Build the gas station
+         * 
+         * @return stationManager
+         */
+        public GasStationManager build() {
+            return new GasStationManager(this);
         }
         
     }
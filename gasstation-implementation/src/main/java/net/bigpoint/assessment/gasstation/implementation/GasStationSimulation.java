@@ -0,0 +1,474 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasStation;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Discrete event simulation of the customers of a gas station on a virtual clock , days of traffic run in
+ * milliseconds and runs with the same seed give the same report.
+ *
+ * Customers of every gas type arrive with their own distributions of time between arrivals , litres and maximum
+ * price and buy gas through the GasStation interface on a single thread. The gas station should dispense instantly ,
+ * e.g. a GasStationManager with DispenseMode.INSTANT , pumping time is simulated instead : the gas pump that served
+ * a customer , found by the gas it lost in the ledger of the gas station , is busy for the litres pumped at the
+ * simulated pumping rate and the next customer it serves waits for it , as customers wait for their reserved gas
+ * pump in a gas station.
+ *
+ * While the simulation runs it installs an allocation strategy on a GasStationManager that moves gas pumps busy on
+ * the virtual clock behind the idle ones , like try lock selection skips gas pumps locked by a pumping customer. The
+ * busy state stays in the simulation , the previous allocation strategy is put back when the run ends
+ */
+public final class GasStationSimulation {
+
+    /**
+     * Pumping rate of GasPump , 100 milliseconds per litre
+     */
+    public final static double DEFAULT_SECONDS_PER_LITRE = 0.1;
+
+    private final GasStation gasStation;
+
+    private final long seed;
+
+    private final double nanosPerLitre;
+
+    private final EnumMap<GasType, CustomerStream> customerStreams;
+
+    private GasStationSimulation(Builder builder) {
+        this.gasStation = builder.gasStation;
+        this.seed = builder.seed;
+        this.nanosPerLitre = builder.secondsPerLitre * 1e9;
+        this.customerStreams = new EnumMap<GasType, CustomerStream>(builder.customerStreams);
+    }
+
+    /**
+     * Start building a simulation of a gas station
+     *
+     * @param gasStation
+     * @return builder
+     */
+    public static Builder builder(GasStation gasStation) {
+        return new Builder(gasStation);
+    }
+
+    /**
+     * Customers of a gas type
+     */
+    private static final class CustomerStream {
+
+        final Distribution secondsBetweenArrivals;
+
+        final Distribution litres;
+
+        final Distribution maxPricePerLitre;
+
+        CustomerStream(Distribution secondsBetweenArrivals, Distribution litres, Distribution maxPricePerLitre) {
+            this.secondsBetweenArrivals = secondsBetweenArrivals;
+            this.litres = litres;
+            this.maxPricePerLitre = maxPricePerLitre;
+        }
+
+    }
+
+    /**
+     * Next customer of a gas type , customers arriving at the same time are served in the order they were drawn
+     */
+    private static final class Arrival implements Comparable<Arrival> {
+
+        final long nanos;
+
+        final long sequence;
+
+        final GasType gasType;
+
+        Arrival(long nanos, long sequence, GasType gasType) {
+            this.nanos = nanos;
+            this.sequence = sequence;
+            this.gasType = gasType;
+        }
+
+        @Override
+        public int compareTo(Arrival other) {
+            if(nanos != other.nanos){
+                return nanos < other.nanos ? -1 : 1;
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+    /**
+     * Gas pump on the virtual clock
+     */
+    private static final class SimulatedPump {
+
+        final GasPump gasPump;
+
+        /**
+         * The gas pump as managed by a GasStationManager , null for other gas stations
+         */
+        final ManagedPump managedPump;
+
+        /**
+         * Simulated times the customers of the gas pump are done , in the order they are served
+         */
+        final ArrayDeque<Long> customersDone = new ArrayDeque<Long>();
+
+        /**
+         * Customers being served or waiting at the current simulated time , read by the allocation strategy
+         */
+        volatile int customers;
+
+        double remainingBefore;
+
+        SimulatedPump(GasPump gasPump, ManagedPump managedPump) {
+            this.gasPump = gasPump;
+            this.managedPump = managedPump;
+        }
+
+        /**
+         * Gas left in the gas pump , from the ledger of a GasStationManager since it does not pump from the GasPump
+         * when dispensing instantly
+         *
+         * @return (double) remainingAmount
+         */
+        double getRemainingAmount() {
+            return managedPump != null ? FixedPoint.toLitres(managedPump.getRemainingMilliLitres()) : gasPump.getRemainingAmount();
+        }
+
+        /**
+         * Forget the customers done by now
+         *
+         * @param nanos
+         */
+        void advanceTo(long nanos) {
+
+            while(!customersDone.isEmpty() && customersDone.peekFirst() <= nanos){
+                customersDone.pollFirst();
+            }
+
+            customers = customersDone.size();
+        }
+
+        /**
+         * Serve a customer after the customers before , returns when the customer starts pumping
+         *
+         * @param nanos arrival of the customer
+         * @param pumpingNanos
+         * @return (long) start
+         */
+        long serve(long nanos, long pumpingNanos) {
+
+            long start = customersDone.isEmpty() ? nanos : Math.max(nanos, customersDone.peekLast());
+
+            customersDone.addLast(start + pumpingNanos);
+            customers = customersDone.size();
+
+            return start;
+        }
+
+    }
+
+    /**
+     * Allocation strategy installed on a GasStationManager while the simulation runs. Keeps the order of the
+     * allocation strategy it replaces and moves gas pumps with customers on the virtual clock behind the idle ones ,
+     * the least busy first , gas pumps busy on the virtual clock are still used when idle ones lack the gas
+     */
+    private static final class IdleFirstAllocationStrategy implements PumpAllocationStrategy {
+
+        final PumpAllocationStrategy allocationStrategy;
+
+        final ConcurrentHashMap<ManagedPump, SimulatedPump> simulatedPumps = new ConcurrentHashMap<ManagedPump, SimulatedPump>();
+
+        IdleFirstAllocationStrategy(PumpAllocationStrategy allocationStrategy) {
+            this.allocationStrategy = allocationStrategy;
+        }
+
+        @Override
+        public List<ManagedPump> order(List<ManagedPump> candidates, long milliLitres) {
+
+            List<ManagedPump> ordered = new ArrayList<ManagedPump>(allocationStrategy.order(candidates, milliLitres));
+
+            //The sort is stable , gas pumps with as many customers keep the order of the replaced strategy
+            Collections.sort(ordered, new Comparator<ManagedPump>() {
+                @Override
+                public int compare(ManagedPump first, ManagedPump second) {
+                    return Integer.compare(customers(first), customers(second));
+                }
+            });
+
+            return ordered;
+        }
+
+        private int customers(ManagedPump managedPump) {
+            SimulatedPump simulatedPump = simulatedPumps.get(managedPump);
+            return simulatedPump == null ? 0 : simulatedPump.customers;
+        }
+
+    }
+
+    /**
+     * Outcome of the customers of a gas type while the simulation runs
+     */
+    private static final class GasTypeTally {
+
+        long customers;
+        long sales;
+        long cancellationsNoGas;
+        long cancellationsTooExpensive;
+        double revenue;
+        long totalQueueWaitNanos;
+        final LatencyHistogram queueWaits = new LatencyHistogram();
+
+    }
+
+    /**
+     * Run the simulation from an empty virtual clock , the gas station keeps the sales of the run
+     *
+     * @param duration
+     * @param unit
+     * @return simulationReport
+     */
+    public SimulationReport run(long duration, TimeUnit unit) {
+
+        long endNanos = unit.toNanos(duration);
+        SplittableRandom random = new SplittableRandom(seed);
+
+        IdentityHashMap<GasPump, SimulatedPump> simulatedPumps = new IdentityHashMap<GasPump, SimulatedPump>();
+        EnumMap<GasType, List<SimulatedPump>> gasPumpsByType = new EnumMap<GasType, List<SimulatedPump>>(GasType.class);
+        int knownGasPumps = -1;
+
+        EnumMap<GasType, GasTypeTally> tallies = new EnumMap<GasType, GasTypeTally>(GasType.class);
+        PriorityQueue<Arrival> arrivals = new PriorityQueue<Arrival>();
+        long sequence = 0;
+
+        for(GasType gasType : GasType.values()){
+            tallies.put(gasType, new GasTypeTally());
+            if(customerStreams.containsKey(gasType)){
+                arrivals.add(new Arrival(nextArrival(0, customerStreams.get(gasType), random), sequence++, gasType));
+            }
+        }
+
+        //Gas pumps busy on the virtual clock are moved behind idle ones while the simulation runs
+        GasStationManager stationManager = gasStation instanceof GasStationManager ? (GasStationManager) gasStation : null;
+        IdleFirstAllocationStrategy allocationStrategy = null;
+        if(stationManager != null){
+            allocationStrategy = new IdleFirstAllocationStrategy(stationManager.getAllocationStrategy());
+            stationManager.setAllocationStrategy(allocationStrategy);
+        }
+
+        try {
+            while(!arrivals.isEmpty() && arrivals.peek().nanos <= endNanos){
+
+                Arrival arrival = arrivals.poll();
+                CustomerStream customerStream = customerStreams.get(arrival.gasType);
+                GasTypeTally tally = tallies.get(arrival.gasType);
+
+                arrivals.add(new Arrival(nextArrival(arrival.nanos, customerStream, random), sequence++, arrival.gasType));
+
+                //Gas pumps may be added while the simulation runs
+                if(gasStation.getGasPumps().size() != knownGasPumps){
+                    knownGasPumps = groupGasPumps(gasPumpsByType, simulatedPumps, allocationStrategy);
+                }
+
+                List<SimulatedPump> gasPumps = gasPumpsByType.get(arrival.gasType);
+                for(SimulatedPump simulatedPump : gasPumps){
+                    simulatedPump.advanceTo(arrival.nanos);
+                    simulatedPump.remainingBefore = simulatedPump.getRemainingAmount();
+                }
+
+                double litres = customerStream.litres.sample(random);
+                double maxPricePerLitre = customerStream.maxPricePerLitre.sample(random);
+
+                tally.customers++;
+
+                try {
+                    tally.revenue += gasStation.buyGas(arrival.gasType, litres, maxPricePerLitre);
+                    tally.sales++;
+                } catch (NotEnoughGasException ex) {
+                    tally.cancellationsNoGas++;
+                    continue;
+                } catch (GasTooExpensiveException ex) {
+                    tally.cancellationsTooExpensive++;
+                    continue;
+                }
+
+                //The customer waits for the gas pump that lost the gas , then keeps it busy while pumping
+                for(SimulatedPump simulatedPump : gasPumps){
+
+                    if(simulatedPump.getRemainingAmount() < simulatedPump.remainingBefore){
+
+                        long start = simulatedPump.serve(arrival.nanos, (long) (litres * nanosPerLitre));
+
+                        tally.totalQueueWaitNanos += start - arrival.nanos;
+                        tally.queueWaits.record(start - arrival.nanos);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            if(stationManager != null){
+                stationManager.setAllocationStrategy(allocationStrategy.allocationStrategy);
+            }
+        }
+
+        EnumMap<GasType, SimulationReport.GasTypeReport> gasTypeReports = new EnumMap<GasType, SimulationReport.GasTypeReport>(GasType.class);
+        for(Map.Entry<GasType, GasTypeTally> entry : tallies.entrySet()){
+
+            GasTypeTally tally = entry.getValue();
+
+            gasTypeReports.put(entry.getKey(), new SimulationReport.GasTypeReport(entry.getKey(), endNanos, tally.customers, tally.sales,
+                    tally.cancellationsNoGas, tally.cancellationsTooExpensive, tally.revenue, tally.totalQueueWaitNanos,
+                    tally.queueWaits.snapshotAndReset()));
+        }
+
+        return new SimulationReport(endNanos, gasTypeReports);
+    }
+
+    private static long nextArrival(long nanos, CustomerStream customerStream, SplittableRandom random) {
+        return nanos + Math.max(1, (long) (customerStream.secondsBetweenArrivals.sample(random) * 1e9));
+    }
+
+    /**
+     * Group the gas pumps of the gas station by gas type , gas pumps already known keep their customers. New gas
+     * pumps of a GasStationManager are made known to the installed allocation strategy
+     *
+     * @param gasPumpsByType
+     * @param simulatedPumps
+     * @param allocationStrategy null for other gas stations
+     * @return (int) number of gas pumps
+     */
+    private int groupGasPumps(EnumMap<GasType, List<SimulatedPump>> gasPumpsByType, IdentityHashMap<GasPump, SimulatedPump> simulatedPumps,
+            IdleFirstAllocationStrategy allocationStrategy) {
+
+        IdentityHashMap<GasPump, ManagedPump> managedPumps = new IdentityHashMap<GasPump, ManagedPump>();
+        if(gasStation instanceof GasStationManager){
+            for(GasType gasType : GasType.values()){
+                for(ManagedPump managedPump : ((GasStationManager) gasStation).getManagedPumps(gasType)){
+                    managedPumps.put(managedPump.getGasPump(), managedPump);
+                }
+            }
+        }
+
+        for(GasType gasType : GasType.values()){
+            gasPumpsByType.put(gasType, new ArrayList<SimulatedPump>());
+        }
+
+        int gasPumps = 0;
+
+        for(GasPump gasPump : gasStation.getGasPumps()){
+
+            SimulatedPump simulatedPump = simulatedPumps.get(gasPump);
+            if(simulatedPump == null){
+                simulatedPump = new SimulatedPump(gasPump, managedPumps.get(gasPump));
+                simulatedPumps.put(gasPump, simulatedPump);
+                if(simulatedPump.managedPump != null){
+                    allocationStrategy.simulatedPumps.put(simulatedPump.managedPump, simulatedPump);
+                }
+            }
+
+            gasPumpsByType.get(gasPump.getGasType()).add(simulatedPump);
+            gasPumps++;
+        }
+
+        return gasPumps;
+    }
+
+    /**
+     * Builder for simulations , defaults to seed 0 and the pumping rate of GasPump
+     */
+    public static class Builder {
+
+        private final GasStation gasStation;
+
+        private long seed;
+
+        private double secondsPerLitre = DEFAULT_SECONDS_PER_LITRE;
+
+        private final EnumMap<GasType, CustomerStream> customerStreams = new EnumMap<GasType, CustomerStream>(GasType.class);
+
+        private Builder(GasStation gasStation) {
+
+            if(gasStation == null){
+                throw new InvalidParameterException();
+            }
+
+            this.gasStation = gasStation;
+        }
+
+        /**
+         * Seed of the random numbers , runs with the same seed and customers give the same report
+         *
+         * @param seed
+         * @return builder
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Simulated time pumping a litre takes
+         *
+         * @param secondsPerLitre
+         * @return builder
+         */
+        public Builder secondsPerLitre(double secondsPerLitre) {
+
+            if(!(secondsPerLitre >= 0)){
+                throw new InvalidParameterException();
+            }
+
+            this.secondsPerLitre = secondsPerLitre;
+            return this;
+        }
+
+        /**
+         * Customers of a gas type , replaces customers of the gas type given before
+         *
+         * @param type
+         * @param secondsBetweenArrivals
+         * @param litres
+         * @param maxPricePerLitre
+         * @return builder
+         */
+        public Builder customers(GasType type, Distribution secondsBetweenArrivals, Distribution litres, Distribution maxPricePerLitre) {
+
+            if(type == null || secondsBetweenArrivals == null || litres == null || maxPricePerLitre == null){
+                throw new InvalidParameterException();
+            }
+
+            customerStreams.put(type, new CustomerStream(secondsBetweenArrivals, litres, maxPricePerLitre));
+            return this;
+        }
+
+        /**
+         * Build the simulation
+         *
+         * @return gasStationSimulation
+         */
+        public GasStationSimulation build() {
+            return new GasStationSimulation(this);
+        }
+
+    }
+
+}
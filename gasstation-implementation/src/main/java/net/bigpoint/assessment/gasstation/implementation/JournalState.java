@@ -0,0 +1,271 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * State of a gas station folded from the records of its journal : prices , gas pumps with the gas they were added
+ * with and delivered since , and the sales and cancellations per gas type and per gas pump
+ */
+final class JournalState {
+
+    /**
+     * Counters written to checkpoints
+     */
+    private final static int COUNTER_SALES = 1;
+    private final static int COUNTER_MILLI_LITRES = 2;
+    private final static int COUNTER_REVENUE = 3;
+    private final static int COUNTER_CANCELLATIONS_NO_GAS = 4;
+    private final static int COUNTER_CANCELLATIONS_TOO_EXPENSIVE = 5;
+    private final static int COUNTER_CANCELLATIONS_QUEUE_FULL = 6;
+    private final static int COUNTER_CANCELLATIONS_QUEUE_TIMED_OUT = 7;
+    private final static int COUNTER_CANCELLATIONS_TIMED_OUT = 8;
+
+    private final static TransactionLog.Kind[] TRANSACTION_KINDS = TransactionLog.Kind.values();
+
+    /**
+     * Price per gas type ordinal , NaN when never set
+     */
+    final double[] prices;
+
+    /**
+     * Price table version of each price
+     */
+    final long[] priceVersions;
+
+    final EnumMap<GasType, SalesCounters> countersByType;
+
+    /**
+     * Gas pumps by index
+     */
+    final TreeMap<Integer, PumpState> pumps;
+
+    JournalState() {
+
+        prices = new double[GasType.values().length];
+        Arrays.fill(prices, Double.NaN);
+        priceVersions = new long[GasType.values().length];
+
+        countersByType = new EnumMap<GasType, SalesCounters>(GasType.class);
+        for(GasType gasType : GasType.values()){
+            countersByType.put(gasType, new SalesCounters());
+        }
+
+        pumps = new TreeMap<Integer, PumpState>();
+    }
+
+    /**
+     * Gas pump as journaled
+     */
+    static final class PumpState {
+
+        final GasType gasType;
+
+        /**
+         * Gas the gas pump was added with and delivered since
+         */
+        long addedMilliLitres;
+
+        final SalesCounters counters = new SalesCounters();
+
+        /**
+         * Health counters , only restored from snapshots
+         */
+        final PumpHealth health = new PumpHealth();
+
+        PumpState(GasType gasType, long addedMilliLitres) {
+            this.gasType = gasType;
+            this.addedMilliLitres = addedMilliLitres;
+        }
+
+        /**
+         * @return the milli litres left in the gas pump
+         */
+        long getRemainingMilliLitres() {
+            return addedMilliLitres - counters.milliLitresDispensed.sum();
+        }
+
+    }
+
+    /**
+     * Receives the records of a checkpoint
+     */
+    interface RecordSink {
+
+        void record(byte kind, int gasType, int counter, int pumpIndex, long first, long second);
+
+    }
+
+    /**
+     * Latest version of the prices of all gas types
+     *
+     * @return (long) priceVersion
+     */
+    long getPriceVersion() {
+
+        long priceVersion = 0;
+        for(long version : priceVersions){
+            priceVersion = Math.max(priceVersion, version);
+        }
+
+        return priceVersion;
+    }
+
+    /**
+     * Fold a record into the state
+     *
+     * @throws InvalidParameterException when the record is of an unknown kind or gas type , or for a gas pump that
+     * was never added
+     */
+    void apply(byte kind, int gasType, int counter, int pumpIndex, long first, long second) {
+
+        if(gasType < 0 || gasType >= prices.length){
+            throw new InvalidParameterException("Journal record of unknown gas type " + gasType);
+        }
+
+        GasType type = GasType.values()[gasType];
+
+        switch(kind){
+            case TransactionJournal.KIND_SET_PRICE:
+                if(second >= priceVersions[gasType]){
+                    prices[gasType] = Double.longBitsToDouble(first);
+                    priceVersions[gasType] = second;
+                }
+                return;
+            case TransactionJournal.KIND_ADD_GAS_PUMP:
+                pumps.put(pumpIndex, new PumpState(type, first));
+                return;
+            case TransactionJournal.KIND_REFILL:
+                pumpOf(kind, pumpIndex).addedMilliLitres += first;
+                return;
+            case TransactionJournal.KIND_COUNTER:
+                applyCounter(pumpIndex == TransactionJournal.NONE ? countersByType.get(type) : pumpOf(kind, pumpIndex).counters, counter, first);
+                return;
+            default:
+                break;
+        }
+
+        if(kind < 1 || kind > TRANSACTION_KINDS.length){
+            throw new InvalidParameterException("Journal record of unknown kind " + kind);
+        }
+
+        switch(TRANSACTION_KINDS[kind - 1]){
+            case SALE:
+                PumpState pumpState = pumpOf(kind, pumpIndex);
+                countersByType.get(type).recordSale(first, second);
+                pumpState.counters.recordSale(first, second);
+                break;
+            case CANCELLED_NO_GAS:
+                countersByType.get(type).cancellationsNoGas.increment();
+                break;
+            case CANCELLED_TOO_EXPENSIVE:
+                countersByType.get(type).cancellationsTooExpensive.increment();
+                break;
+            case CANCELLED_QUEUE_FULL:
+                countersByType.get(type).cancellationsQueueFull.increment();
+                break;
+            case CANCELLED_QUEUE_TIMED_OUT:
+                countersByType.get(type).cancellationsQueueTimedOut.increment();
+                break;
+            case CANCELLED_TIMED_OUT:
+                countersByType.get(type).cancellationsTimedOut.increment();
+                break;
+        }
+    }
+
+    /**
+     * Gas pump a record is for , its add record has to come first
+     */
+    private PumpState pumpOf(byte kind, int pumpIndex) {
+
+        PumpState pumpState = pumps.get(pumpIndex);
+
+        if(pumpState == null){
+            throw new InvalidParameterException("Journal record of kind " + kind + " for unknown gas pump " + pumpIndex);
+        }
+
+        return pumpState;
+    }
+
+    private static void applyCounter(SalesCounters counters, int counter, long value) {
+
+        switch(counter){
+            case COUNTER_SALES:
+                counters.sales.add(value);
+                break;
+            case COUNTER_MILLI_LITRES:
+                counters.milliLitresDispensed.add(value);
+                break;
+            case COUNTER_REVENUE:
+                counters.revenue.add(value);
+                break;
+            case COUNTER_CANCELLATIONS_NO_GAS:
+                counters.cancellationsNoGas.add(value);
+                break;
+            case COUNTER_CANCELLATIONS_TOO_EXPENSIVE:
+                counters.cancellationsTooExpensive.add(value);
+                break;
+            case COUNTER_CANCELLATIONS_QUEUE_FULL:
+                counters.cancellationsQueueFull.add(value);
+                break;
+            case COUNTER_CANCELLATIONS_QUEUE_TIMED_OUT:
+                counters.cancellationsQueueTimedOut.add(value);
+                break;
+            case COUNTER_CANCELLATIONS_TIMED_OUT:
+                counters.cancellationsTimedOut.add(value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Write the state as the records of a checkpoint
+     *
+     * @param sink
+     */
+    void writeTo(RecordSink sink) {
+
+        for(GasType gasType : GasType.values()){
+
+            if(!Double.isNaN(prices[gasType.ordinal()])){
+                sink.record(TransactionJournal.KIND_SET_PRICE, gasType.ordinal(), 0, TransactionJournal.NONE,
+                        Double.doubleToLongBits(prices[gasType.ordinal()]), priceVersions[gasType.ordinal()]);
+            }
+
+            writeCounters(sink, gasType, TransactionJournal.NONE, countersByType.get(gasType));
+        }
+
+        for(Map.Entry<Integer, PumpState> pump : pumps.entrySet()){
+
+            PumpState pumpState = pump.getValue();
+
+            sink.record(TransactionJournal.KIND_ADD_GAS_PUMP, pumpState.gasType.ordinal(), 0, pump.getKey(), pumpState.addedMilliLitres, 0);
+            writeCounters(sink, pumpState.gasType, pump.getKey(), pumpState.counters);
+        }
+    }
+
+    private static void writeCounters(RecordSink sink, GasType gasType, int pumpIndex, SalesCounters counters) {
+
+        long[] values = {
+            counters.sales.sum(), counters.milliLitresDispensed.sum(), counters.revenue.sum(),
+            counters.cancellationsNoGas.sum(), counters.cancellationsTooExpensive.sum(),
+            counters.cancellationsQueueFull.sum(), counters.cancellationsQueueTimedOut.sum(),
+            counters.cancellationsTimedOut.sum()
+        };
+
+        for(int i = 0; i < values.length; i++){
+            if(values[i] != 0){
+                sink.record(TransactionJournal.KIND_COUNTER, gasType.ordinal(), COUNTER_SALES + i, pumpIndex, values[i], 0);
+            }
+        }
+    }
+
+}
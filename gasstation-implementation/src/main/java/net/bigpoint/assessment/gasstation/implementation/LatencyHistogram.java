@@ -0,0 +1,175 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Log-linear latency histogram in nanoseconds , in the style of HdrHistogram. Values below 128 have a bucket each ,
+ * above that every power of two is split into 64 buckets , so recorded values are kept within 1.6%.
+ * 
+ * Recording is lock-free and allocates nothing. Counts are taken out with an interval snapshot that resets them ,
+ * a value recorded while the snapshot is taken ends up in either this interval or the next one
+ */
+public final class LatencyHistogram {
+    
+    /**
+     * Values with a bucket each
+     */
+    private final static int LINEAR_BUCKETS = 128;
+    
+    /**
+     * Buckets per power of two above the linear range
+     */
+    private final static int SUB_BUCKETS = 64;
+    
+    /**
+     * Power of two of the first logarithmic range
+     */
+    private final static int FIRST_MAGNITUDE = 7;
+    
+    /**
+     * Enough buckets for every positive long
+     */
+    private final static int BUCKETS = LINEAR_BUCKETS + (63 - FIRST_MAGNITUDE) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    
+    /**
+     * Record a latency , negative values are counted as zero
+     * 
+     * @param nanos 
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(nanos, 0)));
+    }
+    
+    /**
+     * Take the counts recorded since the last snapshot and reset them
+     * 
+     * @return snapshot
+     */
+    public Snapshot snapshotAndReset() {
+        
+        long[] intervalCounts = new long[BUCKETS];
+        
+        for(int bucket = 0; bucket < BUCKETS; bucket++){
+            if(counts.get(bucket) != 0){
+                intervalCounts[bucket] = counts.getAndSet(bucket, 0);
+            }
+        }
+        
+        return new Snapshot(intervalCounts);
+    }
+    
+    /**
+     * Get the bucket of a value
+     * 
+     * @param value
+     * @return (int) bucket
+     */
+    static int bucketOf(long value) {
+        
+        if(value < LINEAR_BUCKETS){
+            return (int) value;
+        }
+        
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - 6;
+        
+        return LINEAR_BUCKETS + (magnitude - FIRST_MAGNITUDE) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+    
+    /**
+     * Get the highest value of a bucket
+     * 
+     * @param bucket
+     * @return (long) value
+     */
+    static long highestValueOf(int bucket) {
+        
+        if(bucket < LINEAR_BUCKETS){
+            return bucket;
+        }
+        
+        int magnitude = FIRST_MAGNITUDE + (bucket - LINEAR_BUCKETS) / SUB_BUCKETS;
+        int shift = magnitude - 6;
+        long lowestValue = (long) (SUB_BUCKETS + (bucket - LINEAR_BUCKETS) % SUB_BUCKETS) << shift;
+        
+        return lowestValue + (1L << shift) - 1;
+    }
+    
+    /**
+     * Counts of a histogram over an interval
+     */
+    public static final class Snapshot {
+        
+        private final long[] counts;
+        
+        private final long totalCount;
+        
+        Snapshot(long[] counts) {
+            
+            this.counts = counts;
+            
+            long total = 0;
+            for(long count : counts){
+                total += count;
+            }
+            this.totalCount = total;
+        }
+        
+        /**
+         * @return the number of values recorded
+         */
+        public long getTotalCount() {
+            return totalCount;
+        }
+        
+        /**
+         * Get the value at a percentile , 0 when nothing was recorded
+         * 
+         * @param percentile between 0 and 100
+         * @return (long) nanos
+         */
+        public long getValueAtPercentile(double percentile) {
+            
+            if(totalCount == 0){
+                return 0;
+            }
+            
+            long countAtPercentile = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * totalCount));
+            long count = 0;
+            
+            for(int bucket = 0; bucket < counts.length; bucket++){
+                
+                count += counts[bucket];
+                
+                if(count >= countAtPercentile){
+                    return highestValueOf(bucket);
+                }
+            }
+            
+            return getMaxValue();
+        }
+        
+        /**
+         * Get the highest value recorded , 0 when nothing was recorded
+         * 
+         * @return (long) nanos
+         */
+        public long getMaxValue() {
+            
+            for(int bucket = counts.length - 1; bucket >= 0; bucket--){
+                if(counts[bucket] != 0){
+                    return highestValueOf(bucket);
+                }
+            }
+            
+            return 0;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,147 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.io.PrintStream;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Built-in metrics listener recording a LatencyHistogram per gas type and purchase phase.
+ * Recording allocates nothing , reports are taken per interval
+ */
+public final class LatencyRecorder implements StationMetricsListener {
+    
+    /**
+     * Histograms indexed by gas type and purchase phase ordinal
+     */
+    private final LatencyHistogram[][] histograms;
+    
+    /**
+     * Start of the current interval , epoch milliseconds
+     */
+    private volatile long intervalStart;
+    
+    public LatencyRecorder() {
+        
+        histograms = new LatencyHistogram[GasType.values().length][PurchasePhase.values().length];
+        
+        for(GasType gasType : GasType.values()){
+            for(PurchasePhase phase : PurchasePhase.values()){
+                histograms[gasType.ordinal()][phase.ordinal()] = new LatencyHistogram();
+            }
+        }
+        
+        intervalStart = System.currentTimeMillis();
+    }
+    
+    public void onPhase(GasType type, PurchasePhase phase, long nanos) {
+        histograms[type.ordinal()][phase.ordinal()].record(nanos);
+    }
+    
+    /**
+     * Take the latencies recorded since the last report and start a new interval
+     * 
+     * @return report
+     */
+    public synchronized Report report() {
+        
+        long intervalEnd = System.currentTimeMillis();
+        
+        LatencyHistogram.Snapshot[][] snapshots = new LatencyHistogram.Snapshot[histograms.length][];
+        
+        for(int gasType = 0; gasType < histograms.length; gasType++){
+            
+            snapshots[gasType] = new LatencyHistogram.Snapshot[histograms[gasType].length];
+            
+            for(int phase = 0; phase < histograms[gasType].length; phase++){
+                snapshots[gasType][phase] = histograms[gasType][phase].snapshotAndReset();
+            }
+        }
+        
+        Report report = new Report(intervalStart, intervalEnd, snapshots);
+        intervalStart = intervalEnd;
+        
+        return report;
+    }
+    
+    /**
+     * Print the latencies recorded since the last report and start a new interval
+     * 
+     * @param out 
+     */
+    public void dump(PrintStream out) {
+        report().print(out);
+    }
+    
+    /**
+     * Latencies per gas type and purchase phase over an interval
+     */
+    public static final class Report {
+        
+        private final long intervalStart;
+        
+        private final long intervalEnd;
+        
+        private final LatencyHistogram.Snapshot[][] snapshots;
+        
+        Report(long intervalStart, long intervalEnd, LatencyHistogram.Snapshot[][] snapshots) {
+            this.intervalStart = intervalStart;
+            this.intervalEnd = intervalEnd;
+            this.snapshots = snapshots;
+        }
+        
+        /**
+         * @return the start of the interval , epoch milliseconds
+         */
+        public long getIntervalStart() {
+            return intervalStart;
+        }
+        
+        /**
+         * @return the end of the interval , epoch milliseconds
+         */
+        public long getIntervalEnd() {
+            return intervalEnd;
+        }
+        
+        /**
+         * Get the latencies of a phase of purchases of a gas type
+         * 
+         * @param type
+         * @param phase
+         * @return snapshot
+         */
+        public LatencyHistogram.Snapshot get(GasType type, PurchasePhase phase) {
+            return snapshots[type.ordinal()][phase.ordinal()];
+        }
+        
+        /**
+         * Print count and percentiles in microseconds for every gas type and phase with recorded values
+         * 
+         * @param out 
+         */
+        public void print(PrintStream out) {
+            
+            out.printf("Purchase latencies from %tT to %tT (us)%n", intervalStart, intervalEnd);
+            out.printf("%-8s %-15s %10s %10s %10s %10s %10s%n", "type", "phase", "count", "p50", "p99", "p99.9", "max");
+            
+            for(GasType gasType : GasType.values()){
+                for(PurchasePhase phase : PurchasePhase.values()){
+                    
+                    LatencyHistogram.Snapshot snapshot = get(gasType, phase);
+                    
+                    if(snapshot.getTotalCount() == 0){
+                        continue;
+                    }
+                    
+                    out.printf("%-8s %-15s %10d %10.1f %10.1f %10.1f %10.1f%n", gasType, phase, snapshot.getTotalCount(),
+                            snapshot.getValueAtPercentile(50) / 1000.0, snapshot.getValueAtPercentile(99) / 1000.0,
+                            snapshot.getValueAtPercentile(99.9) / 1000.0, snapshot.getMaxValue() / 1000.0);
+                }
+            }
+        }
+        
+    }
+    
+}
@@ -0,0 +1,488 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import net.bigpoint.assessment.gasstation.GasPump;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Gas pump as managed by the gas station.
+ * 
+ * Serving gas is split in two steps : the amount is first reserved against a lock-free ledger of the
+ * available milli litres , then pumped while holding the lock. GasPump is not thread-safe so pumping
+ * goes through the lock one customer at a time , while capacity decisions never wait for it.
+ * 
+ * Asynchronous purchases are queued on the lane of the gas pump and served one after the other
+ * on a single dispatcher thread at a time , so waiting customers do not hold a thread
+ */
+public final class ManagedPump {
+    
+    /**
+     * Milli litres per litre in the reservation ledger
+     */
+    final static long MILLI_LITRES_PER_LITRE = 1000;
+    
+    /**
+     * No refill levels set
+     */
+    final static long NO_REFILL = -1;
+    
+    /**
+     * The gas pump being managed
+     */
+    private final GasPump gasPump;
+    
+    /**
+     * Position of the gas pump in the gas station , in the order gas pumps were added
+     */
+    private final int index;
+    
+    /**
+     * Milli litres the gas pump was added with and delivered since , the gas left is what was added less what
+     * the sales dispensed
+     */
+    private volatile long addedMilliLitres;
+    
+    /**
+     * Gas pumps out of rotation are not reserved by customers , e.g. while refilled
+     */
+    private volatile boolean outOfRotation;
+    
+    /**
+     * Milli litres ordered for this gas pump and not delivered yet
+     */
+    private volatile long pendingMilliLitres;
+    
+    /**
+     * Gas is ordered when the available milli litres fall to this mark , NO_REFILL without automatic refills
+     */
+    private volatile long lowWaterMilliLitres = NO_REFILL;
+    
+    /**
+     * Milli litres a delivery fills the gas pump up to
+     */
+    private volatile long refillToMilliLitres = NO_REFILL;
+    
+    /**
+     * Lock for one gas pump operation at a time
+     */
+    private final ReentrantLock lock;
+    
+    /**
+     * Milli litres not yet reserved by any customer
+     */
+    private final AtomicLong availableMilliLitres;
+    
+    /**
+     * Asynchronous purchases waiting to be served
+     */
+    private final ConcurrentLinkedQueue<LaneTask> laneTasks;
+    
+    /**
+     * Number of asynchronous purchases queued or being served , the lane is drained while not zero
+     */
+    private final AtomicInteger laneSize;
+    
+    /**
+     * Sales served by this gas pump
+     */
+    private final SalesCounters counters;
+    
+    /**
+     * Dispense times , failures and circuit breaker of this gas pump
+     */
+    private final PumpHealth health;
+    
+    /**
+     * When the gas pump was claimed , only used by the thread holding it
+     */
+    private long lockedAt;
+    
+    ManagedPump(GasPump gasPump, int index){
+        this(gasPump, index, toMilliLitres(gasPump.getRemainingAmount()));
+    }
+    
+    /**
+     * Gas pump restored with the milli litres it was once added with , its counters are restored separately
+     * 
+     * @param gasPump
+     * @param index
+     * @param addedMilliLitres 
+     */
+    ManagedPump(GasPump gasPump, int index, long addedMilliLitres){
+        this.gasPump = gasPump;
+        this.index = index;
+        this.addedMilliLitres = addedMilliLitres;
+        this.lock = new ReentrantLock();
+        this.availableMilliLitres = new AtomicLong(toMilliLitres(gasPump.getRemainingAmount()));
+        this.laneTasks = new ConcurrentLinkedQueue<LaneTask>();
+        this.laneSize = new AtomicInteger(0);
+        this.counters = new SalesCounters();
+        this.health = new PumpHealth();
+    }
+    
+    /**
+     * Get the position of the gas pump in the gas station
+     * 
+     * @return (int) index
+     */
+    int getIndex() {
+        return index;
+    }
+    
+    /**
+     * Get the milli litres the gas pump was added with and delivered since
+     * 
+     * @return (long) addedMilliLitres
+     */
+    long getAddedMilliLitres() {
+        return addedMilliLitres;
+    }
+    
+    /**
+     * Get the milli litres left , what was added less what the counted sales dispensed. Read without the lock of
+     * the gas pump , a sale being pumped is not taken off yet
+     * 
+     * @return (long) remainingMilliLitres
+     */
+    long getRemainingMilliLitres() {
+        return addedMilliLitres - counters.milliLitresDispensed.sum();
+    }
+    
+    /**
+     * Count gas delivered to the gas pump as added , only called while the gas pump is claimed
+     * 
+     * @param milliLitres 
+     */
+    void addDelivered(long milliLitres) {
+        addedMilliLitres += milliLitres;
+    }
+    
+    /**
+     * Check if customers can reserve gas on the gas pump
+     * 
+     * @return (boolean) inRotation
+     */
+    public boolean isInRotation() {
+        return !outOfRotation;
+    }
+    
+    /**
+     * Take the gas pump out of rotation or put it back
+     * 
+     * @param outOfRotation 
+     */
+    void setOutOfRotation(boolean outOfRotation) {
+        this.outOfRotation = outOfRotation;
+    }
+    
+    /**
+     * Get the litres ordered for this gas pump and not delivered yet
+     * 
+     * @return (double) pendingLitres
+     */
+    public double getPendingAmount() {
+        return (double) pendingMilliLitres / MILLI_LITRES_PER_LITRE;
+    }
+    
+    /**
+     * Get the milli litres ordered for this gas pump and not delivered yet
+     * 
+     * @return (long) pendingMilliLitres
+     */
+    long getPendingMilliLitres() {
+        return pendingMilliLitres;
+    }
+    
+    /**
+     * Set the milli litres ordered for this gas pump , zero once delivered
+     * 
+     * @param pendingMilliLitres 
+     */
+    void setPendingMilliLitres(long pendingMilliLitres) {
+        this.pendingMilliLitres = pendingMilliLitres;
+    }
+    
+    /**
+     * Set when gas is ordered for the gas pump and how much it is filled up to
+     * 
+     * @param lowWaterMilliLitres
+     * @param refillToMilliLitres 
+     */
+    void setRefillLevels(long lowWaterMilliLitres, long refillToMilliLitres) {
+        this.refillToMilliLitres = refillToMilliLitres;
+        this.lowWaterMilliLitres = lowWaterMilliLitres;
+    }
+    
+    /**
+     * Get the mark gas is ordered at , NO_REFILL without automatic refills
+     * 
+     * @return (long) lowWaterMilliLitres
+     */
+    long getLowWaterMilliLitres() {
+        return lowWaterMilliLitres;
+    }
+    
+    /**
+     * Get the milli litres a delivery fills the gas pump up to
+     * 
+     * @return (long) refillToMilliLitres
+     */
+    long getRefillToMilliLitres() {
+        return refillToMilliLitres;
+    }
+    
+    /**
+     * Convert litres to the milli litres of the reservation ledger
+     * 
+     * @param litres
+     * @return (long) milliLitres
+     */
+    static long toMilliLitres(double litres) {
+        return Math.round(litres * MILLI_LITRES_PER_LITRE);
+    }
+    
+    /**
+     * Get the gas pump being managed
+     * 
+     * @return gasPump
+     */
+    public GasPump getGasPump() {
+        return gasPump;
+    }
+    
+    /**
+     * Get the sales counters of this gas pump
+     * 
+     * @return counters
+     */
+    SalesCounters getCounters() {
+        return counters;
+    }
+    
+    /**
+     * Get the health of this gas pump
+     * 
+     * @return health
+     */
+    PumpHealth getHealth() {
+        return health;
+    }
+    
+    /**
+     * Get the litres not yet reserved by any customer
+     * 
+     * @return (double) availableLitres
+     */
+    public double getAvailableAmount() {
+        return (double) availableMilliLitres.get() / MILLI_LITRES_PER_LITRE;
+    }
+    
+    /**
+     * Get the milli litres not yet reserved by any customer
+     * 
+     * @return (long) availableMilliLitres
+     */
+    public long getAvailableMilliLitres() {
+        return availableMilliLitres.get();
+    }
+    
+    /**
+     * Reserve milli litres for a customer , fails without waiting when not enough is left or the gas pump is out
+     * of rotation
+     * 
+     * @param milliLitres
+     * @return (boolean) reserved
+     */
+    boolean tryReserve(long milliLitres) {
+        
+        long available;
+        
+        if(outOfRotation){
+            return false;
+        }
+        
+        do {
+            available = availableMilliLitres.get();
+            
+            if(available < milliLitres){
+                return false;
+            }
+            
+        } while(!availableMilliLitres.compareAndSet(available, available - milliLitres));
+        
+        return true;
+    }
+    
+    /**
+     * Give back milli litres reserved by a customer who is not served by this gas pump
+     * 
+     * @param milliLitres 
+     */
+    void release(long milliLitres) {
+        availableMilliLitres.addAndGet(milliLitres);
+    }
+    
+    /**
+     * Check if the gas pump is currently used by a customer
+     * 
+     * @return (boolean) busy
+     */
+    public boolean isBusy() {
+        return lock.isLocked();
+    }
+    
+    /**
+     * Get the number of customers being served or waiting for this gas pump , an estimate
+     * 
+     * @return (int) queueLength
+     */
+    public int getQueueLength() {
+        return lock.getQueueLength() + (lock.isLocked() ? 1 : 0) + laneSize.get();
+    }
+    
+    /**
+     * Queue an asynchronous purchase on the lane of this gas pump , starts draining the lane on the dispatcher if idle.
+     * When the dispatcher refuses to drain the lane , e.g. shut down in the meantime , every purchase queued on it is
+     * rejected instead of waiting forever
+     * 
+     * @param task
+     * @param dispatcher 
+     */
+    void submitToLane(LaneTask task, Executor dispatcher) {
+        
+        laneTasks.add(task);
+        
+        if(laneSize.getAndIncrement() == 0){
+            startDraining(dispatcher);
+        }
+    }
+    
+    /**
+     * Drain the lane on a thread of the dispatcher , the lane is rejected when the dispatcher refuses
+     * 
+     * @param dispatcher 
+     */
+    private void startDraining(final Executor dispatcher) {
+        
+        try {
+            dispatcher.execute(new Runnable() {
+                public void run() {
+                    drainLane(dispatcher);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            rejectLane(ex);
+        }
+    }
+    
+    /**
+     * Serve queued asynchronous purchases until the lane is empty. A purchase that throws does not stall the lane ,
+     * the purchases behind it are drained on another thread before the exception is passed on
+     * 
+     * @param dispatcher
+     */
+    private void drainLane(Executor dispatcher) {
+        do {
+            try {
+                laneTasks.poll().run();
+            } catch (RuntimeException | Error ex) {
+                
+                if(laneSize.decrementAndGet() > 0){
+                    startDraining(dispatcher);
+                }
+                throw ex;
+            }
+        } while(laneSize.decrementAndGet() > 0);
+    }
+    
+    /**
+     * Reject the queued asynchronous purchases until the lane is empty
+     * 
+     * @param cause
+     */
+    private void rejectLane(RejectedExecutionException cause) {
+        do {
+            laneTasks.poll().reject(cause);
+        } while(laneSize.decrementAndGet() > 0);
+    }
+    
+    /**
+     * Check if the calling thread has claimed the gas pump
+     * 
+     * @return (boolean) claimed
+     */
+    boolean isHeldByCurrentThread() {
+        return lock.isHeldByCurrentThread();
+    }
+    
+    /**
+     * Claim the gas pump if no other customer is using it
+     * 
+     * @return (boolean) claimed
+     */
+    boolean tryLock() {
+        
+        if(!lock.tryLock()){
+            return false;
+        }
+        
+        lockedAt = System.nanoTime();
+        return true;
+    }
+    
+    /**
+     * Claim the gas pump , waiting at most maxWaitNanos for other customers to finish. A free gas pump is claimed
+     * even by an interrupted customer , only waiting is given up on interruption
+     * 
+     * @param maxWaitNanos
+     * @return (boolean) claimed
+     * @throws InterruptedException when interrupted while waiting
+     */
+    boolean tryLock(long maxWaitNanos) throws InterruptedException {
+        
+        if(!lock.tryLock() && !lock.tryLock(maxWaitNanos, TimeUnit.NANOSECONDS)){
+            return false;
+        }
+        
+        lockedAt = System.nanoTime();
+        return true;
+    }
+    
+    /**
+     * Claim the gas pump , waiting for other customers to finish
+     */
+    void lock() {
+        lock.lock();
+        lockedAt = System.nanoTime();
+    }
+    
+    /**
+     * Release the gas pump , the time it was held is counted towards its health
+     */
+    void unlock() {
+        health.recordLockHold(System.nanoTime() - lockedAt);
+        lock.unlock();
+    }
+    
+    /**
+     * Asynchronous purchase queued on the lane of a gas pump , it completes the customer's future itself when run
+     */
+    abstract static class LaneTask implements Runnable {
+        
+        /**
+         * Fail the purchase that was never served , the gas reserved for it is given back
+         * 
+         * @param cause 
+         */
+        abstract void reject(Throwable cause);
+    }
+    
+}
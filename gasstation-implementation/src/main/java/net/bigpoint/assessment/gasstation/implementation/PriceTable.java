@@ -0,0 +1,147 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Immutable prices of all gas types indexed by ordinal , a price change creates a new table with the next version.
+ * A purchase reads one table and uses its price for both the price check and the charge. Prices are kept in minor
+ * currency units per litre , so every price is exactly what the gas station charges
+ */
+public final class PriceTable {
+
+    /**
+     * Table without prices , version 0
+     */
+    final static PriceTable EMPTY = new PriceTable(emptyPrices(), 0);
+
+    /**
+     * Price per gas type ordinal , NaN when the gas type has no price
+     */
+    private final double[] prices;
+
+    /**
+     * Price per gas type ordinal in minor currency units , 0 when the gas type has no price
+     */
+    private final long[] pricesInMinorUnits;
+
+    /**
+     * Number of price changes made before this table
+     */
+    private final long version;
+
+    private PriceTable(double[] prices, long version) {
+
+        this.prices = prices;
+        this.pricesInMinorUnits = new long[prices.length];
+        this.version = version;
+
+        //Rounded to minor currency units , the price shown is the price charged
+        for(int i = 0; i < prices.length; i++){
+            if(!Double.isNaN(prices[i])){
+                pricesInMinorUnits[i] = FixedPoint.toMinorUnits(prices[i]);
+                prices[i] = FixedPoint.toCurrencyUnits(pricesInMinorUnits[i]);
+            }
+        }
+    }
+
+    /**
+     * Table with the given prices per gas type ordinal , NaN for gas types without a price
+     *
+     * @param prices
+     * @param version
+     * @return priceTable
+     */
+    static PriceTable of(double[] prices, long version) {
+
+        if(prices.length != GasType.values().length){
+            throw new InvalidParameterException();
+        }
+
+        return new PriceTable(prices.clone(), version);
+    }
+
+    private static double[] emptyPrices() {
+        double[] prices = new double[GasType.values().length];
+        Arrays.fill(prices, Double.NaN);
+        return prices;
+    }
+
+    /**
+     * Copy of this table with the price of a gas type changed , rounded to minor currency units
+     *
+     * @param type
+     * @param price
+     * @return priceTable
+     */
+    PriceTable withPrice(GasType type, double price) {
+        double[] changedPrices = prices.clone();
+        changedPrices[type.ordinal()] = price;
+
+        return new PriceTable(changedPrices, version + 1);
+    }
+
+    /**
+     * Check if a gas type has a price
+     *
+     * @param type
+     * @return (boolean) priced
+     */
+    public boolean isPriced(GasType type) {
+        return !Double.isNaN(prices[type.ordinal()]);
+    }
+
+    /**
+     * Get price for a particular gas type
+     *
+     * @param type
+     * @return (double) gasTypePrice
+     * @throws InvalidParameterException when the gas type has no price
+     */
+    public double getPrice(GasType type) {
+
+        double gasTypePrice = prices[type.ordinal()];
+
+        if(Double.isNaN(gasTypePrice)){
+            throw new InvalidParameterException("No price for " + type);
+        }
+
+        return gasTypePrice;
+    }
+
+    /**
+     * Get the price of a gas type in minor currency units per litre , for gas types with a price
+     *
+     * @param type
+     * @return (long) gasTypePriceInMinorUnits
+     */
+    long getPriceInMinorUnits(GasType type) {
+        return pricesInMinorUnits[type.ordinal()];
+    }
+
+    /**
+     * Get number of price changes made before this table
+     *
+     * @return (long) version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder builder = new StringBuilder("PriceTable v").append(version).append(" {");
+
+        for(GasType gasType : GasType.values()){
+            builder.append(' ').append(gasType).append('=').append(prices[gasType.ordinal()]);
+        }
+
+        return builder.append(" }").toString();
+    }
+
+}
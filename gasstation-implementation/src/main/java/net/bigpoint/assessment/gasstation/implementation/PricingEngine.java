@@ -0,0 +1,415 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.io.Closeable;
+import java.security.InvalidParameterException;
+import java.util.EnumMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Reprices the gas types of a gas station from the demand of the last window on a background tick.
+ *
+ * Every gas type with a base price gets a target price of its base price marked up the closer the gas left ,
+ * available and ordered , comes to running out at the current litres sold per hour , and discounted the more
+ * customers above the tolerated share cancel because of gas too expensive. The price moves towards the target by
+ * at most a step per tick and is published with setPrice , which swaps the price table without blocking
+ * purchases. Sales and cancellations are counted into sliding window rates on the purchase path in constant time
+ * and without allocating
+ */
+public final class PricingEngine implements Closeable {
+
+    /**
+     * Reprice every ten seconds
+     */
+    public final static long DEFAULT_TICK_SECONDS = 10;
+
+    /**
+     * Demand of the last hour
+     */
+    public final static long DEFAULT_WINDOW_SECONDS = 3600;
+
+    /**
+     * Marked up by a fifth at most
+     */
+    public final static double DEFAULT_MAX_MARKUP = 0.2;
+
+    /**
+     * Discounted by a tenth at most
+     */
+    public final static double DEFAULT_MAX_DISCOUNT = 0.1;
+
+    /**
+     * Marked up with less than a day of gas left
+     */
+    public final static long DEFAULT_TARGET_SUPPLY_SECONDS = 24 * 3600;
+
+    /**
+     * One in ten customers may find gas too expensive without a discount
+     */
+    public final static double DEFAULT_TOLERATED_REJECTION_SHARE = 0.1;
+
+    /**
+     * A price moves by a hundredth of its base price per tick at most
+     */
+    public final static double DEFAULT_MAX_STEP = 0.01;
+
+    private final static Logger LOGGER = Logger.getLogger(PricingEngine.class.getName());
+
+    private final GasStationManager stationManager;
+
+    private final DemandRates demandRates;
+
+    private final EnumMap<GasType, Double> basePrices;
+
+    private final long tickNanos;
+
+    private final double maxMarkup;
+
+    private final double maxDiscount;
+
+    private final double targetSupplyHours;
+
+    private final double toleratedRejectionShare;
+
+    private final double maxStep;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final AtomicLong failedTicks = new AtomicLong();
+
+    private PricingEngine(Builder builder) {
+
+        this.stationManager = builder.stationManager;
+        this.basePrices = new EnumMap<GasType, Double>(builder.basePrices);
+        this.tickNanos = builder.tickNanos;
+        this.maxMarkup = builder.maxMarkup;
+        this.maxDiscount = builder.maxDiscount;
+        this.targetSupplyHours = (double) builder.targetSupplyNanos / TimeUnit.HOURS.toNanos(1);
+        this.toleratedRejectionShare = builder.toleratedRejectionShare;
+        this.maxStep = builder.maxStep;
+
+        //Gas types priced so far start from their current price
+        PriceTable prices = stationManager.getPriceTable();
+        for(GasType gasType : GasType.values()){
+            if(!basePrices.containsKey(gasType) && prices.isPriced(gasType)){
+                basePrices.put(gasType, prices.getPrice(gasType));
+            }
+        }
+
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "gas-station-pricing");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        this.demandRates = new DemandRates(builder.windowNanos, TimeUnit.NANOSECONDS);
+        stationManager.attachDemandRates(demandRates);
+    }
+
+    /**
+     * Start building a pricing engine for a gas station
+     *
+     * @param stationManager
+     * @return builder
+     */
+    public static Builder builder(GasStationManager stationManager) {
+        return new Builder(stationManager);
+    }
+
+    /**
+     * Reprice at the tick interval until closed. A failed tick is logged and the next tick tries again
+     */
+    public void start() {
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                //An exception leaving the task would cancel every later tick
+                try {
+                    repriceNow();
+                } catch (RuntimeException ex) {
+                    failedTicks.incrementAndGet();
+                    LOGGER.log(Level.WARNING, "Repricing failed", ex);
+                }
+            }
+        }, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reprice every gas type with a base price once
+     *
+     * @return (int) number of prices changed
+     */
+    public synchronized int repriceNow() {
+
+        int changed = 0;
+        PriceTable prices = stationManager.getPriceTable();
+
+        for(GasType gasType : basePrices.keySet()){
+
+            double basePrice = basePrices.get(gasType);
+            double currentFactor = prices.isPriced(gasType) ? prices.getPrice(gasType) / basePrice : 1;
+
+            double factor = getTargetFactor(gasType);
+            factor = Math.max(currentFactor - maxStep, Math.min(currentFactor + maxStep, factor));
+
+            //Published in minor currency units , as the gas station keeps its prices
+            double price = FixedPoint.toCurrencyUnits(FixedPoint.toMinorUnits(basePrice * factor));
+
+            if(!prices.isPriced(gasType) || price != prices.getPrice(gasType)){
+                stationManager.setPrice(gasType, price);
+                changed++;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Get the price factor a gas type is moved towards : one plus the markup for gas running out less the discount
+     * for customers finding gas too expensive
+     *
+     * @param type
+     * @return (double) targetFactor
+     */
+    double getTargetFactor(GasType type) {
+
+        //Hours until the gas left runs out at the litres sold per hour
+        double litresPerHour = getSalesRate(type, TimeUnit.HOURS);
+        double supplyLitres = stationManager.getAvailableLitres(type) + stationManager.getPendingLitres(type);
+        double supplyHours = litresPerHour == 0 ? Double.POSITIVE_INFINITY : supplyLitres / litresPerHour;
+        double scarcity = Math.max(0, 1 - supplyHours / targetSupplyHours);
+
+        //Share of customers beyond the tolerated share who found gas too expensive
+        long rejections = demandRates.getCancellationsTooExpensive(type).getSum();
+        long customers = rejections + demandRates.getSales(type).getSum();
+        double rejectionShare = customers == 0 ? 0 : (double) rejections / customers;
+        double excessRejections = Math.max(0, rejectionShare - toleratedRejectionShare) / (1 - toleratedRejectionShare);
+
+        return 1 + maxMarkup * scarcity - maxDiscount * excessRejections;
+    }
+
+    /**
+     * Get the litres of a gas type sold per time unit over the window
+     *
+     * @param type
+     * @param unit
+     * @return (double) litres
+     */
+    public double getSalesRate(GasType type, TimeUnit unit) {
+        return demandRates.getMilliLitresSold(type).getRate(unit) / ManagedPump.MILLI_LITRES_PER_LITRE;
+    }
+
+    /**
+     * Get the cancellations of a gas type because of gas too expensive per time unit over the window
+     *
+     * @param type
+     * @param unit
+     * @return (double) cancellations
+     */
+    public double getCancellationRateTooExpensive(GasType type, TimeUnit unit) {
+        return demandRates.getCancellationsTooExpensive(type).getRate(unit);
+    }
+
+    /**
+     * Get the number of background ticks that failed
+     *
+     * @return (long) failedTicks
+     */
+    public long getNumberOfFailedTicks() {
+        return failedTicks.get();
+    }
+
+    /**
+     * Get the price a gas type is marked up and discounted from
+     *
+     * @param type
+     * @return (double) basePrice , NaN for gas types not repriced
+     */
+    public double getBasePrice(GasType type) {
+        Double basePrice = basePrices.get(type);
+        return basePrice == null ? Double.NaN : basePrice;
+    }
+
+    /**
+     * Stop repricing , prices stay as last published
+     */
+    public void close() {
+        executor.shutdownNow();
+        stationManager.detachDemandRates(demandRates);
+    }
+
+    /**
+     * Builder for pricing engines , defaults to repricing every ten seconds on the demand of the last hour from the
+     * prices set when built
+     */
+    public static class Builder {
+
+        private final GasStationManager stationManager;
+
+        private final EnumMap<GasType, Double> basePrices = new EnumMap<GasType, Double>(GasType.class);
+
+        private long tickNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TICK_SECONDS);
+
+        private long windowNanos = TimeUnit.SECONDS.toNanos(DEFAULT_WINDOW_SECONDS);
+
+        private long targetSupplyNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TARGET_SUPPLY_SECONDS);
+
+        private double maxMarkup = DEFAULT_MAX_MARKUP;
+
+        private double maxDiscount = DEFAULT_MAX_DISCOUNT;
+
+        private double toleratedRejectionShare = DEFAULT_TOLERATED_REJECTION_SHARE;
+
+        private double maxStep = DEFAULT_MAX_STEP;
+
+        private Builder(GasStationManager stationManager) {
+
+            if(stationManager == null){
+                throw new InvalidParameterException();
+            }
+
+            this.stationManager = stationManager;
+        }
+
+        /**
+         * Price a gas type is marked up and discounted from , instead of its price when built
+         *
+         * @param type
+         * @param basePrice
+         * @return builder
+         */
+        public Builder basePrice(GasType type, double basePrice) {
+
+            if(type == null || !(basePrice > 0)){
+                throw new InvalidParameterException();
+            }
+
+            basePrices.put(type, basePrice);
+            return this;
+        }
+
+        /**
+         * How often prices are recomputed after start
+         *
+         * @param tick
+         * @param unit
+         * @return builder
+         */
+        public Builder tickInterval(long tick, TimeUnit unit) {
+
+            if(tick <= 0){
+                throw new InvalidParameterException();
+            }
+
+            this.tickNanos = unit.toNanos(tick);
+            return this;
+        }
+
+        /**
+         * How far back sales and cancellations count
+         *
+         * @param window
+         * @param unit
+         * @return builder
+         */
+        public Builder window(long window, TimeUnit unit) {
+
+            if(window <= 0){
+                throw new InvalidParameterException();
+            }
+
+            this.windowNanos = unit.toNanos(window);
+            return this;
+        }
+
+        /**
+         * Time the gas left should last at the current sales rate , prices are marked up below it
+         *
+         * @param targetSupply
+         * @param unit
+         * @return builder
+         */
+        public Builder targetSupply(long targetSupply, TimeUnit unit) {
+
+            if(targetSupply <= 0){
+                throw new InvalidParameterException();
+            }
+
+            this.targetSupplyNanos = unit.toNanos(targetSupply);
+            return this;
+        }
+
+        /**
+         * Share of the base price added with gas running out and taken off with every customer finding gas too
+         * expensive
+         *
+         * @param maxMarkup
+         * @param maxDiscount
+         * @return builder
+         */
+        public Builder priceRange(double maxMarkup, double maxDiscount) {
+
+            if(!(maxMarkup >= 0) || !(maxDiscount >= 0 && maxDiscount < 1)){
+                throw new InvalidParameterException();
+            }
+
+            this.maxMarkup = maxMarkup;
+            this.maxDiscount = maxDiscount;
+            return this;
+        }
+
+        /**
+         * Share of customers who may find gas too expensive without a discount
+         *
+         * @param toleratedRejectionShare
+         * @return builder
+         */
+        public Builder toleratedRejectionShare(double toleratedRejectionShare) {
+
+            if(!(toleratedRejectionShare >= 0 && toleratedRejectionShare < 1)){
+                throw new InvalidParameterException();
+            }
+
+            this.toleratedRejectionShare = toleratedRejectionShare;
+            return this;
+        }
+
+        /**
+         * Share of the base price a price moves by per tick at most
+         *
+         * @param maxStep
+         * @return builder
+         */
+        public Builder maxStep(double maxStep) {
+
+            if(!(maxStep > 0)){
+                throw new InvalidParameterException();
+            }
+
+            this.maxStep = maxStep;
+            return this;
+        }
+
+        /**
+         * Build the pricing engine and start counting the demand of the gas station , prices change on start or
+         * repriceNow
+         *
+         * @return pricingEngine
+         * @throws InvalidParameterException when another pricing engine is attached to the gas station
+         */
+        public PricingEngine build() {
+            return new PricingEngine(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,24 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.List;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Decides which gas pumps of a gas type a purchase should be served from.
+ * See StandardPumpAllocationStrategy for the strategies shipped with the gas station
+ */
+public interface PumpAllocationStrategy {
+    
+    /**
+     * Order the candidate gas pumps by preference , the gas station reserves on them in the returned order.
+     * Gas pumps left out are not used for this purchase. Called concurrently , must not modify candidates
+     * 
+     * @param candidates gas pumps of the requested gas type , in the order they were added
+     * @param milliLitres amount the customer wants to buy
+     * @return candidates in order of preference
+     */
+    List<ManagedPump> order(List<ManagedPump> candidates, long milliLitres);
+    
+}
@@ -0,0 +1,217 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Health of a gas pump : how long dispensing took against how long it should , failures in a row and how long the
+ * gas pump was held , with a circuit breaker on top.
+ *
+ * A dispense is slow when it takes longer than allowed. After enough slow or failed dispenses in a row the circuit
+ * opens and customers are served by the other gas pumps of the type. A dispense running past its allowed time opens
+ * the circuit at once , a stalled gas pump never finishes to report itself. Once the open time has passed the gas pump
+ * is due for a probe , the first customer served by it claims the probe and it is closed again by a dispense in time.
+ *
+ * Times are System.nanoTime values passed in by the caller. Dispenses are started and ended by the customer holding
+ * the gas pump , states are read and changed by any customer without locking
+ */
+final class PumpHealth {
+
+    private final AtomicReference<CircuitState> state = new AtomicReference<CircuitState>(CircuitState.CLOSED);
+
+    /**
+     * When the circuit was opened or last probed
+     */
+    private final AtomicLong openedAt = new AtomicLong();
+
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    /**
+     * Start and expected time of the dispense going on , only used by the customer holding the gas pump
+     */
+    private long dispenseStart;
+    private long expectedDispenseTime;
+
+    /**
+     * Time the dispense going on is slow after , read by customers choosing a gas pump
+     */
+    private volatile long dispenseDeadline;
+    private volatile boolean dispensing;
+
+    /**
+     * Number of dispenses
+     */
+    final LongAdder dispenses = new LongAdder();
+
+    /**
+     * Nanoseconds dispensing took
+     */
+    final LongAdder dispenseNanos = new LongAdder();
+
+    /**
+     * Nanoseconds dispensing should have taken
+     */
+    final LongAdder expectedDispenseNanos = new LongAdder();
+
+    /**
+     * Number of dispenses slower than allowed or failed
+     */
+    final LongAdder slowDispenses = new LongAdder();
+
+    /**
+     * Number of times the circuit opened
+     */
+    final LongAdder trips = new LongAdder();
+
+    /**
+     * Nanoseconds the gas pump was held by customers and deliveries
+     */
+    final LongAdder lockHoldNanos = new LongAdder();
+
+    /**
+     * Longest the gas pump was held at once
+     */
+    final LongAccumulator maxLockHoldNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Get the state of the circuit breaker
+     *
+     * @return circuitState
+     */
+    CircuitState getState() {
+        return state.get();
+    }
+
+    /**
+     * Get the number of slow or failed dispenses since the last dispense in time
+     *
+     * @return (int) consecutiveFailures
+     */
+    int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+
+    /**
+     * Check if customers can be served by the gas pump as usual , opens the circuit of a gas pump stalled dispensing
+     *
+     * @param now
+     * @return (boolean) healthy
+     */
+    boolean isHealthy(long now) {
+
+        if(state.get() != CircuitState.CLOSED){
+            return false;
+        }
+
+        if(isStalled(now)){
+            open(now);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check if the circuit has been open for the open time , without claiming the probe
+     *
+     * @param now
+     * @param openNanos
+     * @return (boolean) probeDue
+     */
+    boolean isProbeDue(long now, long openNanos) {
+        return state.get() != CircuitState.CLOSED && !isStalled(now) && now - openedAt.get() >= openNanos;
+    }
+
+    /**
+     * Claim the probe of a gas pump due for one , called by the customer served by it. One customer at a time claims
+     * it
+     *
+     * @param now
+     * @param openNanos
+     * @return (boolean) probing
+     */
+    boolean tryProbe(long now, long openNanos) {
+
+        long opened = openedAt.get();
+
+        if(!isProbeDue(now, openNanos) || !openedAt.compareAndSet(opened, now)){
+            return false;
+        }
+
+        state.set(CircuitState.HALF_OPEN);
+        return true;
+    }
+
+    /**
+     * Start timing a dispense , called by the customer holding the gas pump
+     *
+     * @param now
+     * @param expectedNanos time dispensing should take
+     * @param allowedNanos time dispensing is slow after
+     */
+    void startDispense(long now, long expectedNanos, long allowedNanos) {
+        dispenseStart = now;
+        expectedDispenseTime = expectedNanos;
+        dispenseDeadline = now + allowedNanos;
+        dispensing = true;
+    }
+
+    /**
+     * End timing a dispense , a slow or failed dispense counts towards opening the circuit and one in time closes it
+     *
+     * @param now
+     * @param failed
+     * @param failureThreshold slow or failed dispenses in a row the circuit opens at
+     */
+    void endDispense(long now, boolean failed, int failureThreshold) {
+
+        dispensing = false;
+
+        dispenses.increment();
+        dispenseNanos.add(now - dispenseStart);
+        expectedDispenseNanos.add(expectedDispenseTime);
+
+        if(!failed && now - dispenseDeadline <= 0){
+            consecutiveFailures.set(0);
+            state.set(CircuitState.CLOSED);
+            return;
+        }
+
+        slowDispenses.increment();
+
+        //A failed probe opens the circuit again right away
+        if(consecutiveFailures.incrementAndGet() >= failureThreshold || state.get() != CircuitState.CLOSED){
+            open(now);
+        }
+    }
+
+    /**
+     * Count the time the gas pump was held at once
+     *
+     * @param holdNanos
+     */
+    void recordLockHold(long holdNanos) {
+        lockHoldNanos.add(holdNanos);
+        maxLockHoldNanos.accumulate(holdNanos);
+    }
+
+    private boolean isStalled(long now) {
+        return dispensing && now - dispenseDeadline > 0;
+    }
+
+    private void open(long now) {
+
+        openedAt.set(now);
+
+        if(state.getAndSet(CircuitState.OPEN) == CircuitState.CLOSED){
+            trips.increment();
+        }
+    }
+
+}
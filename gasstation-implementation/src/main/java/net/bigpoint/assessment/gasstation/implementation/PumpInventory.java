@@ -0,0 +1,138 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.Arrays;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Inventory of the gas pumps of a gas station : gas type , gas left and busy flag of every gas pump , taken with
+ * GasStationManager.getInventory. Kept in arrays reused from one inventory to the next , so monitoring can poll a
+ * gas station often without allocating. Not thread-safe , one inventory per polling thread
+ */
+public final class PumpInventory {
+
+    private GasPump[] gasPumps = new GasPump[0];
+
+    private long[] remainingMilliLitres = new long[0];
+
+    private boolean[] busy = new boolean[0];
+
+    private int size;
+
+    /**
+     * Forget the gas pumps of the previous inventory
+     */
+    void clear() {
+        //Keeps no gas pumps of a gas station from being collected
+        Arrays.fill(gasPumps, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Take a gas pump into the inventory , growing the arrays when full
+     *
+     * @param managedPump
+     */
+    void add(ManagedPump managedPump) {
+
+        if(size == gasPumps.length){
+            int capacity = Math.max(16, size * 2);
+            gasPumps = Arrays.copyOf(gasPumps, capacity);
+            remainingMilliLitres = Arrays.copyOf(remainingMilliLitres, capacity);
+            busy = Arrays.copyOf(busy, capacity);
+        }
+
+        gasPumps[size] = managedPump.getGasPump();
+        remainingMilliLitres[size] = managedPump.getRemainingMilliLitres();
+        busy[size] = managedPump.isBusy();
+        size++;
+    }
+
+    /**
+     * @return the number of gas pumps in the inventory
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     * @return the gas pump
+     */
+    public GasPump getGasPump(int index) {
+        checkIndex(index);
+        return gasPumps[index];
+    }
+
+    /**
+     * @param index
+     * @return the gas type of the gas pump
+     */
+    public GasType getGasType(int index) {
+        checkIndex(index);
+        return gasPumps[index].getGasType();
+    }
+
+    /**
+     * @param index
+     * @return the litres left in the gas pump , less the sales counted
+     */
+    public double getRemainingAmount(int index) {
+        checkIndex(index);
+        return (double) remainingMilliLitres[index] / ManagedPump.MILLI_LITRES_PER_LITRE;
+    }
+
+    /**
+     * @param index
+     * @return true when a customer was using the gas pump
+     */
+    public boolean isBusy(int index) {
+        checkIndex(index);
+        return busy[index];
+    }
+
+    /**
+     * Get the litres left in all gas pumps of a gas type
+     *
+     * @param type
+     * @return (double) remainingLitres
+     */
+    public double getRemainingAmount(GasType type) {
+
+        long milliLitres = 0;
+        for(int i = 0; i < size; i++){
+            if(gasPumps[i].getGasType() == type){
+                milliLitres += remainingMilliLitres[i];
+            }
+        }
+
+        return (double) milliLitres / ManagedPump.MILLI_LITRES_PER_LITRE;
+    }
+
+    /**
+     * Get the number of busy gas pumps
+     *
+     * @return (int) busyGasPumps
+     */
+    public int getNumberOfBusyGasPumps() {
+
+        int busyGasPumps = 0;
+        for(int i = 0; i < size; i++){
+            if(busy[i]){
+                busyGasPumps++;
+            }
+        }
+
+        return busyGasPumps;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= size){
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * How GasStationManager claims a gas pump of the requested gas type for a purchase
+ */
+public enum PumpSelectionMode {
+    
+    /**
+     * Reserves the gas on the first gas pump with enough gas and waits only for that gas pump
+     */
+    BLOCKING,
+    
+    /**
+     * Claims the first free gas pump with enough gas , busy gas pumps are skipped.
+     * Only waits like BLOCKING when every gas pump of the type is busy
+     */
+    TRY_LOCK;
+    
+}
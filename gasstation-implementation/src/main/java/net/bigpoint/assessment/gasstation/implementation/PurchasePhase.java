@@ -0,0 +1,41 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Phases of a purchase reported to the StationMetricsListener
+ */
+public enum PurchasePhase {
+    
+    /**
+     * Checking the parameters of the purchase
+     */
+    VALIDATION,
+    
+    /**
+     * Checking the price against the maximum price of the customer
+     */
+    PRICE_CHECK,
+    
+    /**
+     * Waiting in the customer queue of the gas type , only with a customer queue
+     */
+    QUEUE_WAIT,
+    
+    /**
+     * Ordering the gas pumps and reserving the amount on one of them
+     */
+    PUMP_SELECTION,
+    
+    /**
+     * Waiting for the reserved gas pump to become free
+     */
+    LOCK_WAIT,
+    
+    /**
+     * GasPump.pumpGas
+     */
+    PUMPING;
+    
+}
@@ -0,0 +1,58 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * One purchase of a batch sent to GasStationManager.buyGasBatch , the same parameters as buyGas
+ */
+public final class PurchaseRequest {
+
+    private final GasType type;
+
+    private final double amountInLiters;
+
+    private final double maxPricePerLiter;
+
+    /**
+     * Purchase of amountInLiters of a gas type for at most maxPricePerLiter
+     *
+     * @param type
+     * @param amountInLiters
+     * @param maxPricePerLiter
+     */
+    public PurchaseRequest(GasType type, double amountInLiters, double maxPricePerLiter) {
+        this.type = type;
+        this.amountInLiters = amountInLiters;
+        this.maxPricePerLiter = maxPricePerLiter;
+    }
+
+    /**
+     * @return the gas type requested
+     */
+    public GasType getType() {
+        return type;
+    }
+
+    /**
+     * @return the litres requested
+     */
+    public double getAmountInLiters() {
+        return amountInLiters;
+    }
+
+    /**
+     * @return the highest price per litre the customer pays
+     */
+    public double getMaxPricePerLiter() {
+        return maxPricePerLiter;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + amountInLiters + "l at " + maxPricePerLiter;
+    }
+
+}
@@ -0,0 +1,119 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Outcome of GasStationManager.tryBuyGas , reports rejections without throwing exceptions.
+ * Rejections share one instance per outcome
+ */
+public final class PurchaseResult {
+    
+    /**
+     * Outcome of a purchase
+     */
+    public enum Outcome {
+        
+        /**
+         * Gas was sold
+         */
+        SOLD,
+        
+        /**
+         * Not enough gas of this type could be provided by any single gas pump
+         */
+        NOT_ENOUGH_GAS,
+        
+        /**
+         * Gas is not sold at the requested price or any lower price
+         */
+        GAS_TOO_EXPENSIVE,
+        
+        /**
+         * All gas pumps of this type were busy and too many customers were already waiting
+         */
+        QUEUE_FULL,
+        
+        /**
+         * All gas pumps of this type were busy and the customer waited too long for one
+         */
+        QUEUE_TIMED_OUT,
+        
+        /**
+         * The deadline of the customer passed or the customer was interrupted while waiting for a gas pump
+         */
+        TIMED_OUT;
+        
+    }
+    
+    /**
+     * Shared result of purchases cancelled because of no gas
+     */
+    public final static PurchaseResult NOT_ENOUGH_GAS = new PurchaseResult(Outcome.NOT_ENOUGH_GAS, 0.0d);
+    
+    /**
+     * Shared result of purchases cancelled because of gas too expensive
+     */
+    public final static PurchaseResult GAS_TOO_EXPENSIVE = new PurchaseResult(Outcome.GAS_TOO_EXPENSIVE, 0.0d);
+    
+    /**
+     * Shared result of purchases turned away by a full customer queue
+     */
+    public final static PurchaseResult QUEUE_FULL = new PurchaseResult(Outcome.QUEUE_FULL, 0.0d);
+    
+    /**
+     * Shared result of purchases given up waiting in the customer queue
+     */
+    public final static PurchaseResult QUEUE_TIMED_OUT = new PurchaseResult(Outcome.QUEUE_TIMED_OUT, 0.0d);
+    
+    /**
+     * Shared result of purchases given up at the deadline of the customer
+     */
+    public final static PurchaseResult TIMED_OUT = new PurchaseResult(Outcome.TIMED_OUT, 0.0d);
+    
+    private final Outcome outcome;
+    
+    private final double priceToPay;
+    
+    private PurchaseResult(Outcome outcome, double priceToPay) {
+        this.outcome = outcome;
+        this.priceToPay = priceToPay;
+    }
+    
+    /**
+     * Result of a sale
+     * 
+     * @param priceToPay
+     * @return purchaseResult
+     */
+    static PurchaseResult sold(double priceToPay) {
+        return new PurchaseResult(Outcome.SOLD, priceToPay);
+    }
+    
+    /**
+     * @return the outcome of the purchase
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+    
+    /**
+     * @return true when gas was sold
+     */
+    public boolean isSold() {
+        return outcome == Outcome.SOLD;
+    }
+    
+    /**
+     * @return the price the customer has to pay , 0 when gas was not sold
+     */
+    public double getPriceToPay() {
+        return priceToPay;
+    }
+    
+    @Override
+    public String toString() {
+        return isSold() ? outcome + " " + priceToPay : outcome.toString();
+    }
+    
+}
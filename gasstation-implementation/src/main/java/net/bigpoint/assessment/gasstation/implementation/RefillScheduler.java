@@ -0,0 +1,365 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.io.Closeable;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Orders tanker deliveries for the gas pumps of a gas station on a background thread.
+ *
+ * Every gas pump with refill levels gets gas ordered once the gas not reserved by any customer falls to its low
+ * water mark. Orders are batched per gas type : a gas pump reaching its mark orders one delivery for the gas type ,
+ * which also tops up every other gas pump of the type below the top up fraction of its refill level. The litres
+ * ordered fill a gas pump up to its refill level as it was when ordered and are reported as pending until
+ * delivered , see GasStationManager.getPendingLitres. A gas pump is out of rotation while the tanker refills it ,
+ * customers are served by the other gas pumps of the type meanwhile. A gas pump whose refill fails is logged and
+ * its pending litres cleared , so the next check orders gas for it again while it is still low
+ */
+public final class RefillScheduler implements Closeable {
+
+    /**
+     * Check the gas pumps every second
+     */
+    public final static long DEFAULT_CHECK_INTERVAL_MILLIS = 1000;
+
+    /**
+     * Gas pumps below half their refill level join a delivery ordered for their gas type
+     */
+    public final static double DEFAULT_TOP_UP_FRACTION = 0.5;
+
+    private final static Logger LOGGER = Logger.getLogger(RefillScheduler.class.getName());
+
+    private final GasStationManager stationManager;
+
+    private final long checkIntervalNanos;
+
+    private final long deliveryDelayNanos;
+
+    private final double refillNanosPerLitre;
+
+    private final double topUpFraction;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    private final AtomicLong deliveries = new AtomicLong();
+
+    private final AtomicLong deliveredMilliLitres = new AtomicLong();
+
+    private final AtomicLong failedRefills = new AtomicLong();
+
+    private RefillScheduler(Builder builder) {
+        this.stationManager = builder.stationManager;
+        this.checkIntervalNanos = builder.checkIntervalNanos;
+        this.deliveryDelayNanos = builder.deliveryDelayNanos;
+        this.refillNanosPerLitre = builder.refillSecondsPerLitre * 1e9;
+        this.topUpFraction = builder.topUpFraction;
+
+        //Deliveries already ordered still arrive after close , checks stop
+        this.executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "gas-station-refill");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Start building a refill scheduler for a gas station
+     *
+     * @param stationManager
+     * @return builder
+     */
+    public static Builder builder(GasStationManager stationManager) {
+        return new Builder(stationManager);
+    }
+
+    /**
+     * Set when gas is ordered for a gas pump and how much it is filled up to
+     *
+     * @param pump
+     * @param lowWaterLitres
+     * @param refillToLitres
+     * @throws InvalidParameterException when the gas pump is not part of the gas station or the low water mark is
+     * not below the refill level
+     */
+    public void setRefillLevels(GasPump pump, double lowWaterLitres, double refillToLitres) {
+
+        ManagedPump managedPump = pump == null ? null : stationManager.findManagedPump(pump);
+
+        if(managedPump == null || !(lowWaterLitres >= 0) || !(lowWaterLitres < refillToLitres)){
+            throw new InvalidParameterException();
+        }
+
+        managedPump.setRefillLevels(ManagedPump.toMilliLitres(lowWaterLitres), ManagedPump.toMilliLitres(refillToLitres));
+    }
+
+    /**
+     * Set the refill levels of every gas pump of a gas type added so far
+     *
+     * @param type
+     * @param lowWaterLitres
+     * @param refillToLitres
+     */
+    public void setRefillLevels(GasType type, double lowWaterLitres, double refillToLitres) {
+        for(ManagedPump managedPump : stationManager.getManagedPumps(type)){
+            setRefillLevels(managedPump.getGasPump(), lowWaterLitres, refillToLitres);
+        }
+    }
+
+    /**
+     * Check the gas pumps at the check interval until closed. A failed check is logged and the next check tries again
+     */
+    public void start() {
+        executor.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                //An exception leaving the task would cancel every later check
+                try {
+                    checkNow();
+                } catch (RuntimeException ex) {
+                    LOGGER.log(Level.WARNING, "Refill check failed", ex);
+                }
+            }
+        }, 0, checkIntervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Check the gas pumps once and order the deliveries needed
+     *
+     * @return (int) number of deliveries ordered
+     */
+    public synchronized int checkNow() {
+
+        int ordered = 0;
+
+        if(executor.isShutdown()){
+            return ordered;
+        }
+
+        for(GasType gasType : GasType.values()){
+
+            List<ManagedPump> managedPumps = stationManager.getManagedPumps(gasType);
+
+            boolean lowWater = false;
+            for(ManagedPump managedPump : managedPumps){
+                if(isRefilled(managedPump) && managedPump.getAvailableMilliLitres() <= managedPump.getLowWaterMilliLitres()){
+                    lowWater = true;
+                    break;
+                }
+            }
+
+            if(!lowWater){
+                continue;
+            }
+
+            //One delivery for the gas type , topping up the gas pumps low enough to be worth it
+            final List<ManagedPump> batch = new ArrayList<ManagedPump>();
+            final List<Long> milliLitres = new ArrayList<Long>();
+
+            for(ManagedPump managedPump : managedPumps){
+
+                if(!isRefilled(managedPump)){
+                    continue;
+                }
+
+                long available = managedPump.getAvailableMilliLitres();
+                long refillTo = managedPump.getRefillToMilliLitres();
+
+                if(available <= managedPump.getLowWaterMilliLitres() || available < refillTo * topUpFraction){
+                    managedPump.setPendingMilliLitres(refillTo - available);
+                    batch.add(managedPump);
+                    milliLitres.add(refillTo - available);
+                }
+            }
+
+            executor.schedule(new Runnable() {
+                public void run() {
+                    deliver(batch, milliLitres);
+                }
+            }, deliveryDelayNanos, TimeUnit.NANOSECONDS);
+
+            ordered++;
+        }
+
+        return ordered;
+    }
+
+    /**
+     * Check if gas is ordered automatically for a gas pump with no delivery pending
+     */
+    private static boolean isRefilled(ManagedPump managedPump) {
+        return managedPump.getLowWaterMilliLitres() != ManagedPump.NO_REFILL && managedPump.getPendingMilliLitres() == 0;
+    }
+
+    /**
+     * Refill the gas pumps of a delivery one after the other , a failed refill does not stop the others
+     */
+    private void deliver(List<ManagedPump> batch, List<Long> milliLitres) {
+
+        for(int i = 0; i < batch.size(); i++){
+
+            ManagedPump managedPump = batch.get(i);
+            long delivered = milliLitres.get(i);
+
+            try {
+                stationManager.deliverGas(managedPump, delivered, (long) (delivered * refillNanosPerLitre / ManagedPump.MILLI_LITRES_PER_LITRE));
+                deliveredMilliLitres.addAndGet(delivered);
+            } catch (RuntimeException ex) {
+                failedRefills.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Refill of gas pump " + managedPump.getIndex() + " failed", ex);
+            } finally {
+                managedPump.setPendingMilliLitres(0);
+            }
+        }
+
+        deliveries.incrementAndGet();
+    }
+
+    /**
+     * Get the number of deliveries completed
+     *
+     * @return (long) deliveries
+     */
+    public long getNumberOfDeliveries() {
+        return deliveries.get();
+    }
+
+    /**
+     * Get the number of gas pumps whose refill failed
+     *
+     * @return (long) failedRefills
+     */
+    public long getNumberOfFailedRefills() {
+        return failedRefills.get();
+    }
+
+    /**
+     * Get the litres delivered to all gas pumps
+     *
+     * @return (double) deliveredLitres
+     */
+    public double getDeliveredLitres() {
+        return (double) deliveredMilliLitres.get() / ManagedPump.MILLI_LITRES_PER_LITRE;
+    }
+
+    /**
+     * Stop checking the gas pumps , deliveries already ordered still arrive
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Builder for refill schedulers , defaults to a check every second , immediate deliveries and no refill time
+     */
+    public static class Builder {
+
+        private final GasStationManager stationManager;
+
+        private long checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_CHECK_INTERVAL_MILLIS);
+
+        private long deliveryDelayNanos;
+
+        private double refillSecondsPerLitre;
+
+        private double topUpFraction = DEFAULT_TOP_UP_FRACTION;
+
+        private Builder(GasStationManager stationManager) {
+
+            if(stationManager == null){
+                throw new InvalidParameterException();
+            }
+
+            this.stationManager = stationManager;
+        }
+
+        /**
+         * How often the gas pumps are checked after start
+         *
+         * @param checkInterval
+         * @param unit
+         * @return builder
+         */
+        public Builder checkInterval(long checkInterval, TimeUnit unit) {
+
+            if(checkInterval <= 0){
+                throw new InvalidParameterException();
+            }
+
+            this.checkIntervalNanos = unit.toNanos(checkInterval);
+            return this;
+        }
+
+        /**
+         * Time between ordering gas and the tanker arriving
+         *
+         * @param deliveryDelay
+         * @param unit
+         * @return builder
+         */
+        public Builder deliveryDelay(long deliveryDelay, TimeUnit unit) {
+
+            if(deliveryDelay < 0){
+                throw new InvalidParameterException();
+            }
+
+            this.deliveryDelayNanos = unit.toNanos(deliveryDelay);
+            return this;
+        }
+
+        /**
+         * Time a gas pump is out of rotation per litre delivered to it
+         *
+         * @param refillSecondsPerLitre
+         * @return builder
+         */
+        public Builder refillSecondsPerLitre(double refillSecondsPerLitre) {
+
+            if(!(refillSecondsPerLitre >= 0)){
+                throw new InvalidParameterException();
+            }
+
+            this.refillSecondsPerLitre = refillSecondsPerLitre;
+            return this;
+        }
+
+        /**
+         * Share of its refill level a gas pump must be below to join a delivery ordered for its gas type
+         *
+         * @param topUpFraction between 0 , only gas pumps at their low water mark , and 1 , every gas pump
+         * @return builder
+         */
+        public Builder topUpFraction(double topUpFraction) {
+
+            if(!(topUpFraction >= 0 && topUpFraction <= 1)){
+                throw new InvalidParameterException();
+            }
+
+            this.topUpFraction = topUpFraction;
+            return this;
+        }
+
+        /**
+         * Build the refill scheduler , checks begin on start
+         *
+         * @return refillScheduler
+         */
+        public RefillScheduler build() {
+            return new RefillScheduler(this);
+        }
+
+    }
+
+}
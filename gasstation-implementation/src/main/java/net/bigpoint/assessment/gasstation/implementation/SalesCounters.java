@@ -0,0 +1,71 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Striped counters of the sales of a gas type or a gas pump , updated on the purchase path without contention
+ * and read without blocking it. Cancellations are only counted per gas type
+ */
+final class SalesCounters {
+    
+    /**
+     * Number of sales
+     */
+    final LongAdder sales = new LongAdder();
+    
+    /**
+     * Milli litres dispensed
+     */
+    final LongAdder milliLitresDispensed = new LongAdder();
+    
+    /**
+     * Revenue in minor currency units
+     */
+    final LongAdder revenue = new LongAdder();
+    
+    /**
+     * Number of cancellations because of no gas
+     */
+    final LongAdder cancellationsNoGas = new LongAdder();
+    
+    /**
+     * Number of cancellations because of gas too expensive
+     */
+    final LongAdder cancellationsTooExpensive = new LongAdder();
+    
+    /**
+     * Number of customers turned away by a full customer queue
+     */
+    final LongAdder cancellationsQueueFull = new LongAdder();
+    
+    /**
+     * Number of customers given up waiting in the customer queue
+     */
+    final LongAdder cancellationsQueueTimedOut = new LongAdder();
+    
+    /**
+     * Number of customers whose purchase deadline passed or who were interrupted while waiting for a gas pump
+     */
+    final LongAdder cancellationsTimedOut = new LongAdder();
+    
+    /**
+     * Nanoseconds customers waited for a gas pump to become free
+     */
+    final LongAdder lockWaitNanos = new LongAdder();
+    
+    /**
+     * Count a sale
+     * 
+     * @param milliLitres
+     * @param revenueInMinorUnits 
+     */
+    void recordSale(long milliLitres, long revenueInMinorUnits) {
+        sales.increment();
+        milliLitresDispensed.add(milliLitres);
+        revenue.add(revenueInMinorUnits);
+    }
+    
+}
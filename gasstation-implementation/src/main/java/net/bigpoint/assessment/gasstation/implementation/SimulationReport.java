@@ -0,0 +1,253 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Outcome of a simulation run : customers , sales , cancellations and queue waits per gas type over the
+ * simulated time
+ */
+public final class SimulationReport {
+
+    private final long simulatedNanos;
+
+    private final Map<GasType, GasTypeReport> gasTypeReports;
+
+    SimulationReport(long simulatedNanos, EnumMap<GasType, GasTypeReport> gasTypeReports) {
+        this.simulatedNanos = simulatedNanos;
+        this.gasTypeReports = Collections.unmodifiableMap(gasTypeReports);
+    }
+
+    /**
+     * Get the simulated time
+     *
+     * @param unit
+     * @return (long) simulatedTime
+     */
+    public long getSimulatedTime(TimeUnit unit) {
+        return unit.convert(simulatedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the report of a gas type
+     *
+     * @param type
+     * @return gasTypeReport
+     */
+    public GasTypeReport getGasTypeReport(GasType type) {
+        return gasTypeReports.get(type);
+    }
+
+    /**
+     * Get the reports of all gas types
+     *
+     * @return gasTypeReports
+     */
+    public Map<GasType, GasTypeReport> getGasTypeReports() {
+        return gasTypeReports;
+    }
+
+    /**
+     * @return the number of customers arrived
+     */
+    public long getCustomers() {
+        long customers = 0;
+        for(GasTypeReport gasTypeReport : gasTypeReports.values()){
+            customers += gasTypeReport.customers;
+        }
+        return customers;
+    }
+
+    /**
+     * @return the number of sales
+     */
+    public long getSales() {
+        long sales = 0;
+        for(GasTypeReport gasTypeReport : gasTypeReports.values()){
+            sales += gasTypeReport.sales;
+        }
+        return sales;
+    }
+
+    /**
+     * @return the number of cancellations because of no gas
+     */
+    public long getCancellationsNoGas() {
+        long cancellations = 0;
+        for(GasTypeReport gasTypeReport : gasTypeReports.values()){
+            cancellations += gasTypeReport.cancellationsNoGas;
+        }
+        return cancellations;
+    }
+
+    /**
+     * @return the number of cancellations because of gas too expensive
+     */
+    public long getCancellationsTooExpensive() {
+        long cancellations = 0;
+        for(GasTypeReport gasTypeReport : gasTypeReports.values()){
+            cancellations += gasTypeReport.cancellationsTooExpensive;
+        }
+        return cancellations;
+    }
+
+    /**
+     * @return the sales per simulated hour
+     */
+    public double getSalesPerHour() {
+        return perHour(getSales(), simulatedNanos);
+    }
+
+    /**
+     * @return the share of customers leaving without gas
+     */
+    public double getCancellationRate() {
+        return rate(getCancellationsNoGas() + getCancellationsTooExpensive(), getCustomers());
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%.1f hours , %d customers , %.1f sales per hour , %.2f%% cancelled%n",
+                simulatedNanos / 3600e9, getCustomers(), getSalesPerHour(), getCancellationRate() * 100));
+
+        for(GasTypeReport gasTypeReport : gasTypeReports.values()){
+            if(gasTypeReport.customers != 0){
+                report.append(gasTypeReport).append(String.format("%n"));
+            }
+        }
+
+        return report.toString();
+    }
+
+    private static double perHour(long count, long nanos) {
+        return nanos == 0 ? 0 : count * 3600e9 / nanos;
+    }
+
+    private static double rate(long count, long total) {
+        return total == 0 ? 0 : (double) count / total;
+    }
+
+    /**
+     * Outcome of the customers of a gas type
+     */
+    public static final class GasTypeReport {
+
+        private final GasType gasType;
+
+        private final long simulatedNanos;
+
+        final long customers;
+
+        final long sales;
+
+        final long cancellationsNoGas;
+
+        final long cancellationsTooExpensive;
+
+        private final double revenue;
+
+        private final long totalQueueWaitNanos;
+
+        private final LatencyHistogram.Snapshot queueWaits;
+
+        GasTypeReport(GasType gasType, long simulatedNanos, long customers, long sales, long cancellationsNoGas,
+                long cancellationsTooExpensive, double revenue, long totalQueueWaitNanos, LatencyHistogram.Snapshot queueWaits) {
+            this.gasType = gasType;
+            this.simulatedNanos = simulatedNanos;
+            this.customers = customers;
+            this.sales = sales;
+            this.cancellationsNoGas = cancellationsNoGas;
+            this.cancellationsTooExpensive = cancellationsTooExpensive;
+            this.revenue = revenue;
+            this.totalQueueWaitNanos = totalQueueWaitNanos;
+            this.queueWaits = queueWaits;
+        }
+
+        /**
+         * @return the gas type
+         */
+        public GasType getGasType() {
+            return gasType;
+        }
+
+        /**
+         * @return the number of customers arrived
+         */
+        public long getCustomers() {
+            return customers;
+        }
+
+        /**
+         * @return the number of sales
+         */
+        public long getSales() {
+            return sales;
+        }
+
+        /**
+         * @return the number of cancellations because of no gas
+         */
+        public long getCancellationsNoGas() {
+            return cancellationsNoGas;
+        }
+
+        /**
+         * @return the number of cancellations because of gas too expensive
+         */
+        public long getCancellationsTooExpensive() {
+            return cancellationsTooExpensive;
+        }
+
+        /**
+         * @return the revenue of the sales
+         */
+        public double getRevenue() {
+            return revenue;
+        }
+
+        /**
+         * @return the sales per simulated hour
+         */
+        public double getSalesPerHour() {
+            return perHour(sales, simulatedNanos);
+        }
+
+        /**
+         * @return the share of customers leaving without gas
+         */
+        public double getCancellationRate() {
+            return rate(cancellationsNoGas + cancellationsTooExpensive, customers);
+        }
+
+        /**
+         * @return the mean simulated nanoseconds customers served waited for their gas pump
+         */
+        public double getMeanQueueWaitNanos() {
+            return sales == 0 ? 0 : (double) totalQueueWaitNanos / sales;
+        }
+
+        /**
+         * @return the simulated nanoseconds customers served waited for their gas pump
+         */
+        public LatencyHistogram.Snapshot getQueueWaits() {
+            return queueWaits;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s %8d customers , %8d sales , %6d no gas , %6d too expensive , wait mean %.1f s p99 %.1f s max %.1f s",
+                    gasType, customers, sales, cancellationsNoGas, cancellationsTooExpensive, getMeanQueueWaitNanos() / 1e9,
+                    queueWaits.getValueAtPercentile(99) / 1e9, queueWaits.getMaxValue() / 1e9);
+        }
+
+    }
+
+}
@@ -0,0 +1,179 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Rate of amounts recorded over a sliding time window , e.g. litres sold per hour over the last hour.
+ *
+ * The window is split into a ring of buckets. Every bucket is a single long holding the low bits of the number of
+ * the time bucket it counts in its high bits and the amount in its low bits , so a record moves a bucket on to the
+ * current time bucket and adds to it in one compare and set : constant time , lock-free and without allocating.
+ * Reading the rate sums the ring and clears buckets left behind by the window , which also keeps a bucket not
+ * recorded to for 2^24 time buckets from being taken for a current one
+ */
+public final class SlidingWindowRate {
+
+    /**
+     * Bits of a bucket holding the amount , the time bucket number gets the rest
+     */
+    private final static int AMOUNT_BITS = 40;
+
+    private final static long AMOUNT_MASK = (1L << AMOUNT_BITS) - 1;
+
+    private final static long TAG_MASK = (1L << (64 - AMOUNT_BITS)) - 1;
+
+    private final AtomicLongArray buckets;
+
+    private final long bucketNanos;
+
+    /**
+     * Time bucket numbers count from here , System.nanoTime may be negative
+     */
+    private final long originNanos;
+
+    /**
+     * Create a rate over a window split into buckets , the rate moves on a bucket at a time
+     *
+     * @param window
+     * @param unit
+     * @param bucketCount
+     * @throws InvalidParameterException when the window is shorter than a nanosecond per bucket
+     */
+    public SlidingWindowRate(long window, TimeUnit unit, int bucketCount) {
+        this(window, unit, bucketCount, System.nanoTime());
+    }
+
+    SlidingWindowRate(long window, TimeUnit unit, int bucketCount, long originNanos) {
+
+        if(bucketCount < 2 || unit.toNanos(window) < bucketCount){
+            throw new InvalidParameterException();
+        }
+
+        this.buckets = new AtomicLongArray(bucketCount);
+        this.bucketNanos = unit.toNanos(window) / bucketCount;
+        this.originNanos = originNanos;
+    }
+
+    /**
+     * Record an amount now
+     *
+     * @param amount not negative , up to 2^40 per bucket
+     */
+    public void record(long amount) {
+        record(amount, System.nanoTime());
+    }
+
+    /**
+     * Record an amount at a time of System.nanoTime
+     *
+     * @param amount
+     * @param nanoTime
+     */
+    void record(long amount, long nanoTime) {
+
+        long timeBucket = (nanoTime - originNanos) / bucketNanos;
+        int index = (int) (timeBucket % buckets.length());
+        long tag = timeBucket & TAG_MASK;
+
+        long bucket;
+        long recorded;
+        do {
+            bucket = buckets.get(index);
+
+            //Starts over when the bucket still counts an older time bucket
+            if(bucket >>> AMOUNT_BITS == tag){
+                recorded = bucket + amount;
+            } else {
+                recorded = (tag << AMOUNT_BITS) | amount;
+            }
+
+        } while(!buckets.compareAndSet(index, bucket, recorded));
+    }
+
+    /**
+     * Get the amount recorded over the window now
+     *
+     * @return (long) sum
+     */
+    public long getSum() {
+        return getSum(System.nanoTime());
+    }
+
+    /**
+     * Get the amount recorded over the window at a time of System.nanoTime
+     *
+     * @param nanoTime
+     * @return (long) sum
+     */
+    long getSum(long nanoTime) {
+
+        long timeBucket = (nanoTime - originNanos) / bucketNanos;
+        int bucketCount = buckets.length();
+        long sum = 0;
+
+        for(int age = 0; age < bucketCount; age++){
+
+            long windowBucket = timeBucket - age;
+            int index = (int) (((windowBucket % bucketCount) + bucketCount) % bucketCount);
+            long tag = windowBucket & TAG_MASK;
+            long bucket = buckets.get(index);
+
+            if(bucket >>> AMOUNT_BITS == tag){
+                sum += bucket & AMOUNT_MASK;
+            } else if(((tag - (bucket >>> AMOUNT_BITS)) & TAG_MASK) < (TAG_MASK >>> 1)){
+                //Left behind by the window , a bucket already moved on by a record after this read is kept
+                buckets.compareAndSet(index, bucket, tag << AMOUNT_BITS);
+            }
+        }
+
+        return sum;
+    }
+
+    /**
+     * Get the amount recorded per time unit over the window now , the current bucket counts for the part of it
+     * already passed
+     *
+     * @param unit
+     * @return (double) rate
+     */
+    public double getRate(TimeUnit unit) {
+        return getRate(unit, System.nanoTime());
+    }
+
+    /**
+     * Get the amount recorded per time unit over the window at a time of System.nanoTime
+     *
+     * @param unit
+     * @param nanoTime
+     * @return (double) rate
+     */
+    double getRate(TimeUnit unit, long nanoTime) {
+
+        long elapsedNanos = nanoTime - originNanos;
+
+        //Young windows are not stretched over time before the rate was created
+        long windowNanos = Math.min(elapsedNanos, (buckets.length() - 1) * bucketNanos + elapsedNanos % bucketNanos);
+
+        if(windowNanos <= 0){
+            return 0;
+        }
+
+        return (double) getSum(nanoTime) * unit.toNanos(1) / windowNanos;
+    }
+
+    /**
+     * Get the length of the window
+     *
+     * @param unit
+     * @return (long) window
+     */
+    public long getWindow(TimeUnit unit) {
+        return unit.convert(bucketNanos * buckets.length(), TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,98 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Epoch gate between the sales committing their counters and a snapshot reading them.
+ *
+ * A sale updates the counters of its gas type and of its gas pump , a snapshot must see either all of these
+ * updates or none. The epoch is even while sales commit freely and odd while a snapshot is captured. Sales
+ * keep pumping while a snapshot is captured , only committing their counters waits for the capture to end
+ */
+final class SnapshotGate {
+
+    /**
+     * Spins before yielding while waiting for the other side
+     */
+    private final static int SPINS_BEFORE_YIELD = 64;
+
+    /**
+     * Even while sales commit freely , odd while a snapshot is captured
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * Sales committing their counters
+     */
+    private final AtomicInteger committing = new AtomicInteger();
+
+    /**
+     * Start committing the counters of a sale , waits while a snapshot is captured
+     */
+    void enter() {
+
+        int spins = 0;
+
+        while(true){
+
+            long current = epoch.get();
+
+            if((current & 1) == 0){
+
+                committing.incrementAndGet();
+
+                //A snapshot started in between has to see the sale complete or not at all
+                if(epoch.get() == current){
+                    return;
+                }
+
+                committing.decrementAndGet();
+            }
+
+            spins = backOff(spins);
+        }
+    }
+
+    /**
+     * Done committing the counters of a sale
+     */
+    void exit() {
+        committing.decrementAndGet();
+    }
+
+    /**
+     * Start capturing a snapshot , waits for the sales committing to finish. One snapshot at a time
+     */
+    void close() {
+
+        epoch.incrementAndGet();
+
+        int spins = 0;
+        while(committing.get() != 0){
+            spins = backOff(spins);
+        }
+    }
+
+    /**
+     * Done capturing a snapshot
+     */
+    void open() {
+        epoch.incrementAndGet();
+    }
+
+    private static int backOff(int spins) {
+
+        if(spins < SPINS_BEFORE_YIELD){
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+
+        return spins + 1;
+    }
+
+}
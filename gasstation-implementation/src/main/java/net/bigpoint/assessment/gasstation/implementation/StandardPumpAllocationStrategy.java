@@ -0,0 +1,108 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Pump allocation strategies shipped with the gas station
+ */
+public enum StandardPumpAllocationStrategy implements PumpAllocationStrategy {
+    
+    /**
+     * First gas pump with enough gas , in the order the gas pumps were added
+     */
+    FIRST_FIT {
+        @Override
+        public List<ManagedPump> order(List<ManagedPump> candidates, long milliLitres) {
+            return candidates;
+        }
+    },
+    
+    /**
+     * Gas pump with the least gas that is still enough , keeps large remainders for large purchases
+     */
+    BEST_FIT {
+        @Override
+        long sortKey(ManagedPump candidate) {
+            return candidate.getAvailableMilliLitres();
+        }
+    },
+    
+    /**
+     * Gas pump with the most gas , drains the gas pumps of a type evenly
+     */
+    MOST_REMAINING {
+        @Override
+        long sortKey(ManagedPump candidate) {
+            return -candidate.getAvailableMilliLitres();
+        }
+    },
+    
+    /**
+     * Gas pump with the fewest customers being served or waiting
+     */
+    SHORTEST_QUEUE {
+        @Override
+        long sortKey(ManagedPump candidate) {
+            return candidate.getQueueLength();
+        }
+    };
+    
+    /**
+     * Sort key of a candidate , lowest first
+     * 
+     * @param candidate
+     * @return (long) sortKey
+     */
+    long sortKey(ManagedPump candidate) {
+        return 0;
+    }
+    
+    /**
+     * Orders the candidates with enough gas by their sort key. The keys are read once up front
+     * because the gas pumps keep changing while sorting
+     * 
+     * @param candidates
+     * @param milliLitres
+     * @return candidates in order of preference
+     */
+    @Override
+    public List<ManagedPump> order(List<ManagedPump> candidates, long milliLitres) {
+        
+        List<ManagedPump> fitting = new ArrayList<ManagedPump>(candidates.size());
+        
+        for(ManagedPump candidate : candidates){
+            if(candidate.getAvailableMilliLitres() >= milliLitres){
+                fitting.add(candidate);
+            }
+        }
+        
+        final long[] keys = new long[fitting.size()];
+        Integer[] positions = new Integer[fitting.size()];
+        
+        for(int i = 0; i < positions.length; i++){
+            keys[i] = sortKey(fitting.get(i));
+            positions[i] = i;
+        }
+        
+        //Stable , equal keys keep the order the gas pumps were added
+        Arrays.sort(positions, new Comparator<Integer>() {
+            public int compare(Integer first, Integer second) {
+                return Long.compare(keys[first], keys[second]);
+            }
+        });
+        
+        List<ManagedPump> ordered = new ArrayList<ManagedPump>(positions.length);
+        for(Integer position : positions){
+            ordered.add(fitting.get(position));
+        }
+        
+        return ordered;
+    }
+    
+}
@@ -0,0 +1,31 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Receives the latency of every phase of a purchase. Called on the purchase path , implementations must be
+ * thread-safe and cheap. See LatencyRecorder for a built-in implementation
+ */
+public interface StationMetricsListener {
+    
+    /**
+     * Listener that ignores everything , the gas station skips timing purchases with it
+     */
+    StationMetricsListener NO_OP = new StationMetricsListener() {
+        public void onPhase(GasType type, PurchasePhase phase, long nanos) {
+        }
+    };
+    
+    /**
+     * A phase of a purchase of the gas type completed
+     * 
+     * @param type
+     * @param phase
+     * @param nanos time spent in the phase
+     */
+    void onPhase(GasType type, PurchasePhase phase, long nanos);
+    
+}
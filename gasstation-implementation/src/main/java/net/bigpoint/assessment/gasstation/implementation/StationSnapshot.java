@@ -0,0 +1,314 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Snapshot of the state of a gas station : prices , gas pumps with their gas and all counters , as taken by
+ * GasStationManager.export and restored by GasStationManager.restore.
+ *
+ * The snapshot is kept in a compact binary format , counters are written as variable length integers so a gas pump
+ * takes a dozen bytes or so :
+ *
+ * magic , price version , number of gas types , per gas type the price bits and its counters ,
+ * number of gas pumps , per gas pump its index , gas type , milli litres added , its sales and lock wait counters
+ * and its health counters
+ */
+public final class StationSnapshot {
+
+    /**
+     * "GSS1"
+     */
+    private final static int MAGIC = 0x47535331;
+
+    private final static GasType[] GAS_TYPES = GasType.values();
+
+    private final byte[] data;
+
+    private StationSnapshot(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Read a snapshot from its binary format
+     *
+     * @param data
+     * @return stationSnapshot
+     * @throws InvalidParameterException when data is not a snapshot
+     */
+    public static StationSnapshot fromByteArray(byte[] data) {
+
+        if(data == null || data.length < 4){
+            throw new InvalidParameterException();
+        }
+
+        if(new Reader(data).readInt() != MAGIC){
+            throw new InvalidParameterException();
+        }
+
+        return new StationSnapshot(data.clone());
+    }
+
+    /**
+     * Get the binary format of the snapshot
+     *
+     * @return (byte[]) data
+     */
+    public byte[] toByteArray() {
+        return data.clone();
+    }
+
+    /**
+     * Get the size of the binary format in bytes
+     *
+     * @return (int) size
+     */
+    public int getSize() {
+        return data.length;
+    }
+
+    /**
+     * Fold the snapshot into the state a gas station is rebuilt from
+     *
+     * @return journalState
+     * @throws InvalidParameterException when the snapshot is truncated or holds unknown gas types
+     */
+    JournalState toState() {
+
+        JournalState state = new JournalState();
+        Reader reader = new Reader(data);
+
+        try {
+            //The magic was checked when the snapshot was read
+            reader.readInt();
+
+            long priceVersion = reader.readVarLong();
+
+            int gasTypes = (int) reader.readVarLong();
+            for(int i = 0; i < gasTypes; i++){
+
+                double price = Double.longBitsToDouble(reader.readLong());
+                SalesCounters counters = state.countersByType.get(GAS_TYPES[i]);
+
+                if(!Double.isNaN(price)){
+                    state.prices[i] = price;
+                    state.priceVersions[i] = priceVersion;
+                }
+
+                counters.sales.add(reader.readVarLong());
+                counters.milliLitresDispensed.add(reader.readVarLong());
+                counters.revenue.add(reader.readVarLong());
+                counters.cancellationsNoGas.add(reader.readVarLong());
+                counters.cancellationsTooExpensive.add(reader.readVarLong());
+                counters.cancellationsQueueFull.add(reader.readVarLong());
+                counters.cancellationsQueueTimedOut.add(reader.readVarLong());
+                counters.cancellationsTimedOut.add(reader.readVarLong());
+                counters.lockWaitNanos.add(reader.readVarLong());
+            }
+
+            int gasPumps = (int) reader.readVarLong();
+            for(int i = 0; i < gasPumps; i++){
+
+                int index = (int) reader.readVarLong();
+                GasType gasType = GAS_TYPES[reader.readByte()];
+
+                JournalState.PumpState pumpState = new JournalState.PumpState(gasType, reader.readVarLong());
+                pumpState.counters.sales.add(reader.readVarLong());
+                pumpState.counters.milliLitresDispensed.add(reader.readVarLong());
+                pumpState.counters.revenue.add(reader.readVarLong());
+                pumpState.counters.lockWaitNanos.add(reader.readVarLong());
+
+                PumpHealth health = pumpState.health;
+                health.dispenses.add(reader.readVarLong());
+                health.dispenseNanos.add(reader.readVarLong());
+                health.expectedDispenseNanos.add(reader.readVarLong());
+                health.slowDispenses.add(reader.readVarLong());
+                health.trips.add(reader.readVarLong());
+                health.lockHoldNanos.add(reader.readVarLong());
+                health.maxLockHoldNanos.accumulate(reader.readVarLong());
+
+                state.pumps.put(index, pumpState);
+            }
+
+        } catch (ArrayIndexOutOfBoundsException ex) {
+            throw new InvalidParameterException("Snapshot is truncated or corrupt");
+        }
+
+        return state;
+    }
+
+    /**
+     * Writes a snapshot in its binary format
+     */
+    static final class Writer {
+
+        private byte[] buffer;
+
+        private int position;
+
+        /**
+         * Writer sized for the number of gas pumps
+         *
+         * @param gasPumps
+         */
+        Writer(int gasPumps) {
+            buffer = new byte[64 + GAS_TYPES.length * 64 + gasPumps * 48];
+            writeInt(MAGIC);
+        }
+
+        /**
+         * Write the price version and the number of gas types , first thing after the magic
+         *
+         * @param prices
+         */
+        void writeHeader(PriceTable prices) {
+            writeVarLong(prices.getVersion());
+            writeVarLong(GAS_TYPES.length);
+        }
+
+        /**
+         * Write the price and counters of a gas type , in the order of the gas types
+         *
+         * @param prices
+         * @param gasType
+         * @param counters
+         */
+        void writeGasType(PriceTable prices, GasType gasType, SalesCounters counters) {
+            writeLong(Double.doubleToLongBits(prices.isPriced(gasType) ? prices.getPrice(gasType) : Double.NaN));
+            writeVarLong(counters.sales.sum());
+            writeVarLong(counters.milliLitresDispensed.sum());
+            writeVarLong(counters.revenue.sum());
+            writeVarLong(counters.cancellationsNoGas.sum());
+            writeVarLong(counters.cancellationsTooExpensive.sum());
+            writeVarLong(counters.cancellationsQueueFull.sum());
+            writeVarLong(counters.cancellationsQueueTimedOut.sum());
+            writeVarLong(counters.cancellationsTimedOut.sum());
+            writeVarLong(counters.lockWaitNanos.sum());
+        }
+
+        /**
+         * Write the number of gas pumps that follow
+         *
+         * @param gasPumps
+         */
+        void writeGasPumpCount(int gasPumps) {
+            writeVarLong(gasPumps);
+        }
+
+        /**
+         * Write a gas pump with its sales , lock wait and health counters
+         *
+         * @param managedPump
+         */
+        void writeGasPump(ManagedPump managedPump) {
+            SalesCounters counters = managedPump.getCounters();
+            PumpHealth health = managedPump.getHealth();
+            writeVarLong(managedPump.getIndex());
+            writeByte(managedPump.getGasPump().getGasType().ordinal());
+            writeVarLong(managedPump.getAddedMilliLitres());
+            writeVarLong(counters.sales.sum());
+            writeVarLong(counters.milliLitresDispensed.sum());
+            writeVarLong(counters.revenue.sum());
+            writeVarLong(counters.lockWaitNanos.sum());
+            writeVarLong(health.dispenses.sum());
+            writeVarLong(health.dispenseNanos.sum());
+            writeVarLong(health.expectedDispenseNanos.sum());
+            writeVarLong(health.slowDispenses.sum());
+            writeVarLong(health.trips.sum());
+            writeVarLong(health.lockHoldNanos.sum());
+            writeVarLong(health.maxLockHoldNanos.get());
+        }
+
+        /**
+         * Finish the snapshot
+         *
+         * @return stationSnapshot
+         */
+        StationSnapshot toSnapshot() {
+            return new StationSnapshot(Arrays.copyOf(buffer, position));
+        }
+
+        private void writeByte(int value) {
+            if(position == buffer.length){
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void writeInt(int value) {
+            for(int shift = 24; shift >= 0; shift -= 8){
+                writeByte(value >>> shift);
+            }
+        }
+
+        private void writeLong(long value) {
+            for(int shift = 56; shift >= 0; shift -= 8){
+                writeByte((int) (value >>> shift));
+            }
+        }
+
+        /**
+         * Seven bits per byte , the high bit set on all but the last byte
+         */
+        private void writeVarLong(long value) {
+            while((value & ~0x7FL) != 0){
+                writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            writeByte((int) value);
+        }
+
+    }
+
+    /**
+     * Reads a snapshot in its binary format
+     */
+    private static final class Reader {
+
+        private final byte[] data;
+
+        private int position;
+
+        Reader(byte[] data) {
+            this.data = data;
+        }
+
+        int readByte() {
+            return data[position++] & 0xFF;
+        }
+
+        int readInt() {
+            int value = 0;
+            for(int i = 0; i < 4; i++){
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        long readLong() {
+            long value = 0;
+            for(int i = 0; i < 8; i++){
+                value = (value << 8) | readByte();
+            }
+            return value;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            int next;
+            do {
+                next = readByte();
+                value |= (long) (next & 0x7F) << shift;
+                shift += 7;
+            } while((next & 0x80) != 0);
+            return value;
+        }
+
+    }
+
+}
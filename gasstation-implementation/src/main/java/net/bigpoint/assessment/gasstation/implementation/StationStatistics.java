@@ -0,0 +1,314 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Snapshot of the sales of a gas station per gas type and per gas pump.
+ * Read from striped counters while purchases go on , so counters of different gas types or gas pumps
+ * may be a few purchases apart
+ */
+public final class StationStatistics {
+    
+    private final Map<GasType, GasTypeStatistics> gasTypeStatistics;
+    
+    private final List<PumpStatistics> pumpStatistics;
+    
+    StationStatistics(EnumMap<GasType, GasTypeStatistics> gasTypeStatistics, List<PumpStatistics> pumpStatistics) {
+        this.gasTypeStatistics = Collections.unmodifiableMap(gasTypeStatistics);
+        this.pumpStatistics = Collections.unmodifiableList(pumpStatistics);
+    }
+    
+    /**
+     * Get the statistics of a gas type
+     * 
+     * @param type
+     * @return gasTypeStatistics
+     */
+    public GasTypeStatistics getGasTypeStatistics(GasType type) {
+        return gasTypeStatistics.get(type);
+    }
+    
+    /**
+     * Get the statistics of all gas types
+     * 
+     * @return gasTypeStatistics
+     */
+    public Map<GasType, GasTypeStatistics> getGasTypeStatistics() {
+        return gasTypeStatistics;
+    }
+    
+    /**
+     * Get the statistics of every gas pump , grouped by gas type in the order the gas pumps were added
+     * 
+     * @return pumpStatistics
+     */
+    public List<PumpStatistics> getPumpStatistics() {
+        return pumpStatistics;
+    }
+    
+    /**
+     * Sales of a gas type or a gas pump
+     */
+    public static class SalesStatistics {
+        
+        private final long sales;
+        
+        private final long milliLitresDispensed;
+        
+        private final long revenueInMinorUnits;
+        
+        private final long lockWaitNanos;
+        
+        SalesStatistics(SalesCounters counters) {
+            this.sales = counters.sales.sum();
+            this.milliLitresDispensed = counters.milliLitresDispensed.sum();
+            this.revenueInMinorUnits = counters.revenue.sum();
+            this.lockWaitNanos = counters.lockWaitNanos.sum();
+        }
+        
+        /**
+         * @return the number of sales
+         */
+        public long getSales() {
+            return sales;
+        }
+        
+        /**
+         * @return the litres dispensed
+         */
+        public double getLitresDispensed() {
+            return (double) milliLitresDispensed / ManagedPump.MILLI_LITRES_PER_LITRE;
+        }
+        
+        /**
+         * @return the revenue made
+         */
+        public double getRevenue() {
+            return FixedPoint.toCurrencyUnits(revenueInMinorUnits);
+        }
+        
+        /**
+         * @return the total nanoseconds customers waited for a gas pump to become free
+         */
+        public long getLockWaitNanos() {
+            return lockWaitNanos;
+        }
+        
+    }
+    
+    /**
+     * Sales and cancellations of a gas type
+     */
+    public static final class GasTypeStatistics extends SalesStatistics {
+        
+        private final GasType gasType;
+        
+        private final long cancellationsNoGas;
+        
+        private final long cancellationsTooExpensive;
+        
+        private final long cancellationsQueueFull;
+        
+        private final long cancellationsQueueTimedOut;
+        
+        private final long cancellationsTimedOut;
+        
+        GasTypeStatistics(GasType gasType, SalesCounters counters) {
+            super(counters);
+            this.gasType = gasType;
+            this.cancellationsNoGas = counters.cancellationsNoGas.sum();
+            this.cancellationsTooExpensive = counters.cancellationsTooExpensive.sum();
+            this.cancellationsQueueFull = counters.cancellationsQueueFull.sum();
+            this.cancellationsQueueTimedOut = counters.cancellationsQueueTimedOut.sum();
+            this.cancellationsTimedOut = counters.cancellationsTimedOut.sum();
+        }
+        
+        /**
+         * @return the gas type
+         */
+        public GasType getGasType() {
+            return gasType;
+        }
+        
+        /**
+         * @return the number of cancellations because of no gas
+         */
+        public long getCancellationsNoGas() {
+            return cancellationsNoGas;
+        }
+        
+        /**
+         * @return the number of cancellations because of gas too expensive
+         */
+        public long getCancellationsTooExpensive() {
+            return cancellationsTooExpensive;
+        }
+        
+        /**
+         * @return the number of customers turned away by a full customer queue
+         */
+        public long getCancellationsQueueFull() {
+            return cancellationsQueueFull;
+        }
+        
+        /**
+         * @return the number of customers given up waiting in the customer queue
+         */
+        public long getCancellationsQueueTimedOut() {
+            return cancellationsQueueTimedOut;
+        }
+        
+        /**
+         * @return the number of customers whose purchase deadline passed or who were interrupted while waiting
+         */
+        public long getCancellationsTimedOut() {
+            return cancellationsTimedOut;
+        }
+        
+    }
+    
+    /**
+     * Sales of a gas pump. Cancellations are not attributed to a gas pump , see GasTypeStatistics
+     */
+    public static final class PumpStatistics extends SalesStatistics {
+        
+        private final GasPump gasPump;
+        
+        private final double availableAmount;
+        
+        private final double pendingAmount;
+        
+        private final boolean inRotation;
+        
+        private final CircuitState circuitState;
+        
+        private final int consecutiveFailures;
+        
+        private final long circuitTrips;
+        
+        private final long dispenses;
+        
+        private final long slowDispenses;
+        
+        private final long dispenseNanos;
+        
+        private final long expectedDispenseNanos;
+        
+        private final long lockHoldNanos;
+        
+        private final long maxLockHoldNanos;
+        
+        PumpStatistics(ManagedPump managedPump) {
+            super(managedPump.getCounters());
+            this.gasPump = managedPump.getGasPump();
+            this.availableAmount = managedPump.getAvailableAmount();
+            this.pendingAmount = managedPump.getPendingAmount();
+            this.inRotation = managedPump.isInRotation();
+            
+            PumpHealth health = managedPump.getHealth();
+            this.circuitState = health.getState();
+            this.consecutiveFailures = health.getConsecutiveFailures();
+            this.circuitTrips = health.trips.sum();
+            this.dispenses = health.dispenses.sum();
+            this.slowDispenses = health.slowDispenses.sum();
+            this.dispenseNanos = health.dispenseNanos.sum();
+            this.expectedDispenseNanos = health.expectedDispenseNanos.sum();
+            this.lockHoldNanos = health.lockHoldNanos.sum();
+            this.maxLockHoldNanos = health.maxLockHoldNanos.get();
+        }
+        
+        /**
+         * @return the gas pump
+         */
+        public GasPump getGasPump() {
+            return gasPump;
+        }
+        
+        /**
+         * @return the gas type of the gas pump
+         */
+        public GasType getGasType() {
+            return gasPump.getGasType();
+        }
+        
+        /**
+         * @return the litres not yet reserved by any customer
+         */
+        public double getAvailableAmount() {
+            return availableAmount;
+        }
+        
+        /**
+         * @return the litres ordered and not delivered yet
+         */
+        public double getPendingAmount() {
+            return pendingAmount;
+        }
+        
+        /**
+         * @return false while the gas pump is refilled
+         */
+        public boolean isInRotation() {
+            return inRotation;
+        }
+        
+        /**
+         * @return the state of the circuit breaker of the gas pump
+         */
+        public CircuitState getCircuitState() {
+            return circuitState;
+        }
+        
+        /**
+         * @return the number of slow or failed dispenses since the last dispense in time
+         */
+        public int getConsecutiveFailures() {
+            return consecutiveFailures;
+        }
+        
+        /**
+         * @return the number of times the circuit opened
+         */
+        public long getCircuitTrips() {
+            return circuitTrips;
+        }
+        
+        /**
+         * @return the number of dispenses slower than allowed or failed
+         */
+        public long getSlowDispenses() {
+            return slowDispenses;
+        }
+        
+        /**
+         * @return the average nanoseconds a dispense took longer than it should , 0 without dispenses
+         */
+        public long getDispenseDeviationNanos() {
+            return dispenses == 0 ? 0 : (dispenseNanos - expectedDispenseNanos) / dispenses;
+        }
+        
+        /**
+         * @return the total nanoseconds the gas pump was held by customers and deliveries
+         */
+        public long getLockHoldNanos() {
+            return lockHoldNanos;
+        }
+        
+        /**
+         * @return the longest nanoseconds the gas pump was held at once
+         */
+        public long getMaxLockHoldNanos() {
+            return maxLockHoldNanos;
+        }
+        
+    }
+    
+}
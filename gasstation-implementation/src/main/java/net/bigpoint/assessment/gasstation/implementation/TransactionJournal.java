@@ -0,0 +1,736 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Durable redo journal of a gas station. Sales , cancellations , price changes and added gas pumps are appended
+ * as fixed size binary records to memory-mapped segment files once they took effect , a sale after the gas was pumped
+ * and counted. Appending never waits for the disk. A committer thread forces everything appended since its last run
+ * to disk once per commit interval , so all purchases of an interval share one fsync. Purchases made within the last
+ * commit interval before a crash are lost , awaitCommitted waits until everything appended so far is on disk.
+ * Records appended after the journal was closed are dropped and counted , the purchases they describe still succeed.
+ *
+ * When a station is built with a journal its state is rebuilt by replaying the journal. Compaction folds the full
+ * segments into one checkpoint file , replay then only reads the checkpoint and the segments written after it.
+ *
+ * Record layout , little endian , 32 bytes :
+ * kind (byte) , gas type ordinal (byte) , counter (short) , gas pump index (int) , two values (long) , checksum (int) ,
+ * unused (int). A record of kind 0 or with a wrong checksum ends a segment
+ */
+public final class TransactionJournal implements Closeable {
+
+    /**
+     * Bytes per record
+     */
+    public final static int RECORD_SIZE = 32;
+
+    /**
+     * Records of a segment by default , 32 MB segments
+     */
+    public final static int DEFAULT_RECORDS_PER_SEGMENT = 1 << 20;
+
+    /**
+     * Commit interval by default in milliseconds
+     */
+    public final static long DEFAULT_COMMIT_INTERVAL_MILLIS = 10;
+
+    /**
+     * Record kinds , transactions are 1 + the ordinal of TransactionLog.Kind
+     */
+    final static byte KIND_SET_PRICE = 16;
+    final static byte KIND_ADD_GAS_PUMP = 17;
+    final static byte KIND_COUNTER = 18;
+    final static byte KIND_REFILL = 19;
+
+    /**
+     * No gas type or gas pump
+     */
+    final static int NONE = -1;
+
+    private final static String SEGMENT_PREFIX = "segment-";
+    private final static String CHECKPOINT_PREFIX = "checkpoint-";
+    private final static String FILE_SUFFIX = ".journal";
+
+    private final Path directory;
+
+    private final int recordsPerSegment;
+
+    private final long commitIntervalNanos;
+
+    /**
+     * Guards the segment being appended to
+     */
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    /**
+     * Number of the segment being appended to , segments with lower numbers are full
+     */
+    private long segmentNumber;
+
+    /**
+     * Segment being appended to , null until the first record is appended to it
+     */
+    private FileChannel segmentChannel;
+
+    private MappedByteBuffer segment;
+
+    /**
+     * Next record of the segment
+     */
+    private int segmentPosition;
+
+    /**
+     * Records of the segment already forced to disk
+     */
+    private int segmentCommittedPosition;
+
+    /**
+     * Records appended since the journal was opened
+     */
+    private volatile long appendedRecords;
+
+    /**
+     * Records forced to disk since the journal was opened
+     */
+    private volatile long committedRecords;
+
+    /**
+     * Records dropped because they were appended after the journal was closed
+     */
+    private volatile long droppedRecords;
+
+    /**
+     * Full segments not forced to disk yet , handed to the committer when appending moves on to a new segment
+     */
+    private final List<FullSegment> fullSegments = new ArrayList<FullSegment>();
+
+    /**
+     * A segment file was created since the last commit , its directory entry still has to be forced
+     */
+    private boolean segmentCreated;
+
+    /**
+     * Waiters of awaitCommitted
+     */
+    private final Object commitMonitor = new Object();
+
+    private final Thread committer;
+
+    private volatile boolean closed;
+
+    /**
+     * Only one compaction at a time
+     */
+    private final Object compactionMonitor = new Object();
+
+    /**
+     * Journal in a directory with the default segment size and commit interval
+     *
+     * @param directory
+     * @throws IOException
+     */
+    public TransactionJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_RECORDS_PER_SEGMENT, DEFAULT_COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Journal in a directory , appending to a new segment after the segments already there. The segment is only
+     * created with the first record appended , opening the journal again and again leaves no empty segments behind
+     *
+     * @param directory
+     * @param recordsPerSegment
+     * @param commitInterval
+     * @param unit
+     * @throws IOException
+     */
+    public TransactionJournal(Path directory, int recordsPerSegment, long commitInterval, TimeUnit unit) throws IOException {
+
+        if(directory == null || recordsPerSegment <= 0 || recordsPerSegment > Integer.MAX_VALUE / RECORD_SIZE || commitInterval <= 0){
+            throw new InvalidParameterException();
+        }
+
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.commitIntervalNanos = unit.toNanos(commitInterval);
+
+        Files.createDirectories(directory);
+
+        List<Long> segmentNumbers = fileNumbers(SEGMENT_PREFIX);
+        List<Long> checkpointNumbers = fileNumbers(CHECKPOINT_PREFIX);
+
+        long lastNumber = 0;
+        if(!segmentNumbers.isEmpty()){
+            lastNumber = segmentNumbers.get(segmentNumbers.size() - 1);
+        }
+        if(!checkpointNumbers.isEmpty()){
+            lastNumber = Math.max(lastNumber, checkpointNumbers.get(checkpointNumbers.size() - 1));
+        }
+
+        segmentNumber = lastNumber + 1;
+
+        committer = new Thread(new Runnable() {
+            public void run() {
+                commitLoop();
+            }
+        }, "gas-station-journal");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * Append a sale or cancellation
+     *
+     * @param kind
+     * @param type
+     * @param pumpIndex gas pump that served a sale , NONE for cancellations
+     * @param milliLitres
+     * @param amountInMinorUnits
+     */
+    void appendTransaction(TransactionLog.Kind kind, GasType type, int pumpIndex, long milliLitres, long amountInMinorUnits) {
+        append((byte) (kind.ordinal() + 1), type.ordinal(), 0, pumpIndex, milliLitres, amountInMinorUnits);
+    }
+
+    /**
+     * Append a price change , replay keeps the price of the highest price table version
+     *
+     * @param type
+     * @param price
+     * @param version
+     */
+    void appendPrice(GasType type, double price, long version) {
+        append(KIND_SET_PRICE, type.ordinal(), 0, NONE, Double.doubleToLongBits(price), version);
+    }
+
+    /**
+     * Append an added gas pump
+     *
+     * @param type
+     * @param pumpIndex
+     * @param milliLitres gas in the gas pump when added
+     */
+    void appendGasPump(GasType type, int pumpIndex, long milliLitres) {
+        append(KIND_ADD_GAS_PUMP, type.ordinal(), 0, pumpIndex, milliLitres, 0);
+    }
+
+    /**
+     * Append gas delivered to a gas pump
+     *
+     * @param type
+     * @param pumpIndex
+     * @param milliLitres
+     */
+    void appendRefill(GasType type, int pumpIndex, long milliLitres) {
+        append(KIND_REFILL, type.ordinal(), 0, pumpIndex, milliLitres, 0);
+    }
+
+    /**
+     * Write a record into the segment , starting a new segment when full. Dropped once the journal is closed
+     */
+    private void append(byte kind, int gasType, int counter, int pumpIndex, long first, long second) {
+
+        appendLock.lock();
+        try {
+            //Checked holding the lock , close commits what was appended before it
+            if(closed){
+                droppedRecords++;
+                return;
+            }
+
+            if(segment == null){
+                openSegment(segmentNumber);
+            } else if(segmentPosition == recordsPerSegment){
+                rollSegment();
+            }
+
+            writeRecord(segment, segmentPosition * RECORD_SIZE, kind, gasType, counter, pumpIndex, first, second);
+
+            segmentPosition++;
+            appendedRecords++;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Hand the full segment to the committer and continue in a new one , called holding the append lock
+     *
+     * @throws IOException
+     */
+    private void rollSegment() throws IOException {
+
+        FullSegment fullSegment = new FullSegment(segmentChannel, segment);
+
+        openSegment(segmentNumber + 1);
+
+        fullSegments.add(fullSegment);
+    }
+
+    /**
+     * Create and map a segment and append to it from now on. The segment appended to so far is kept when that fails
+     *
+     * @param number
+     * @throws IOException
+     */
+    private void openSegment(long number) throws IOException {
+
+        Path file = fileOf(SEGMENT_PREFIX, number);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer records;
+
+        try {
+            records = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_SIZE);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw ex;
+        }
+
+        segmentNumber = number;
+        segmentChannel = channel;
+        segment = records;
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segmentPosition = 0;
+        segmentCommittedPosition = 0;
+        segmentCreated = true;
+    }
+
+    /**
+     * Commit once per commit interval until closed
+     */
+    private void commitLoop() {
+
+        while(!closed){
+
+            LockSupport.parkNanos(this, commitIntervalNanos);
+
+            try {
+                commit();
+            } catch (RuntimeException ex) {
+                // retried with the next commit
+            }
+        }
+    }
+
+    /**
+     * Force the records appended since the last commit to disk , the rest of the full segments first and then the
+     * segment being appended to. Purchases keep appending meanwhile
+     */
+    private void commit() {
+
+        List<FullSegment> rolled;
+        MappedByteBuffer committing;
+        int from;
+        int to;
+        long appended;
+        boolean created;
+
+        appendLock.lock();
+        try {
+            rolled = new ArrayList<FullSegment>(fullSegments);
+            fullSegments.clear();
+            committing = segment;
+            from = segmentCommittedPosition;
+            to = segmentPosition;
+            appended = appendedRecords;
+            created = segmentCreated;
+            segmentCommittedPosition = to;
+            segmentCreated = false;
+        } finally {
+            appendLock.unlock();
+        }
+
+        try {
+            for(FullSegment fullSegment : rolled){
+                fullSegment.force();
+            }
+
+            if(committing != null && to > from){
+                committing.force(from * RECORD_SIZE, (to - from) * RECORD_SIZE);
+            }
+
+            //New segment files survive a crash only once their directory entry is on disk
+            if(created){
+                forceDirectory();
+            }
+        } catch (IOException ex) {
+            //Whatever is not known to be on disk is forced again with the next commit
+            requeue(rolled, committing, from, created);
+            throw new UncheckedIOException(ex);
+        } catch (RuntimeException ex) {
+            requeue(rolled, committing, from, created);
+            throw ex;
+        }
+
+        if(appended > committedRecords){
+            synchronized(commitMonitor){
+                committedRecords = appended;
+                commitMonitor.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Hand a failed commit back to the next one
+     *
+     * @param rolled full segments of the commit
+     * @param committing segment being appended to when committing
+     * @param from first record of that segment the commit forced
+     * @param created a segment file was created
+     */
+    private void requeue(List<FullSegment> rolled, MappedByteBuffer committing, int from, boolean created) {
+
+        appendLock.lock();
+        try {
+            fullSegments.addAll(0, rolled);
+
+            //A segment that became full meanwhile is forced in whole
+            if(committing == segment){
+                segmentCommittedPosition = Math.min(segmentCommittedPosition, from);
+            }
+
+            segmentCreated |= created;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Force the entries of the directory to disk , so files created or renamed in it survive a crash
+     *
+     * @throws IOException
+     */
+    private void forceDirectory() throws IOException {
+
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Wait until every record appended so far is on disk , commits right away instead of waiting for the interval
+     *
+     * @throws InterruptedException
+     */
+    public void awaitCommitted() throws InterruptedException {
+
+        long target = appendedRecords;
+
+        if(committedRecords >= target){
+            return;
+        }
+
+        LockSupport.unpark(committer);
+
+        synchronized(commitMonitor){
+            while(committedRecords < target){
+
+                if(closed){
+                    throw new IllegalStateException("Journal has been closed");
+                }
+                commitMonitor.wait(TimeUnit.NANOSECONDS.toMillis(commitIntervalNanos) + 1);
+            }
+        }
+    }
+
+    /**
+     * Get number of records appended since the journal was opened
+     *
+     * @return (long) appendedRecords
+     */
+    public long getAppendedRecords() {
+        return appendedRecords;
+    }
+
+    /**
+     * Get number of records on disk since the journal was opened
+     *
+     * @return (long) committedRecords
+     */
+    public long getCommittedRecords() {
+        return committedRecords;
+    }
+
+    /**
+     * Get number of records dropped because they were appended after the journal was closed
+     *
+     * @return (long) droppedRecords
+     */
+    public long getDroppedRecords() {
+        return droppedRecords;
+    }
+
+    /**
+     * Rebuild the state of the station from the latest checkpoint and the segments written after it
+     *
+     * @return state
+     * @throws IOException
+     */
+    JournalState replay() throws IOException {
+
+        JournalState state = new JournalState();
+
+        long replayedUpTo = 0;
+
+        List<Long> checkpointNumbers = fileNumbers(CHECKPOINT_PREFIX);
+        if(!checkpointNumbers.isEmpty()){
+            replayedUpTo = checkpointNumbers.get(checkpointNumbers.size() - 1);
+            replayFile(fileOf(CHECKPOINT_PREFIX, replayedUpTo), state);
+        }
+
+        for(long number : fileNumbers(SEGMENT_PREFIX)){
+            if(number > replayedUpTo && number < currentSegmentNumber()){
+                replayFile(fileOf(SEGMENT_PREFIX, number), state);
+            }
+        }
+
+        return state;
+    }
+
+    private void replayFile(Path file, JournalState state) throws IOException {
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            records.order(ByteOrder.LITTLE_ENDIAN);
+
+            for(int offset = 0; offset + RECORD_SIZE <= records.limit(); offset += RECORD_SIZE){
+
+                long header = records.getLong(offset);
+                long first = records.getLong(offset + 8);
+                long second = records.getLong(offset + 16);
+
+                //End of the records written , or a record torn by a crash
+                if((byte) header == 0 || records.getInt(offset + 24) != checksum(header, first, second)){
+                    return;
+                }
+
+                state.apply((byte) header, (byte) (header >>> 8), (short) (header >>> 16), (int) (header >>> 32), first, second);
+            }
+        }
+    }
+
+    /**
+     * Fold the full segments into a new checkpoint and delete them. Appending continues meanwhile
+     *
+     * @throws IOException
+     */
+    public void compact() throws IOException {
+
+        synchronized(compactionMonitor){
+
+            long lastFullSegment = currentSegmentNumber() - 1;
+
+            List<Long> checkpointNumbers = fileNumbers(CHECKPOINT_PREFIX);
+            long lastCheckpoint = checkpointNumbers.isEmpty() ? 0 : checkpointNumbers.get(checkpointNumbers.size() - 1);
+
+            if(lastFullSegment <= lastCheckpoint){
+                return;
+            }
+
+            JournalState state = new JournalState();
+
+            if(lastCheckpoint > 0){
+                replayFile(fileOf(CHECKPOINT_PREFIX, lastCheckpoint), state);
+            }
+            for(long number : fileNumbers(SEGMENT_PREFIX)){
+                if(number > lastCheckpoint && number <= lastFullSegment){
+                    replayFile(fileOf(SEGMENT_PREFIX, number), state);
+                }
+            }
+
+            writeCheckpoint(state, lastFullSegment);
+
+            //Replay uses the new checkpoint from here on
+            for(long number : fileNumbers(SEGMENT_PREFIX)){
+                if(number <= lastFullSegment){
+                    Files.deleteIfExists(fileOf(SEGMENT_PREFIX, number));
+                }
+            }
+            for(long number : checkpointNumbers){
+                Files.deleteIfExists(fileOf(CHECKPOINT_PREFIX, number));
+            }
+        }
+    }
+
+    /**
+     * Write the state as a checkpoint covering the segments up to the given number , written to a temporary file
+     * first so a crash never leaves a partial checkpoint , and renamed durably
+     *
+     * @param state
+     * @param number
+     * @throws IOException
+     */
+    private void writeCheckpoint(JournalState state, long number) throws IOException {
+
+        final List<ByteBuffer> records = new ArrayList<ByteBuffer>();
+
+        state.writeTo(new JournalState.RecordSink() {
+            public void record(byte kind, int gasType, int counter, int pumpIndex, long first, long second) {
+                ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                writeRecord(record, 0, kind, gasType, counter, pumpIndex, first, second);
+                records.add(record);
+            }
+        });
+
+        Path temporary = directory.resolve(CHECKPOINT_PREFIX + "tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            for(ByteBuffer record : records){
+                while(record.hasRemaining()){
+                    channel.write(record);
+                }
+            }
+            channel.force(true);
+        }
+
+        Files.move(temporary, fileOf(CHECKPOINT_PREFIX, number), StandardCopyOption.ATOMIC_MOVE);
+
+        //The rename has to be on disk before the segments it replaces are deleted
+        forceDirectory();
+    }
+
+    private long currentSegmentNumber() {
+
+        appendLock.lock();
+        try {
+            return segmentNumber;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Stop the committer after a last commit
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+
+        if(closed){
+            return;
+        }
+
+        closed = true;
+
+        LockSupport.unpark(committer);
+        try {
+            committer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        commit();
+
+        appendLock.lock();
+        try {
+            if(segmentChannel != null){
+                segmentChannel.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+
+        synchronized(commitMonitor){
+            commitMonitor.notifyAll();
+        }
+    }
+
+    /**
+     * Segment appending moved on from , closed once forced to disk
+     */
+    private static final class FullSegment {
+
+        final FileChannel channel;
+
+        final MappedByteBuffer records;
+
+        FullSegment(FileChannel channel, MappedByteBuffer records) {
+            this.channel = channel;
+            this.records = records;
+        }
+
+        /**
+         * Force the whole segment , pages already on disk cost nothing
+         *
+         * @throws IOException
+         */
+        void force() throws IOException {
+            records.force();
+            channel.close();
+        }
+
+    }
+
+    private static void writeRecord(ByteBuffer buffer, int offset, byte kind, int gasType, int counter, int pumpIndex, long first, long second) {
+
+        long header = (kind & 0xFFL) | (gasType & 0xFFL) << 8 | (counter & 0xFFFFL) << 16 | (pumpIndex & 0xFFFFFFFFL) << 32;
+
+        buffer.putLong(offset, header);
+        buffer.putLong(offset + 8, first);
+        buffer.putLong(offset + 16, second);
+        buffer.putInt(offset + 24, checksum(header, first, second));
+    }
+
+    /**
+     * Checksum of a record , detects records torn by a crash
+     */
+    private static int checksum(long header, long first, long second) {
+
+        long hash = header * 0x9E3779B97F4A7C15L;
+        hash = (hash ^ first) * 0xC2B2AE3D27D4EB4FL;
+        hash = (hash ^ second) * 0x165667B19E3779F9L;
+
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    private Path fileOf(String prefix, long number) {
+        return directory.resolve(String.format("%s%016d%s", prefix, number, FILE_SUFFIX));
+    }
+
+    /**
+     * Numbers of the files with a prefix , lowest first
+     */
+    private List<Long> fileNumbers(String prefix) throws IOException {
+
+        List<Long> numbers = new ArrayList<Long>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + FILE_SUFFIX)) {
+            for(Path file : files){
+                String name = file.getFileName().toString();
+                numbers.add(Long.parseLong(name.substring(prefix.length(), name.length() - FILE_SUFFIX.length())));
+            }
+        }
+
+        Collections.sort(numbers);
+
+        return numbers;
+    }
+
+}
@@ -0,0 +1,317 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Asynchronous log of the transactions of a gas station.
+ * 
+ * Purchases only copy a few primitives into a preallocated ring buffer , a background writer drains it and
+ * formats the transactions to a java.util.logging Logger. Nothing is recorded while the level is not loggable.
+ * When the writer falls behind and the ring buffer is full , transactions are dropped and counted instead of
+ * blocking purchases
+ */
+public class TransactionLog {
+    
+    /**
+     * Kind of transaction
+     */
+    public enum Kind {
+        
+        /**
+         * Gas sold , amount is the price paid
+         */
+        SALE,
+        
+        /**
+         * Cancelled because no gas pump had enough gas
+         */
+        CANCELLED_NO_GAS,
+        
+        /**
+         * Cancelled because gas was too expensive , amount is the maximum price per litre of the customer
+         */
+        CANCELLED_TOO_EXPENSIVE,
+        
+        /**
+         * Turned away because too many customers were waiting for a gas pump
+         */
+        CANCELLED_QUEUE_FULL,
+        
+        /**
+         * Cancelled because the customer waited too long for a gas pump
+         */
+        CANCELLED_QUEUE_TIMED_OUT,
+        
+        /**
+         * Cancelled because the deadline of the customer passed or the customer was interrupted while waiting
+         */
+        CANCELLED_TIMED_OUT;
+        
+    }
+    
+    /**
+     * Transaction log recording nothing , the default of the gas station
+     */
+    public final static TransactionLog DISABLED = new TransactionLog();
+    
+    /**
+     * Default number of transactions the ring buffer holds
+     */
+    public final static int DEFAULT_CAPACITY = 8192;
+    
+    /**
+     * Time the writer sleeps when the ring buffer is empty
+     */
+    private final static long IDLE_PARK_NANOS = 100000;
+    
+    private final Logger logger;
+    
+    private final Level level;
+    
+    /**
+     * Slot mask , capacity is a power of two
+     */
+    private final int mask;
+    
+    /**
+     * Sequence published in each slot , a slot is readable when it holds the sequence the writer expects
+     */
+    private final AtomicLongArray publishedSequences;
+    
+    //Transaction fields per slot
+    private final long[] timestamps;
+    private final int[] kinds;
+    private final int[] gasTypes;
+    private final long[] milliLitres;
+    private final long[] amountsInMinorUnits;
+    
+    /**
+     * Next sequence to claim by a purchase
+     */
+    private final AtomicLong claimSequence;
+    
+    /**
+     * Next sequence to be written by the writer
+     */
+    private final AtomicLong writeSequence;
+    
+    /**
+     * Transactions dropped because the ring buffer was full
+     */
+    private final AtomicLong dropped;
+    
+    private final Thread writer;
+    
+    private volatile boolean running;
+    
+    private TransactionLog() {
+        this.logger = null;
+        this.level = Level.OFF;
+        this.mask = 0;
+        this.publishedSequences = null;
+        this.timestamps = null;
+        this.kinds = null;
+        this.gasTypes = null;
+        this.milliLitres = null;
+        this.amountsInMinorUnits = null;
+        this.claimSequence = null;
+        this.writeSequence = null;
+        this.dropped = new AtomicLong();
+        this.writer = null;
+    }
+    
+    /**
+     * Transaction log writing to the logger at INFO level
+     * 
+     * @param logger 
+     */
+    public TransactionLog(Logger logger) {
+        this(logger, Level.INFO, DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * Transaction log writing to the logger at the given level
+     * 
+     * @param logger
+     * @param level
+     * @param capacity number of transactions the ring buffer holds , rounded up to a power of two
+     * @throws InvalidParameterException when the logger or level is null or the capacity is not in 1 to 2^30
+     */
+    public TransactionLog(Logger logger, Level level, int capacity) {
+        
+        if(logger == null || level == null || capacity <= 0 || capacity > (1 << 30)){
+            throw new InvalidParameterException();
+        }
+        
+        int slots = Integer.highestOneBit(capacity - 1) << 1;
+        if(capacity == 1){
+            slots = 1;
+        }
+        
+        this.logger = logger;
+        this.level = level;
+        this.mask = slots - 1;
+        this.publishedSequences = new AtomicLongArray(slots);
+        this.timestamps = new long[slots];
+        this.kinds = new int[slots];
+        this.gasTypes = new int[slots];
+        this.milliLitres = new long[slots];
+        this.amountsInMinorUnits = new long[slots];
+        this.claimSequence = new AtomicLong();
+        this.writeSequence = new AtomicLong();
+        this.dropped = new AtomicLong();
+        
+        //No slot is readable before its first sequence is published
+        for(int slot = 0; slot < slots; slot++){
+            publishedSequences.set(slot, -1);
+        }
+        
+        this.running = true;
+        this.writer = new Thread(new Runnable() {
+            public void run() {
+                write();
+            }
+        }, "gas-station-transaction-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    /**
+     * Check if transactions are recorded
+     * 
+     * @return (boolean) enabled
+     */
+    public boolean isEnabled() {
+        return writer != null && running && logger.isLoggable(level);
+    }
+    
+    /**
+     * Record a transaction , never blocks and allocates nothing
+     * 
+     * @param kind
+     * @param type
+     * @param milliLitres
+     * @param amountInMinorUnits 
+     */
+    public void record(Kind kind, GasType type, long milliLitres, long amountInMinorUnits) {
+        
+        if(!isEnabled()){
+            return;
+        }
+        
+        long sequence;
+        
+        do {
+            sequence = claimSequence.get();
+            
+            if(sequence - writeSequence.get() > mask){
+                dropped.incrementAndGet();
+                return;
+            }
+            
+        } while(!claimSequence.compareAndSet(sequence, sequence + 1));
+        
+        int slot = (int) sequence & mask;
+        
+        this.timestamps[slot] = System.currentTimeMillis();
+        this.kinds[slot] = kind.ordinal();
+        this.gasTypes[slot] = type.ordinal();
+        this.milliLitres[slot] = milliLitres;
+        this.amountsInMinorUnits[slot] = amountInMinorUnits;
+        
+        //Publishes the fields written above to the writer
+        publishedSequences.set(slot, sequence);
+    }
+    
+    /**
+     * Get the number of transactions dropped because the writer fell behind
+     * 
+     * @return (long) dropped
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+    
+    /**
+     * Stop the writer once the transactions recorded so far are written
+     * 
+     * @throws InterruptedException 
+     */
+    public void close() throws InterruptedException {
+        
+        if(writer == null){
+            return;
+        }
+        
+        running = false;
+        writer.join();
+    }
+    
+    /**
+     * Writer loop , drains the ring buffer in sequence order
+     */
+    private void write() {
+        
+        Kind[] kindValues = Kind.values();
+        GasType[] gasTypeValues = GasType.values();
+        
+        long sequence = writeSequence.get();
+        
+        while(true){
+            
+            int slot = (int) sequence & mask;
+            
+            if(publishedSequences.get(slot) != sequence){
+                
+                //Drained , stops when closed and nothing is claimed but unpublished
+                if(!running && claimSequence.get() == sequence){
+                    return;
+                }
+                
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            
+            long timestamp = timestamps[slot];
+            Kind kind = kindValues[kinds[slot]];
+            GasType gasType = gasTypeValues[gasTypes[slot]];
+            long litres = milliLitres[slot];
+            long amount = amountsInMinorUnits[slot];
+            
+            //Frees the slot before formatting
+            writeSequence.set(++sequence);
+            
+            logger.log(level, format(timestamp, kind, gasType, litres, amount));
+        }
+    }
+    
+    /**
+     * Format a transaction
+     * 
+     * @return (String) message
+     */
+    private static String format(long timestamp, Kind kind, GasType gasType, long milliLitres, long amountInMinorUnits) {
+        
+        double litres = (double) milliLitres / ManagedPump.MILLI_LITRES_PER_LITRE;
+        double amount = FixedPoint.toCurrencyUnits(amountInMinorUnits);
+        
+        switch(kind){
+            case SALE:
+                return String.format("%tFT%<tT.%<tL %s %s %.3f litres , price to pay %.3f", timestamp, kind, gasType, litres, amount);
+            case CANCELLED_TOO_EXPENSIVE:
+                return String.format("%tFT%<tT.%<tL %s %s %.3f litres , maximum price per litre %.3f", timestamp, kind, gasType, litres, amount);
+            default:
+                return String.format("%tFT%<tT.%<tL %s %s %.3f litres", timestamp, kind, gasType, litres);
+        }
+    }
+    
+}
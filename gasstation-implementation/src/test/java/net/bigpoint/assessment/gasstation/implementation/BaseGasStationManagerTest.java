@@ -106,6 +106,7 @@ public class BaseGasStationManagerTest  extends TestCase{
     
     @Override
     public void tearDown(){
+        stationManager.shutdown();
         stationManager = null;
         
         executorService.shutdown();
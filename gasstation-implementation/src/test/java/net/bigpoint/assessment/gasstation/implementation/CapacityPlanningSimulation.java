@@ -0,0 +1,50 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.TimeUnit;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Simulates a busy day of a gas station with one to six regular gas pumps , to pick the number of gas pumps
+ * that keeps queue waits acceptable. Customers go to an idle gas pump when there is one , try lock selection. Customers arrive every 30 seconds on average and want 20 to 80 litres
+ *
+ * Run with : java -cp target/classes:target/test-classes net.bigpoint.assessment.gasstation.implementation.CapacityPlanningSimulation
+ */
+public class CapacityPlanningSimulation {
+
+    private final static long SEED = 2024;
+
+    public static void main(String[] args) {
+
+        for(int gasPumps = 1; gasPumps <= 6; gasPumps++){
+
+            GasStationManager stationManager = GasStationManager.builder()
+                    .selectionMode(PumpSelectionMode.TRY_LOCK)
+                    .dispenseMode(DispenseMode.INSTANT)
+                    .build();
+
+            stationManager.setPrice(GasType.REGULAR, 1.5);
+            for(int i = 0; i < gasPumps; i++){
+                stationManager.addGasPump(new GasPump(GasType.REGULAR, 1000000));
+            }
+
+            long start = System.nanoTime();
+
+            SimulationReport report = GasStationSimulation.builder(stationManager)
+                    .seed(SEED)
+                    .customers(GasType.REGULAR, Distribution.exponential(30), Distribution.uniform(20, 80), Distribution.uniform(1.45, 2.0))
+                    .build()
+                    .run(1, TimeUnit.DAYS);
+
+            long elapsed = System.nanoTime() - start;
+
+            System.out.printf("%d gas pumps , simulated in %.1f ms%n%s%n", gasPumps, elapsed / 1e6, report);
+
+            stationManager.shutdown();
+        }
+    }
+
+}
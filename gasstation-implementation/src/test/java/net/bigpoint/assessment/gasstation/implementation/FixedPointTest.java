@@ -0,0 +1,199 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for fixed point volumes and money on the purchase path. The randomized tests run
+ * gasstation.randomizedPurchases purchases , 200000 by default , raise it for a long run
+ */
+public class FixedPointTest extends TestCase {
+
+    private final static int PURCHASES = Integer.getInteger("gasstation.randomizedPurchases", 200000);
+
+    /**
+     * Test that prices of amounts are rounded half up to the minor unit without overflowing
+     */
+    @Test
+    public void testPriceOf(){
+
+        assertEquals(FixedPoint.priceOf(1500, 1599), 2399);
+        assertEquals(FixedPoint.priceOf(1, 1), 0);
+        assertEquals(FixedPoint.priceOf(500, 1), 1);
+        assertEquals(FixedPoint.priceOf(499, 1), 0);
+        assertEquals(FixedPoint.priceOf(0, 1599), 0);
+        assertEquals(FixedPoint.priceOf(1000, -1500), -1500);
+        assertEquals(FixedPoint.priceOf(500, -1), 0);
+
+        //A billion litres at a million per litre
+        assertEquals(FixedPoint.priceOf(1000000000000L, 1000000000L), 1000000000000000000L);
+
+        assertEquals(FixedPoint.toMinorUnits(1.2345), 1235);
+        assertEquals(FixedPoint.toCurrencyUnits(3200), 3.2);
+    }
+
+    /**
+     * Test that prices are kept in minor units and amounts below half a milli litre are no purchase
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testPricesAndAmountsInFixedPoint() throws Exception {
+
+        GasStationManager stationManager = new GasStationManager();
+        stationManager.setPrice(GasType.REGULAR, 1.23456);
+        stationManager.addGasPump(new GasPump(GasType.REGULAR, 10));
+
+        assertEquals(stationManager.getPrice(GasType.REGULAR), 1.235);
+
+        //Charged what was shown
+        assertEquals(stationManager.buyGas(GasType.REGULAR, 0.3, 1.235), 0.371);
+        assertEquals(stationManager.getRevenue(), 0.371);
+
+        //Rounded up to one milli litre instead of nothing to pump
+        assertEquals(stationManager.buyGas(GasType.REGULAR, 0.0004, 2.0), 0.001);
+
+        try {
+            stationManager.setPrice(GasType.REGULAR, Double.POSITIVE_INFINITY);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // no price in minor units
+        }
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that every price paid is the exact price of its milli litres , prices changing in between
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRandomizedPricesPaid() throws Exception {
+
+        GasStationManager stationManager = GasStationManager.builder().dispenseMode(DispenseMode.INSTANT).build();
+        stationManager.addGasPump(new GasPump(GasType.DIESEL, 1e9));
+
+        SplittableRandom random = new SplittableRandom(23);
+        BigDecimal revenue = BigDecimal.ZERO;
+
+        for(int i = 0; i < PURCHASES; i++){
+
+            if(i % 100 == 0){
+                stationManager.setPrice(GasType.DIESEL, random.nextInt(500, 3000) / 1000.0);
+            }
+
+            //Amounts with any number of decimals , the milli litres sold are what is charged
+            double amount = random.nextDouble(0.0005, 80);
+            long milliLitres = Math.round(amount * 1000);
+            BigDecimal price = BigDecimal.valueOf(stationManager.getPrice(GasType.DIESEL));
+
+            BigDecimal expected = price.multiply(BigDecimal.valueOf(milliLitres, 3)).setScale(3, RoundingMode.HALF_UP);
+            double paid = stationManager.buyGas(GasType.DIESEL, amount, 3.0);
+
+            assertEquals(BigDecimal.valueOf(paid).setScale(3, RoundingMode.UNNECESSARY), expected);
+            revenue = revenue.add(expected);
+        }
+
+        assertEquals(BigDecimal.valueOf(stationManager.getRevenue()).setScale(3, RoundingMode.UNNECESSARY), revenue);
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that totals stay exact with customers on several threads buying random amounts until the gas runs out
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRandomizedConcurrentTotals() throws Exception {
+
+        final GasStationManager stationManager = GasStationManager.builder()
+                .selectionMode(PumpSelectionMode.TRY_LOCK)
+                .dispenseMode(DispenseMode.INSTANT)
+                .build();
+
+        stationManager.setPrice(GasType.REGULAR, 1.599);
+        stationManager.setPrice(GasType.SUPER, 1.789);
+
+        //Runs out about three quarters through the purchases
+        final long addedMilliLitres = PURCHASES * 150L;
+        for(int i = 0; i < 6; i++){
+            stationManager.addGasPump(new GasPump(i % 2 == 0 ? GasType.REGULAR : GasType.SUPER, addedMilliLitres / 1000.0));
+        }
+
+        final AtomicLong paidMinorUnits = new AtomicLong();
+        final AtomicLong soldMilliLitres = new AtomicLong();
+        final AtomicLong cancellations = new AtomicLong();
+        final int customers = 4;
+
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for(int customer = 0; customer < customers; customer++){
+
+            final SplittableRandom random = new SplittableRandom(customer);
+
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    for(int i = 0; i < PURCHASES / customers; i++){
+
+                        GasType type = random.nextBoolean() ? GasType.REGULAR : GasType.SUPER;
+                        long milliLitres = random.nextLong(1, 4000);
+
+                        PurchaseResult result = stationManager.tryBuyGas(type, milliLitres / 1000.0, random.nextDouble(1.5, 2.0));
+
+                        if(result.isSold()){
+                            paidMinorUnits.addAndGet(FixedPoint.toMinorUnits(result.getPriceToPay()));
+                            soldMilliLitres.addAndGet(milliLitres);
+                        } else {
+                            cancellations.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        for(Thread thread : threads){
+            thread.join();
+        }
+
+        assertEquals(FixedPoint.toMinorUnits(stationManager.getRevenue()), paidMinorUnits.get());
+        assertEquals(stationManager.getNumberOfSales() + stationManager.getNumberOfCancellationsNoGas()
+                + stationManager.getNumberOfCancellationsTooExpensive(), PURCHASES / customers * customers);
+        assertEquals(stationManager.getNumberOfCancellationsNoGas() + stationManager.getNumberOfCancellationsTooExpensive(), cancellations.get());
+
+        //Every milli litre sold left the ledger of a gas pump , dispensing instantly leaves GasPump itself alone
+        long remainingMilliLitres = 0;
+        PumpInventory inventory = stationManager.getInventory();
+
+        for(int i = 0; i < inventory.size(); i++){
+
+            ManagedPump managedPump = stationManager.findManagedPump(inventory.getGasPump(i));
+            remainingMilliLitres += managedPump.getRemainingMilliLitres();
+
+            assertEquals(managedPump.getRemainingMilliLitres(), managedPump.getAvailableMilliLitres());
+            assertEquals(inventory.getGasPump(i).getRemainingAmount(), addedMilliLitres / 1000.0);
+        }
+
+        assertEquals(remainingMilliLitres, 6 * addedMilliLitres - soldMilliLitres.get());
+        assertTrue(stationManager.getNumberOfSales() > PURCHASES / 3);
+        assertTrue(stationManager.getNumberOfCancellationsNoGas() > 0);
+
+        stationManager.shutdown();
+    }
+
+}
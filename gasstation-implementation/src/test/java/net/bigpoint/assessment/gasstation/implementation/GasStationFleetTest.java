@@ -0,0 +1,157 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.Arrays;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for the fleet of gas stations
+ */
+public class GasStationFleetTest extends TestCase {
+
+    private GasStationFleet fleet;
+
+    @Override
+    public void setUp(){
+
+        fleet = new GasStationFleet(4);
+
+        //North only sells regular , south only diesel , east sells both but expensive
+        fleet.addStation("north", createStation(GasType.REGULAR, 1.0), Arrays.asList("east", "south"));
+        fleet.addStation("south", createStation(GasType.DIESEL, 1.0), Arrays.asList("north"));
+        fleet.addStation("east", createStation(GasType.REGULAR, 2.0));
+    }
+
+    private GasStationManager createStation(GasType gasType, double price){
+
+        GasStationManager stationManager = new GasStationManager();
+
+        for(GasType priced : GasType.values()){
+            stationManager.setPrice(priced, price);
+        }
+        stationManager.addGasPump(new GasPump(gasType, 10));
+
+        return stationManager;
+    }
+
+    /**
+     * Test that customers are sent to the first nearby station with enough gas they can afford
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFallbackToNearbyStation() throws Exception{
+
+        assertEquals(fleet.getNumberOfStations(), 3);
+
+        assertEquals(fleet.buyGas("north", GasType.REGULAR, 1.0, 1.0), 1.0);
+
+        //East is too expensive , south sells diesel
+        assertEquals(fleet.buyGas("north", GasType.DIESEL, 1.0, 1.0), 1.0);
+        assertEquals(fleet.getStation("south").getNumberOfSales(), 1);
+
+        try {
+            fleet.buyGas("south", GasType.SUPER, 1.0, 1.0);
+            fail("Expected NotEnoughGasException");
+        } catch (NotEnoughGasException ex) {
+            // no station of the fleet sells super
+        }
+
+        try {
+            fleet.buyGas("east", GasType.REGULAR, 1.0, 1.0);
+            fail("Expected GasTooExpensiveException");
+        } catch (GasTooExpensiveException ex) {
+            // not sent to nearby stations
+        }
+
+        assertEquals(fleet.getNumberOfFallbacks(), 1);
+        assertEquals(fleet.getNumberOfSales(), 2);
+        assertEquals(fleet.getRevenue(), 2.0);
+        //Every station tried counts the cancellation
+        assertEquals(fleet.getNumberOfCancellationsNoGas(), 3);
+        assertEquals(fleet.getNumberOfCancellationsTooExpensive(), 2);
+    }
+
+    /**
+     * Test that stations without a price for the gas type send the customer on instead of rejecting the purchase
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFallbackFromStationWithoutPrice() throws Exception{
+
+        //West has no price and no gas pump for diesel , only for regular
+        GasStationManager west = new GasStationManager();
+        west.setPrice(GasType.REGULAR, 1.0);
+        west.addGasPump(new GasPump(GasType.REGULAR, 10));
+
+        fleet.addStation("west", west, Arrays.asList("north", "south"));
+        fleet.addStation("centre", createStation(GasType.SUPER, 1.0), Arrays.asList("west", "south"));
+
+        //North has no diesel left to sell , south serves the customer
+        assertEquals(fleet.buyGas("west", GasType.DIESEL, 1.0, 1.0), 1.0);
+        assertEquals(fleet.getStation("south").getNumberOfSales(), 1);
+
+        //West is skipped as a nearby station too
+        assertEquals(fleet.buyGas("centre", GasType.DIESEL, 1.0, 1.0), 1.0);
+        assertEquals(fleet.getStation("south").getNumberOfSales(), 2);
+        assertEquals(fleet.getNumberOfFallbacks(), 2);
+
+        try {
+            fleet.buyGas("west", GasType.SUPER, 1.0, 1.0);
+            fail("Expected NotEnoughGasException");
+        } catch (NotEnoughGasException ex) {
+            // neither west nor its nearby stations sell super
+        }
+
+        double[][] invalidPurchases = {{0, 1.0}, {-1.0, 1.0}, {Double.NaN, 1.0}, {1.0, Double.NaN}};
+
+        for(double[] invalidPurchase : invalidPurchases){
+            try {
+                fleet.buyGas("west", GasType.DIESEL, invalidPurchase[0], invalidPurchase[1]);
+                fail("Expected InvalidParameterException");
+            } catch (InvalidParameterException ex) {
+                // not sent to nearby stations
+            }
+        }
+
+        assertEquals(fleet.getNumberOfSales(), 2);
+        assertEquals(fleet.getNumberOfFallbacks(), 2);
+    }
+
+    /**
+     * Test for unknown and duplicate station ids
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStationIds() throws Exception{
+
+        assertNull(fleet.getStation("west"));
+
+        try {
+            fleet.buyGas("west", GasType.REGULAR, 1.0, 1.0);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // unknown station
+        }
+
+        try {
+            fleet.addStation("north", createStation(GasType.SUPER, 1.0));
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // already added
+        }
+
+        assertEquals(new GasStationFleet(5).getPartitionCount(), 8);
+    }
+
+}
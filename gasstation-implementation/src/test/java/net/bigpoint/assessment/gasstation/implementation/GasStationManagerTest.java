@@ -1,11 +1,19 @@
 package net.bigpoint.assessment.gasstation.implementation;
 
 import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import net.bigpoint.assessment.gasstation.GasPump;
 import net.bigpoint.assessment.gasstation.GasType;
 import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
 import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import net.bigpoint.assessment.gasstation.exceptions.StationBusyException;
 import org.junit.Test;
 
 /**
@@ -207,5 +215,908 @@ public class GasStationManagerTest extends BaseGasStationManagerTest{
     }
 
 
+    /**
+     * Test that a gas type without any gas pump is cancelled even if other gas pumps have enough gas
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testNoGasPumpForGasType() throws Exception{
+        
+        GasStationManager regularOnlyStation = new GasStationManager();
+        regularOnlyStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        regularOnlyStation.setPrice(GasType.DIESEL, DIESEL_FUEL_PRICE);
+        regularOnlyStation.addGasPump(new GasPump(GasType.REGULAR, REGULAR_FUEL_LITRES));
+        
+        try {
+            regularOnlyStation.buyGas(GasType.DIESEL, 1.0, DIESEL_FUEL_PRICE);
+            fail("Expected NotEnoughGasException");
+        } catch (NotEnoughGasException ex) {
+            assertEquals(regularOnlyStation.getNumberOfCancellationsNoGas(), 1);
+        }
+        
+        assertEquals(regularOnlyStation.getGasPumps().size(), 1);
+    }
+    
+    
+    /**
+     * Test that in try lock mode a second customer is served by the idle gas pump instead of waiting for the busy one
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testTryLockSelectionUsesIdleGasPump() throws Exception{
+        
+        final GasStationManager tryLockStation = new GasStationManager(PumpSelectionMode.TRY_LOCK);
+        tryLockStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        tryLockStation.addGasPump(new GasPump(GasType.REGULAR, REGULAR_FUEL_LITRES));
+        tryLockStation.addGasPump(new GasPump(GasType.REGULAR, REGULAR_FUEL_LITRES));
+        
+        final double amountInLitres = 5.0;
+        
+        Runnable customer = new Runnable() {
+            public void run() {
+                try {
+                    tryLockStation.buyGas(GasType.REGULAR, amountInLitres, REGULAR_FUEL_PRICE);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        };
+        
+        executorService.execute(customer);
+        executorService.execute(customer);
+        
+        executorService.shutdown();
+        
+        executorService.awaitTermination(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS);
+        
+        assertEquals(tryLockStation.getNumberOfSales(), 2);
+        
+        //Each customer was served by a different gas pump
+        for(GasPump gasPump : tryLockStation.getGasPumps()){
+            assertEquals(gasPump.getRemainingAmount(), REGULAR_FUEL_LITRES - amountInLitres);
+        }
+    }
+    
+    
+    /**
+     * Test that not enough gas is answered from the reservations while the only gas pump is still busy pumping
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testNotEnoughGasWhileGasPumpBusy() throws Exception{
+        
+        final GasStationManager singlePumpStation = new GasStationManager();
+        singlePumpStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        singlePumpStation.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+        
+        //Keeps the gas pump busy for 800 milliseconds
+        executorService.execute(new Runnable() {
+            public void run() {
+                try {
+                    singlePumpStation.buyGas(GasType.REGULAR, 8.0, REGULAR_FUEL_PRICE);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        });
+        
+        //Waits for the first customer to reserve the gas
+        while(singlePumpStation.getManagedPumps(GasType.REGULAR).get(0).getAvailableMilliLitres() > 2000){
+            Thread.sleep(1);
+        }
+        
+        long start = System.nanoTime();
+        
+        try {
+            singlePumpStation.buyGas(GasType.REGULAR, 5.0, REGULAR_FUEL_PRICE);
+            fail("Expected NotEnoughGasException");
+        } catch (NotEnoughGasException ex) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        }
+        
+        executorService.shutdown();
+        
+        executorService.awaitTermination(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS);
+        
+        assertEquals(singlePumpStation.getNumberOfSales(), 1);
+        assertEquals(singlePumpStation.getNumberOfCancellationsNoGas(), 1);
+    }
+    
+    
+    /**
+     * Test that best fit serves from the gas pump with the least gas that is still enough
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testBestFitAllocation() throws Exception{
+        
+        GasStationManager bestFitStation = new GasStationManager(StandardPumpAllocationStrategy.BEST_FIT);
+        bestFitStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        bestFitStation.addGasPump(new GasPump(GasType.REGULAR, 1.0));
+        bestFitStation.addGasPump(new GasPump(GasType.REGULAR, 0.3));
+        bestFitStation.addGasPump(new GasPump(GasType.REGULAR, 0.5));
+        
+        bestFitStation.buyGas(GasType.REGULAR, 0.2, REGULAR_FUEL_PRICE);
+        
+        List<ManagedPump> managedPumps = bestFitStation.getManagedPumps(GasType.REGULAR);
+        
+        assertEquals(managedPumps.get(0).getAvailableMilliLitres(), 1000);
+        assertEquals(managedPumps.get(1).getAvailableMilliLitres(), 100);
+        assertEquals(managedPumps.get(2).getAvailableMilliLitres(), 500);
+        
+        //First fit would have left no gas pump for this purchase
+        bestFitStation.buyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE);
+        
+        assertEquals(bestFitStation.getNumberOfSales(), 2);
+    }
+    
+    
+    /**
+     * Test for buying gas asynchronously , failures complete the future with the existing exceptions
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testBuyGasAsync() throws Exception{
+        
+        double amountInLitres = 1.0;
+        
+        List<CompletableFuture<Double>> purchases = new ArrayList<CompletableFuture<Double>>();
+        
+        for(int i = 0; i < 4; i++){
+            purchases.add(stationManager.buyGasAsync(GasType.SUPER, amountInLitres, SUPER_FUEL_PRICE));
+        }
+        
+        for(CompletableFuture<Double> purchase : purchases){
+            assertEquals(purchase.get(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS), amountInLitres * SUPER_FUEL_PRICE);
+        }
+        
+        assertEquals(stationManager.getNumberOfSales(), 4);
+        
+        try {
+            stationManager.buyGasAsync(GasType.SUPER, amountInLitres, SUPER_FUEL_PRICE / 2).get();
+            fail("Expected GasTooExpensiveException");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof GasTooExpensiveException);
+        }
+        
+        try {
+            stationManager.buyGasAsync(GasType.SUPER, SUPER_FUEL_LITRES + 1, SUPER_FUEL_PRICE).get(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS);
+            fail("Expected NotEnoughGasException");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof NotEnoughGasException);
+        }
+        
+        assertEquals(stationManager.getNumberOfCancellationsTooExpensive(), 1);
+        assertEquals(stationManager.getNumberOfCancellationsNoGas(), 1);
+    }
+    
+    
+    /**
+     * Test for buying gas asynchronously with a virtual thread per purchase
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testBuyGasAsyncOnVirtualThreads() throws Exception{
+        
+        GasStationManager virtualStation = GasStationManager.builder()
+                .executionMode(ExecutionMode.VIRTUAL_THREADS)
+                .build();
+        virtualStation.setPrice(GasType.DIESEL, DIESEL_FUEL_PRICE);
+        virtualStation.addGasPump(new GasPump(GasType.DIESEL, DIESEL_FUEL_LITRES));
+        
+        double amountInLitres = 0.5;
+        
+        List<CompletableFuture<Double>> purchases = new ArrayList<CompletableFuture<Double>>();
+        
+        for(int i = 0; i < 100; i++){
+            purchases.add(virtualStation.buyGasAsync(GasType.DIESEL, amountInLitres, DIESEL_FUEL_PRICE));
+        }
+        
+        for(CompletableFuture<Double> purchase : purchases){
+            assertEquals(purchase.get(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS), amountInLitres * DIESEL_FUEL_PRICE);
+        }
+        
+        assertEquals(virtualStation.getNumberOfSales(), 100);
+        
+        try {
+            virtualStation.buyGasAsync(GasType.DIESEL, amountInLitres, DIESEL_FUEL_PRICE / 2).get();
+            fail("Expected GasTooExpensiveException");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof GasTooExpensiveException);
+        }
+        
+        assertEquals(virtualStation.getNumberOfCancellationsTooExpensive(), 1);
+        
+        virtualStation.shutdown();
+    }
+    
+    
+    /**
+     * Test that revenue of non whole amounts is kept exact to the minor currency unit
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testExactRevenueOfNonWholeAmounts() throws Exception{
+        
+        assertEquals(stationManager.buyGas(GasType.REGULAR, 1.33, REGULAR_FUEL_PRICE), 0.665);
+        assertEquals(stationManager.buyGas(GasType.REGULAR, 1.33, REGULAR_FUEL_PRICE), 0.665);
+        
+        assertEquals(stationManager.getRevenue(), 1.33);
+    }
+    
+    /**
+     * Test that a positive amount below half a milli litre buys one milli litre instead of being rejected
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testAmountBelowHalfMilliLitre() throws Exception{
+        
+        double availableLitres = stationManager.getAvailableLitres(GasType.REGULAR);
+        
+        assertTrue(stationManager.tryBuyGas(GasType.REGULAR, 0.0004, REGULAR_FUEL_PRICE).isSold());
+        assertEquals(stationManager.getNumberOfSales(), 1);
+        assertEquals(stationManager.getAvailableLitres(GasType.REGULAR), availableLitres - 0.001, 1e-9);
+    }
+    
+    
+    /**
+     * Test for sales and cancellations per gas type and per gas pump
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testStationStatistics() throws Exception{
+        
+        stationManager.buyGas(GasType.SUPER, 2.0, SUPER_FUEL_PRICE);
+        stationManager.buyGas(GasType.SUPER, 1.5, SUPER_FUEL_PRICE);
+        
+        try {
+            stationManager.buyGas(GasType.SUPER, 1.0, SUPER_FUEL_PRICE / 2);
+            fail("Expected GasTooExpensiveException");
+        } catch (GasTooExpensiveException ex) {
+            // counted below
+        }
+        
+        try {
+            stationManager.buyGas(GasType.DIESEL, DIESEL_FUEL_LITRES + 1, DIESEL_FUEL_PRICE);
+            fail("Expected NotEnoughGasException");
+        } catch (NotEnoughGasException ex) {
+            // counted below
+        }
+        
+        StationStatistics statistics = stationManager.getStatistics();
+        
+        StationStatistics.GasTypeStatistics superStatistics = statistics.getGasTypeStatistics(GasType.SUPER);
+        assertEquals(superStatistics.getSales(), 2);
+        assertEquals(superStatistics.getLitresDispensed(), 3.5);
+        assertEquals(superStatistics.getRevenue(), 3.5 * SUPER_FUEL_PRICE, 0.001);
+        assertEquals(superStatistics.getCancellationsTooExpensive(), 1);
+        
+        assertEquals(statistics.getGasTypeStatistics(GasType.DIESEL).getCancellationsNoGas(), 1);
+        assertEquals(statistics.getGasTypeStatistics(GasType.REGULAR).getSales(), 0);
+        
+        //Both sales served by the first super gas pump
+        assertEquals(statistics.getPumpStatistics().size(), 6);
+        
+        StationStatistics.PumpStatistics firstSuperPump = statistics.getPumpStatistics().get(2);
+        assertEquals(firstSuperPump.getGasType(), GasType.SUPER);
+        assertEquals(firstSuperPump.getSales(), 2);
+        assertEquals(firstSuperPump.getAvailableAmount(), SUPER_FUEL_LITRES - 3.5);
+    }
+    
+    @Test
+    public void testTryBuyGasResults() throws Exception {
+        
+        PurchaseResult sold = stationManager.tryBuyGas(GasType.REGULAR, 2.0, REGULAR_FUEL_PRICE);
+        assertTrue(sold.isSold());
+        assertEquals(sold.getOutcome(), PurchaseResult.Outcome.SOLD);
+        assertEquals(sold.getPriceToPay(), 2.0 * REGULAR_FUEL_PRICE, 0.001);
+        
+        assertSame(stationManager.tryBuyGas(GasType.REGULAR, 2.0, REGULAR_FUEL_PRICE / 2), PurchaseResult.GAS_TOO_EXPENSIVE);
+        assertSame(stationManager.tryBuyGas(GasType.REGULAR, REGULAR_FUEL_LITRES + 1, REGULAR_FUEL_PRICE), PurchaseResult.NOT_ENOUGH_GAS);
+        
+        assertEquals(stationManager.getNumberOfSales(), 1);
+        assertEquals(stationManager.getNumberOfCancellationsTooExpensive(), 1);
+        assertEquals(stationManager.getNumberOfCancellationsNoGas(), 1);
+        
+        //buyGas still throws the assessment exceptions
+        try {
+            stationManager.buyGas(GasType.REGULAR, REGULAR_FUEL_LITRES + 1, REGULAR_FUEL_PRICE);
+            fail("Expected NotEnoughGasException");
+        } catch (NotEnoughGasException ex) {
+            assertEquals(ex.getStackTrace().length, 0);
+            
+            //The shared exception is not changed by the callers it is thrown to
+            ex.addSuppressed(new IllegalStateException());
+            assertEquals(ex.getSuppressed().length, 0);
+            
+            try {
+                ex.initCause(new IllegalStateException());
+                fail("Expected IllegalStateException");
+            } catch (IllegalStateException expected) {
+                assertNull(ex.getCause());
+            }
+        }
+    }
+    
+    
+    /**
+     * Test that a price change does not reach purchases already checked against the old price
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testPriceChangeDuringPurchase() throws Exception {
+        
+        PriceTable pricesBefore = stationManager.getPriceTable();
+        assertEquals(pricesBefore.getVersion(), 3);
+        
+        //Pumping 2 litres takes 200 milliseconds
+        CompletableFuture<Double> purchase = stationManager.buyGasAsync(GasType.SUPER, 2.0, SUPER_FUEL_PRICE);
+        
+        stationManager.setPrice(GasType.SUPER, SUPER_FUEL_PRICE * 3);
+        
+        assertEquals(purchase.get(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS), 2.0 * SUPER_FUEL_PRICE, 0.001);
+        
+        assertEquals(stationManager.getPriceTable().getVersion(), 4);
+        assertEquals(stationManager.getPrice(GasType.SUPER), SUPER_FUEL_PRICE * 3);
+        
+        //Older tables are not changed
+        assertEquals(pricesBefore.getPrice(GasType.SUPER), SUPER_FUEL_PRICE);
+        
+        try {
+            new GasStationManager().getPrice(GasType.SUPER);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // no price set
+        }
+    }
+    
+    
+    /**
+     * Test that a batch is packed onto the gas pumps largest first. Sold one by one in this order the last
+     * request would be cancelled
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testBuyGasBatch() throws Exception {
+        
+        GasStationManager batchStation = new GasStationManager();
+        batchStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        batchStation.addGasPump(new GasPump(GasType.REGULAR, 4));
+        batchStation.addGasPump(new GasPump(GasType.REGULAR, 6));
+        
+        List<PurchaseRequest> requests = new ArrayList<PurchaseRequest>();
+        requests.add(new PurchaseRequest(GasType.REGULAR, 2, REGULAR_FUEL_PRICE));
+        requests.add(new PurchaseRequest(GasType.REGULAR, 4, REGULAR_FUEL_PRICE));
+        requests.add(new PurchaseRequest(GasType.REGULAR, 1, REGULAR_FUEL_PRICE / 2));
+        requests.add(new PurchaseRequest(GasType.REGULAR, 4, REGULAR_FUEL_PRICE));
+        
+        List<PurchaseResult> results = batchStation.buyGasBatch(requests);
+        
+        assertEquals(results.size(), 4);
+        assertEquals(results.get(0).getPriceToPay(), 2 * REGULAR_FUEL_PRICE);
+        assertEquals(results.get(1).getPriceToPay(), 4 * REGULAR_FUEL_PRICE);
+        assertSame(results.get(2), PurchaseResult.GAS_TOO_EXPENSIVE);
+        assertEquals(results.get(3).getPriceToPay(), 4 * REGULAR_FUEL_PRICE);
+        
+        assertEquals(batchStation.getNumberOfSales(), 3);
+        assertEquals(batchStation.getNumberOfCancellationsNoGas(), 0);
+        assertEquals(batchStation.getNumberOfCancellationsTooExpensive(), 1);
+        
+        //Nothing is sold when a request of the batch is invalid
+        requests.set(2, new PurchaseRequest(GasType.DIESEL, 1, DIESEL_FUEL_PRICE));
+        
+        try {
+            batchStation.buyGasBatch(requests);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            assertEquals(batchStation.getNumberOfSales(), 3);
+        }
+        
+        batchStation.shutdown();
+    }
+    
+    
+    /**
+     * Test that customers beyond the depth of the customer queue are turned away at once and waiting customers
+     * give up after the timeout
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testCustomerQueue() throws Exception {
+        
+        final GasStationManager queueStation = GasStationManager.builder()
+                .customerQueue(1, 100, TimeUnit.MILLISECONDS)
+                .build();
+        queueStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        queueStation.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+        
+        //Keeps the gas pump busy for 800 milliseconds
+        executorService.execute(new Runnable() {
+            public void run() {
+                try {
+                    queueStation.buyGas(GasType.REGULAR, 8.0, REGULAR_FUEL_PRICE);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        });
+        
+        //Waits for the first customer to reserve the gas
+        while(queueStation.getManagedPumps(GasType.REGULAR).get(0).getAvailableMilliLitres() > 2000){
+            Thread.sleep(1);
+        }
+        
+        //Second customer waits in the queue
+        executorService.execute(new Runnable() {
+            public void run() {
+                try {
+                    queueStation.buyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE);
+                    fail("Expected StationBusyException");
+                } catch (StationBusyException ex) {
+                    assertSame(ex, StationBusyException.QUEUE_TIMED_OUT);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        });
+        
+        while(queueStation.getQueueDepth(GasType.REGULAR) == 0){
+            Thread.sleep(1);
+        }
+        
+        //Third customer is turned away
+        assertSame(queueStation.tryBuyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE), PurchaseResult.QUEUE_FULL);
+        
+        executorService.shutdown();
+        
+        executorService.awaitTermination(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS);
+        
+        assertEquals(queueStation.getQueueDepth(GasType.REGULAR), 0);
+        assertEquals(queueStation.getNumberOfSales(), 1);
+        assertEquals(queueStation.getNumberOfCancellationsQueueFull(), 1);
+        assertEquals(queueStation.getNumberOfCancellationsQueueTimedOut(), 1);
+        
+        //The gas pump is free again
+        assertEquals(queueStation.buyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE), REGULAR_FUEL_PRICE);
+        
+        queueStation.shutdown();
+    }
+    
+    /**
+     * Test that customers finding a free gas pump are served by a customer queue nobody may wait in , and only
+     * customers who would have to wait are turned away
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testCustomerQueueWithoutWaiting() throws Exception {
+        
+        final GasStationManager queueStation = GasStationManager.builder()
+                .customerQueue(0, 100, TimeUnit.MILLISECONDS)
+                .build();
+        queueStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        queueStation.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+        
+        assertEquals(queueStation.buyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE), REGULAR_FUEL_PRICE);
+        
+        //Keeps the gas pump busy for 500 milliseconds
+        executorService.execute(new Runnable() {
+            public void run() {
+                try {
+                    queueStation.buyGas(GasType.REGULAR, 5.0, REGULAR_FUEL_PRICE);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        });
+        
+        while(queueStation.getManagedPumps(GasType.REGULAR).get(0).getAvailableMilliLitres() > 4000){
+            Thread.sleep(1);
+        }
+        
+        assertSame(queueStation.tryBuyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE), PurchaseResult.QUEUE_FULL);
+        
+        executorService.shutdown();
+        
+        executorService.awaitTermination(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS);
+        
+        assertEquals(queueStation.getNumberOfSales(), 2);
+        assertEquals(queueStation.getNumberOfCancellationsQueueFull(), 1);
+        
+        queueStation.shutdown();
+    }
+    
+    /**
+     * Test that a customer admitted by the customer queue is served by the free gas pump , not queued behind the
+     * busy one the default first fit allocation would pick
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testCustomerQueueUsesFreeGasPump() throws Exception {
+        
+        final GasStationManager queueStation = GasStationManager.builder()
+                .customerQueue(5, MAXIMUM_WAITING_TIME, TimeUnit.SECONDS)
+                .build();
+        queueStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        queueStation.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+        queueStation.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+        
+        final ManagedPump firstPump = queueStation.getManagedPumps(GasType.REGULAR).get(0);
+        final ManagedPump secondPump = queueStation.getManagedPumps(GasType.REGULAR).get(1);
+        
+        //Keeps the first gas pump busy for 500 milliseconds
+        executorService.execute(new Runnable() {
+            public void run() {
+                try {
+                    queueStation.buyGas(GasType.REGULAR, 5.0, REGULAR_FUEL_PRICE);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        });
+        
+        while(!firstPump.isBusy()){
+            Thread.sleep(1);
+        }
+        
+        //The first gas pump still has enough gas , the second one serves the customer
+        queueStation.buyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE);
+        
+        assertTrue(firstPump.isBusy());
+        assertEquals(firstPump.getAvailableMilliLitres(), 5000);
+        assertEquals(secondPump.getAvailableMilliLitres(), 9000);
+        
+        executorService.shutdown();
+        
+        executorService.awaitTermination(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS);
+        
+        queueStation.shutdown();
+    }
+    
+    /**
+     * Test that customers give up waiting for a busy gas pump at their deadline , in the customer queue too , and
+     * the gas they reserved is given back
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testPurchaseDeadline() throws Exception {
+        
+        final GasStationManager deadlineStation = new GasStationManager();
+        deadlineStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        deadlineStation.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+        
+        //Keeps the gas pump busy for 800 milliseconds
+        executorService.execute(new Runnable() {
+            public void run() {
+                try {
+                    deadlineStation.buyGas(GasType.REGULAR, 8.0, REGULAR_FUEL_PRICE);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        });
+        
+        ManagedPump managedPump = deadlineStation.getManagedPumps(GasType.REGULAR).get(0);
+        while(managedPump.getAvailableMilliLitres() > 2000 || !managedPump.isBusy()){
+            Thread.sleep(1);
+        }
+        
+        long start = System.nanoTime();
+        assertSame(deadlineStation.tryBuyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE, 100, TimeUnit.MILLISECONDS), PurchaseResult.TIMED_OUT);
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(600));
+        
+        //The gas reserved is there for the next customer
+        assertEquals(managedPump.getAvailableMilliLitres(), 2000);
+        
+        try {
+            deadlineStation.buyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE, 0, TimeUnit.SECONDS);
+            fail("Expected StationBusyException");
+        } catch (StationBusyException ex) {
+            assertSame(ex, StationBusyException.TIMED_OUT);
+        }
+        
+        //Waits long enough for the first customer to finish
+        assertEquals(deadlineStation.buyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE, 5, TimeUnit.SECONDS), REGULAR_FUEL_PRICE);
+        
+        assertEquals(deadlineStation.getNumberOfSales(), 2);
+        assertEquals(deadlineStation.getNumberOfCancellationsTimedOut(), 2);
+        assertEquals(deadlineStation.getStatistics().getGasTypeStatistics(GasType.REGULAR).getCancellationsTimedOut(), 2);
+        
+        try {
+            deadlineStation.tryBuyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE, -1, TimeUnit.SECONDS);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // no negative timeouts
+        }
+        
+        //A deadline shorter than the timeout of the customer queue ends the wait in the queue
+        final GasStationManager queueStation = GasStationManager.builder()
+                .customerQueue(5, 10, TimeUnit.SECONDS)
+                .build();
+        queueStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        queueStation.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+        
+        executorService.execute(new Runnable() {
+            public void run() {
+                try {
+                    queueStation.buyGas(GasType.REGULAR, 5.0, REGULAR_FUEL_PRICE);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        });
+        
+        while(queueStation.getManagedPumps(GasType.REGULAR).get(0).getAvailableMilliLitres() > 5000){
+            Thread.sleep(1);
+        }
+        
+        assertSame(queueStation.tryBuyGas(GasType.REGULAR, 1.0, REGULAR_FUEL_PRICE, 50, TimeUnit.MILLISECONDS), PurchaseResult.TIMED_OUT);
+        assertEquals(queueStation.getNumberOfCancellationsTimedOut(), 1);
+        assertEquals(queueStation.getNumberOfCancellationsQueueTimedOut(), 0);
+        
+        executorService.shutdown();
+        executorService.awaitTermination(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS);
+        
+        deadlineStation.shutdown();
+        queueStation.shutdown();
+    }
+    
+    /**
+     * Test that an interrupted customer stops waiting for a gas pump , and that an interrupt while pumping is kept
+     * although GasPump.pumpGas swallows it
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testInterruptedCustomer() throws Exception {
+        
+        final GasStationManager interruptStation = new GasStationManager();
+        interruptStation.setPrice(GasType.SUPER, SUPER_FUEL_PRICE);
+        interruptStation.addGasPump(new GasPump(GasType.SUPER, 10.0));
+        
+        final ManagedPump managedPump = interruptStation.getManagedPumps(GasType.SUPER).get(0);
+        final List<Object> outcomes = Collections.synchronizedList(new ArrayList<Object>());
+        
+        //Interrupted while pumping 5 litres for 500 milliseconds
+        Thread pumpingCustomer = new Thread(new Runnable() {
+            public void run() {
+                long start = System.nanoTime();
+                outcomes.add(interruptStation.tryBuyGas(GasType.SUPER, 5.0, SUPER_FUEL_PRICE));
+                outcomes.add(Thread.currentThread().isInterrupted());
+                outcomes.add(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(400));
+            }
+        });
+        
+        //Interrupted while waiting for the gas pump , without a deadline
+        Thread waitingCustomer = new Thread(new Runnable() {
+            public void run() {
+                outcomes.add(interruptStation.tryBuyGas(GasType.SUPER, 1.0, SUPER_FUEL_PRICE));
+                outcomes.add(Thread.currentThread().isInterrupted());
+            }
+        });
+        
+        pumpingCustomer.start();
+        while(!managedPump.isBusy()){
+            Thread.sleep(1);
+        }
+        
+        waitingCustomer.start();
+        while(managedPump.getQueueLength() < 2){
+            Thread.sleep(1);
+        }
+        
+        waitingCustomer.interrupt();
+        waitingCustomer.join();
+        
+        assertSame(outcomes.get(0), PurchaseResult.TIMED_OUT);
+        assertEquals(outcomes.get(1), Boolean.TRUE);
+        
+        pumpingCustomer.interrupt();
+        pumpingCustomer.join();
+        
+        assertTrue(((PurchaseResult) outcomes.get(2)).isSold());
+        assertEquals(outcomes.get(3), Boolean.TRUE);
+        assertEquals(outcomes.get(4), Boolean.TRUE);
+        
+        assertEquals(interruptStation.getNumberOfSales(), 1);
+        assertEquals(interruptStation.getNumberOfCancellationsTimedOut(), 1);
+        assertEquals(managedPump.getAvailableMilliLitres(), 5000);
+        
+        interruptStation.shutdown();
+    }
     
+    /**
+     * Test that a customer interrupted while waiting in the customer queue gives up like one interrupted while
+     * waiting for the gas pump , with TIMED_OUT and the interrupt status kept
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testInterruptedQueuedCustomer() throws Exception {
+        
+        final GasStationManager queueStation = GasStationManager.builder()
+                .customerQueue(5, 10, TimeUnit.SECONDS)
+                .build();
+        queueStation.setPrice(GasType.SUPER, SUPER_FUEL_PRICE);
+        queueStation.addGasPump(new GasPump(GasType.SUPER, 10.0));
+        
+        final List<Object> outcomes = Collections.synchronizedList(new ArrayList<Object>());
+        
+        //Keeps the gas pump busy for 500 milliseconds
+        Thread pumpingCustomer = new Thread(new Runnable() {
+            public void run() {
+                outcomes.add(queueStation.tryBuyGas(GasType.SUPER, 5.0, SUPER_FUEL_PRICE));
+            }
+        });
+        
+        //Interrupted while waiting in the queue
+        Thread queuedCustomer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    queueStation.buyGas(GasType.SUPER, 1.0, SUPER_FUEL_PRICE);
+                    outcomes.add("sold");
+                } catch (StationBusyException ex) {
+                    outcomes.add(ex);
+                } catch (Exception ex) {
+                    outcomes.add(ex.toString());
+                }
+                outcomes.add(Thread.currentThread().isInterrupted());
+            }
+        });
+        
+        pumpingCustomer.start();
+        while(queueStation.getManagedPumps(GasType.SUPER).get(0).getAvailableMilliLitres() > 5000){
+            Thread.sleep(1);
+        }
+        
+        queuedCustomer.start();
+        while(queueStation.getQueueDepth(GasType.SUPER) == 0){
+            Thread.sleep(1);
+        }
+        
+        queuedCustomer.interrupt();
+        queuedCustomer.join();
+        
+        assertSame(outcomes.get(0), StationBusyException.TIMED_OUT);
+        assertEquals(outcomes.get(1), Boolean.TRUE);
+        assertEquals(queueStation.getQueueDepth(GasType.SUPER), 0);
+        
+        pumpingCustomer.join();
+        
+        assertTrue(((PurchaseResult) outcomes.get(2)).isSold());
+        assertEquals(queueStation.getNumberOfSales(), 1);
+        assertEquals(queueStation.getNumberOfCancellationsTimedOut(), 1);
+        assertEquals(queueStation.getNumberOfCancellationsQueueTimedOut(), 0);
+        
+        queueStation.shutdown();
+    }
+    
+    /**
+     * Test that the gas pumps are handed out read-only , per gas type and following gas pumps added in bulk later
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testGasPumpViews() throws Exception {
+        
+        GasStationManager viewStation = new GasStationManager();
+        viewStation.setPrice(GasType.DIESEL, DIESEL_FUEL_PRICE);
+        
+        Collection<GasPump> gasPumps = viewStation.getGasPumps();
+        List<GasPump> dieselPumps = viewStation.getGasPumps(GasType.DIESEL);
+        
+        assertSame(viewStation.getGasPumps(), gasPumps);
+        assertSame(viewStation.getManagedPumps(GasType.DIESEL), viewStation.getManagedPumps(GasType.DIESEL));
+        
+        List<GasPump> added = new ArrayList<GasPump>();
+        for(int i = 0; i < 1000; i++){
+            added.add(new GasPump(i % 2 == 0 ? GasType.DIESEL : GasType.SUPER, 1.0));
+        }
+        viewStation.addGasPumps(added);
+        
+        assertEquals(gasPumps.size(), 1000);
+        assertEquals(dieselPumps.size(), 500);
+        assertSame(dieselPumps.get(1), added.get(2));
+        assertEquals(viewStation.getManagedPumps(GasType.SUPER).size(), 500);
+        
+        try {
+            gasPumps.add(new GasPump(GasType.DIESEL, 1.0));
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException ex) {
+            // read-only
+        }
+        
+        try {
+            dieselPumps.remove(0);
+            fail("Expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException ex) {
+            // read-only
+        }
+        
+        try {
+            viewStation.addGasPumps(Arrays.asList(new GasPump(GasType.DIESEL, 1.0), null));
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // nothing added
+        }
+        assertEquals(gasPumps.size(), 1000);
+        
+        //Gas pumps added in bulk serve customers
+        assertEquals(viewStation.buyGas(GasType.DIESEL, 1.0, DIESEL_FUEL_PRICE), DIESEL_FUEL_PRICE);
+        
+        viewStation.shutdown();
+    }
+    
+    /**
+     * Test that an inventory shows gas left and busy gas pumps , and is reused from one poll to the next
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testPumpInventory() throws Exception {
+        
+        final GasStationManager inventoryStation = new GasStationManager(PumpSelectionMode.TRY_LOCK);
+        inventoryStation.setPrice(GasType.REGULAR, REGULAR_FUEL_PRICE);
+        inventoryStation.addGasPump(new GasPump(GasType.REGULAR, 10.0));
+        inventoryStation.addGasPump(new GasPump(GasType.DIESEL, 20.0));
+        inventoryStation.addGasPump(new GasPump(GasType.REGULAR, 5.0));
+        
+        PumpInventory inventory = inventoryStation.getInventory();
+        
+        assertEquals(inventory.size(), 3);
+        assertEquals(inventory.getGasType(2), GasType.DIESEL);
+        assertEquals(inventory.getRemainingAmount(1), 5.0);
+        assertEquals(inventory.getRemainingAmount(GasType.REGULAR), 15.0);
+        assertEquals(inventory.getNumberOfBusyGasPumps(), 0);
+        
+        //Keeps the first gas pump busy for 500 milliseconds
+        executorService.execute(new Runnable() {
+            public void run() {
+                try {
+                    inventoryStation.buyGas(GasType.REGULAR, 5.0, REGULAR_FUEL_PRICE);
+                } catch (Exception ex) {
+                    fail(ex.toString());
+                }
+            }
+        });
+        
+        while(!inventoryStation.getInventory(inventory).isBusy(0)){
+            Thread.sleep(1);
+        }
+        
+        assertSame(inventoryStation.getInventory(inventory), inventory);
+        assertEquals(inventory.size(), 3);
+        assertFalse(inventory.isBusy(1));
+        
+        executorService.shutdown();
+        executorService.awaitTermination(MAXIMUM_WAITING_TIME, TimeUnit.SECONDS);
+        
+        inventoryStation.getInventory(inventory);
+        assertEquals(inventory.getRemainingAmount(0), 5.0);
+        assertEquals(inventory.getNumberOfBusyGasPumps(), 0);
+        
+        try {
+            inventory.getGasPump(3);
+            fail("Expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException ex) {
+            // three gas pumps
+        }
+        
+        inventoryStation.shutdown();
+    }
+
 }
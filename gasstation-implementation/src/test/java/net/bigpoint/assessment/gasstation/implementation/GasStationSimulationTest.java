@@ -0,0 +1,177 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for the simulation of gas station customers on a virtual clock
+ */
+public class GasStationSimulationTest extends TestCase {
+
+    private GasStationManager createStation(int regularPumps, double litres){
+
+        GasStationManager stationManager = GasStationManager.builder().dispenseMode(DispenseMode.INSTANT).build();
+
+        stationManager.setPrice(GasType.REGULAR, 1.5);
+        stationManager.setPrice(GasType.DIESEL, 1.25);
+
+        for(int i = 0; i < regularPumps; i++){
+            stationManager.addGasPump(new GasPump(GasType.REGULAR, litres));
+        }
+        stationManager.addGasPump(new GasPump(GasType.DIESEL, litres));
+
+        return stationManager;
+    }
+
+    private GasStationSimulation.Builder createSimulation(GasStationManager stationManager, long seed){
+
+        return GasStationSimulation.builder(stationManager)
+                .seed(seed)
+                .customers(GasType.REGULAR, Distribution.exponential(60), Distribution.uniform(10, 60), Distribution.uniform(1.4, 1.6))
+                .customers(GasType.DIESEL, Distribution.exponential(300), Distribution.uniform(40, 200), Distribution.fixed(1.3));
+    }
+
+    /**
+     * Test that runs with the same seed give the same report , and the gas station the same sales
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSameSeedSameReport() throws Exception {
+
+        GasStationManager first = createStation(2, 100000);
+        GasStationManager second = createStation(2, 100000);
+        GasStationManager third = createStation(2, 100000);
+
+        SimulationReport firstReport = createSimulation(first, 42).build().run(1, TimeUnit.DAYS);
+        SimulationReport secondReport = createSimulation(second, 42).build().run(1, TimeUnit.DAYS);
+        SimulationReport thirdReport = createSimulation(third, 43).build().run(1, TimeUnit.DAYS);
+
+        assertEquals(firstReport.toString(), secondReport.toString());
+        assertEquals(first.getRevenue(), second.getRevenue());
+        assertFalse(firstReport.toString().equals(thirdReport.toString()));
+
+        //About one regular customer a minute and one diesel customer every five minutes
+        assertEquals(firstReport.getGasTypeReport(GasType.REGULAR).getCustomers(), 1440, 150);
+        assertEquals(firstReport.getGasTypeReport(GasType.DIESEL).getCustomers(), 288, 50);
+        assertEquals(firstReport.getSales(), first.getNumberOfSales());
+        assertEquals(firstReport.getCancellationsTooExpensive(), first.getNumberOfCancellationsTooExpensive());
+        assertEquals(firstReport.getGasTypeReport(GasType.DIESEL).getCancellationsTooExpensive(), 0);
+        assertEquals(firstReport.getGasTypeReport(GasType.REGULAR).getCancellationRate(), 0.5, 0.1);
+        assertEquals(firstReport.getGasTypeReport(GasType.REGULAR).getRevenue()
+                + firstReport.getGasTypeReport(GasType.DIESEL).getRevenue(), first.getRevenue(), 0.01);
+
+        first.shutdown();
+        second.shutdown();
+        third.shutdown();
+    }
+
+    /**
+     * Test that customers wait for the gas pump serving them only while it is busy
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testQueueWaits() throws Exception {
+
+        //Pumping 50 litres takes 5 seconds
+        GasStationManager stationManager = createStation(1, 100000);
+
+        SimulationReport idle = GasStationSimulation.builder(stationManager)
+                .customers(GasType.REGULAR, Distribution.fixed(10), Distribution.fixed(50), Distribution.fixed(2))
+                .build().run(1, TimeUnit.HOURS);
+
+        assertEquals(idle.getGasTypeReport(GasType.REGULAR).getSales(), 360);
+        assertEquals(idle.getGasTypeReport(GasType.REGULAR).getQueueWaits().getMaxValue(), 0);
+
+        //A customer every 4 seconds , every customer waits a second longer than the one before
+        SimulationReport busy = GasStationSimulation.builder(stationManager)
+                .customers(GasType.REGULAR, Distribution.fixed(4), Distribution.fixed(50), Distribution.fixed(2))
+                .build().run(100, TimeUnit.SECONDS);
+
+        SimulationReport.GasTypeReport regular = busy.getGasTypeReport(GasType.REGULAR);
+
+        assertEquals(regular.getSales(), 25);
+        assertEquals(regular.getMeanQueueWaitNanos(), 12e9, 1e6);
+        assertEquals(regular.getQueueWaits().getMaxValue(), 24e9, 24e9 * 0.02);
+        assertEquals(busy.getSalesPerHour(), 900.0, 0.001);
+
+        //Dispensing instantly leaves no interrupt behind
+        assertFalse(Thread.currentThread().isInterrupted());
+
+        stationManager.shutdown();
+
+        //Try lock selection sends every other customer to the second gas pump , nobody waits
+        GasStationManager twoPumps = GasStationManager.builder()
+                .selectionMode(PumpSelectionMode.TRY_LOCK)
+                .dispenseMode(DispenseMode.INSTANT)
+                .build();
+        twoPumps.setPrice(GasType.REGULAR, 1.5);
+        twoPumps.addGasPump(new GasPump(GasType.REGULAR, 100000));
+        twoPumps.addGasPump(new GasPump(GasType.REGULAR, 100000));
+
+        SimulationReport shared = GasStationSimulation.builder(twoPumps)
+                .customers(GasType.REGULAR, Distribution.fixed(4), Distribution.fixed(50), Distribution.fixed(2))
+                .build().run(100, TimeUnit.SECONDS);
+
+        assertEquals(shared.getGasTypeReport(GasType.REGULAR).getQueueWaits().getMaxValue(), 0);
+        assertFalse(twoPumps.getManagedPumps(GasType.REGULAR).get(0).isBusy());
+        assertSame(twoPumps.getAllocationStrategy(), StandardPumpAllocationStrategy.FIRST_FIT);
+
+        twoPumps.shutdown();
+    }
+
+    /**
+     * Test that a week of traffic runs in well under the wall clock time of a single real purchase of it
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testWeekOfTraffic() throws Exception {
+
+        GasStationManager stationManager = createStation(4, 20000);
+
+        long start = System.nanoTime();
+        SimulationReport report = createSimulation(stationManager, 7).build().run(7, TimeUnit.DAYS);
+        long elapsed = System.nanoTime() - start;
+
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(report.getSimulatedTime(TimeUnit.DAYS), 7);
+
+        //Diesel runs dry during the week
+        assertTrue(report.getGasTypeReport(GasType.DIESEL).getCancellationsNoGas() > 0);
+        assertEquals(report.getCancellationsNoGas(), stationManager.getNumberOfCancellationsNoGas());
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that customers drawing amounts below half a milli litre are served instead of ending the run
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTinyAmounts() throws Exception {
+
+        GasStationManager stationManager = createStation(1, 100000);
+
+        //About one in five customers asks for less than half a milli litre
+        SimulationReport report = GasStationSimulation.builder(stationManager)
+                .seed(42)
+                .customers(GasType.REGULAR, Distribution.exponential(60), Distribution.exponential(0.002), Distribution.fixed(2.0))
+                .build()
+                .run(1, TimeUnit.DAYS);
+
+        assertEquals(report.getGasTypeReport(GasType.REGULAR).getCustomers(), 1440, 150);
+        assertEquals(report.getSales(), report.getGasTypeReport(GasType.REGULAR).getCustomers());
+
+        stationManager.shutdown();
+    }
+
+}
@@ -0,0 +1,54 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import static junit.framework.TestCase.assertSame;
+import net.bigpoint.assessment.gasstation.GasType;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Customers shared by the tests of snapshots and journals
+ */
+final class GasStationTestSupport {
+
+    private GasStationTestSupport() {
+    }
+
+    /**
+     * A customer giving up at the deadline while another thread holds the gas pump
+     *
+     * @param stationManager
+     * @param type
+     * @throws InterruptedException
+     */
+    static void timeOutOnBusyGasPump(GasStationManager stationManager, GasType type) throws InterruptedException {
+
+        final ManagedPump managedPump = stationManager.getManagedPumps(type).get(0);
+        final CountDownLatch held = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        Thread holder = new Thread(new Runnable() {
+            public void run() {
+                managedPump.lock();
+                held.countDown();
+                try {
+                    released.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    managedPump.unlock();
+                }
+            }
+        });
+        holder.start();
+
+        held.await();
+        assertSame(stationManager.tryBuyGas(type, 0.1, 2.0, 0, TimeUnit.SECONDS), PurchaseResult.TIMED_OUT);
+
+        released.countDown();
+        holder.join();
+    }
+
+}
@@ -0,0 +1,89 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Tests for latency histograms and the latency recorder
+ */
+public class LatencyHistogramTest extends TestCase {
+    
+    /**
+     * Test that every value falls into a bucket whose highest value is within 1.6% above it
+     */
+    @Test
+    public void testBucketPrecision(){
+        
+        long[] values = {0, 1, 127, 128, 129, 1000, 65535, 123456789L, Long.MAX_VALUE / 3, Long.MAX_VALUE};
+        
+        for(long value : values){
+            
+            long highestValue = LatencyHistogram.highestValueOf(LatencyHistogram.bucketOf(value));
+            
+            assertTrue(highestValue >= value);
+            assertTrue(highestValue - value <= value / 64);
+        }
+    }
+    
+    /**
+     * Test for percentiles of an interval and that taking them resets the histogram
+     */
+    @Test
+    public void testPercentilesPerInterval(){
+        
+        LatencyHistogram histogram = new LatencyHistogram();
+        
+        for(long value = 1; value <= 100; value++){
+            histogram.record(value * 1000);
+        }
+        
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+        
+        assertEquals(snapshot.getTotalCount(), 100);
+        assertEquals(snapshot.getValueAtPercentile(50), 50000, 50000 / 64);
+        assertEquals(snapshot.getValueAtPercentile(99), 99000, 99000 / 64);
+        assertEquals(snapshot.getMaxValue(), 100000, 100000 / 64);
+        
+        assertEquals(histogram.snapshotAndReset().getTotalCount(), 0);
+    }
+    
+    /**
+     * Test that the gas station reports every phase of a purchase to the latency recorder
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testRecorderReceivesPurchasePhases() throws Exception{
+        
+        LatencyRecorder latencyRecorder = new LatencyRecorder();
+        
+        GasStationManager stationManager = GasStationManager.builder()
+                .metricsListener(latencyRecorder)
+                .build();
+        stationManager.setPrice(GasType.DIESEL, 1.0);
+        stationManager.addGasPump(new GasPump(GasType.DIESEL, 10));
+        
+        stationManager.buyGas(GasType.DIESEL, 0.5, 1.0);
+        stationManager.buyGas(GasType.DIESEL, 0.5, 1.0);
+        
+        LatencyRecorder.Report report = latencyRecorder.report();
+        
+        assertEquals(report.get(GasType.DIESEL, PurchasePhase.VALIDATION).getTotalCount(), 2);
+        assertEquals(report.get(GasType.DIESEL, PurchasePhase.PRICE_CHECK).getTotalCount(), 2);
+        assertEquals(report.get(GasType.DIESEL, PurchasePhase.PUMP_SELECTION).getTotalCount(), 2);
+        assertEquals(report.get(GasType.DIESEL, PurchasePhase.PUMPING).getTotalCount(), 2);
+        
+        //Pumping 0.5 litres takes 50 milliseconds
+        assertTrue(report.get(GasType.DIESEL, PurchasePhase.PUMPING).getValueAtPercentile(50) >= 50000000L);
+        
+        assertEquals(report.get(GasType.REGULAR, PurchasePhase.VALIDATION).getTotalCount(), 0);
+        
+        stationManager.shutdown();
+    }
+    
+}
@@ -0,0 +1,135 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for the lanes of managed gas pumps
+ */
+public class ManagedPumpTest extends TestCase {
+
+    /**
+     * Test that purchases queued on a lane the dispatcher refuses are rejected , their gas given back and the lane
+     * usable again
+     */
+    @Test
+    public void testRejectedLane(){
+
+        ManagedPump pump = new ManagedPump(new GasPump(GasType.DIESEL, 10), 0);
+        List<Runnable> drains = new ArrayList<Runnable>();
+
+        assertTrue(pump.tryReserve(4000));
+
+        RecordingTask task = new RecordingTask(pump, 4000);
+        pump.submitToLane(task, new Executor() {
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+
+        assertFalse(task.ran);
+        assertTrue(task.rejection instanceof RejectedExecutionException);
+        assertEquals(pump.getAvailableMilliLitres(), 10000);
+        assertEquals(pump.getQueueLength(), 0);
+
+        //The next purchase starts draining the lane again
+        RecordingTask next = new RecordingTask(pump, 0);
+        pump.submitToLane(next, new QueueingExecutor(drains));
+
+        assertEquals(drains.size(), 1);
+        drains.get(0).run();
+        assertTrue(next.ran);
+        assertEquals(pump.getQueueLength(), 0);
+    }
+
+    /**
+     * Test that a purchase that throws does not stall the purchases queued behind it
+     */
+    @Test
+    public void testThrowingTaskDoesNotStallLane(){
+
+        ManagedPump pump = new ManagedPump(new GasPump(GasType.DIESEL, 10), 0);
+        List<Runnable> drains = new ArrayList<Runnable>();
+        QueueingExecutor dispatcher = new QueueingExecutor(drains);
+
+        RecordingTask throwing = new RecordingTask(pump, 0){
+            public void run() {
+                super.run();
+                throw new AssertionError("pump broke");
+            }
+        };
+        RecordingTask behind = new RecordingTask(pump, 0);
+
+        pump.submitToLane(throwing, dispatcher);
+        pump.submitToLane(behind, dispatcher);
+
+        assertEquals(drains.size(), 1);
+
+        try {
+            drains.get(0).run();
+            fail("Expected AssertionError");
+        } catch (AssertionError ex) {
+            assertEquals(ex.getMessage(), "pump broke");
+        }
+
+        //The rest of the lane was handed to another dispatcher thread
+        assertTrue(throwing.ran);
+        assertFalse(behind.ran);
+        assertEquals(drains.size(), 2);
+
+        drains.get(1).run();
+        assertTrue(behind.ran);
+        assertNull(behind.rejection);
+        assertEquals(pump.getQueueLength(), 0);
+    }
+
+    /**
+     * Lane task remembering if it was run or rejected
+     */
+    private static class RecordingTask extends ManagedPump.LaneTask {
+
+        private final ManagedPump pump;
+        private final long milliLitres;
+        boolean ran;
+        Throwable rejection;
+
+        RecordingTask(ManagedPump pump, long milliLitres) {
+            this.pump = pump;
+            this.milliLitres = milliLitres;
+        }
+
+        public void run() {
+            ran = true;
+        }
+
+        void reject(Throwable cause) {
+            pump.release(milliLitres);
+            rejection = cause;
+        }
+    }
+
+    /**
+     * Dispatcher keeping the drains it is given for the test to run
+     */
+    private static class QueueingExecutor implements Executor {
+
+        private final List<Runnable> drains;
+
+        QueueingExecutor(List<Runnable> drains) {
+            this.drains = drains;
+        }
+
+        public void execute(Runnable command) {
+            drains.add(command);
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for sliding window rates and the pricing engine
+ */
+public class PricingEngineTest extends TestCase {
+
+    private final static long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Test that amounts leave the window a bucket at a time and the rate is taken over the time passed
+     */
+    @Test
+    public void testSlidingWindow(){
+
+        //A minute of one second buckets , on a virtual clock starting at zero
+        SlidingWindowRate rate = new SlidingWindowRate(60, TimeUnit.SECONDS, 60, 0);
+
+        rate.record(5, SECOND / 2);
+        rate.record(7, 30 * SECOND);
+
+        assertEquals(rate.getSum(30 * SECOND + SECOND / 2), 12);
+        assertEquals(rate.getSum(60 * SECOND + SECOND / 5), 7);
+        assertEquals(rate.getSum(90 * SECOND + SECOND / 2), 0);
+
+        //The bucket left behind is reused for its next second
+        rate.record(2, 90 * SECOND + SECOND / 2);
+        assertEquals(rate.getSum(91 * SECOND), 2);
+
+        //One a second for two minutes
+        SlidingWindowRate steady = new SlidingWindowRate(60, TimeUnit.SECONDS, 60, 0);
+        for(int second = 0; second < 120; second++){
+            steady.record(1, second * SECOND + SECOND / 2);
+        }
+
+        assertEquals(steady.getRate(TimeUnit.SECONDS, 120 * SECOND), 1.0, 0.0001);
+        assertEquals(steady.getRate(TimeUnit.MINUTES, 119 * SECOND + SECOND * 3 / 4), 60.0, 1.0);
+
+        //A young window is not stretched over the time before it was created
+        SlidingWindowRate young = new SlidingWindowRate(60, TimeUnit.SECONDS, 60, 0);
+        young.record(10, SECOND);
+        assertEquals(young.getRate(TimeUnit.SECONDS, 2 * SECOND), 5.0, 0.0001);
+        assertEquals(young.getWindow(TimeUnit.SECONDS), 60);
+
+        try {
+            new SlidingWindowRate(60, TimeUnit.SECONDS, 1);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // a bucket is no sliding window
+        }
+    }
+
+    /**
+     * Test that records from several threads are all counted
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testConcurrentRecords() throws Exception {
+
+        final SlidingWindowRate rate = new SlidingWindowRate(1, TimeUnit.HOURS, 60);
+        List<Thread> threads = new ArrayList<Thread>();
+
+        for(int i = 0; i < 4; i++){
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    for(int record = 0; record < 100000; record++){
+                        rate.record(3);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        for(Thread thread : threads){
+            thread.join();
+        }
+
+        assertEquals(rate.getSum(), 4 * 100000 * 3);
+    }
+
+    /**
+     * Test that prices go up with gas running out and down with customers finding it too expensive , a step at a
+     * time
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRepricing() throws Exception {
+
+        GasStationManager stationManager = new GasStationManager();
+        stationManager.setPrice(GasType.REGULAR, 1.5);
+        stationManager.setPrice(GasType.DIESEL, 1.0);
+        stationManager.addGasPump(new GasPump(GasType.REGULAR, 1));
+        stationManager.addGasPump(new GasPump(GasType.DIESEL, 100000));
+
+        PricingEngine pricingEngine = PricingEngine.builder(stationManager)
+                .priceRange(0.2, 0.1)
+                .maxStep(0.05)
+                .build();
+
+        assertEquals(pricingEngine.getBasePrice(GasType.REGULAR), 1.5);
+        assertTrue(Double.isNaN(pricingEngine.getBasePrice(GasType.SUPER)));
+
+        //Nothing sold , nobody cancelled
+        assertEquals(pricingEngine.repriceNow(), 0);
+
+        //Half the regular gas sold within moments , it runs out long before a day
+        for(int i = 0; i < 50; i++){
+            stationManager.buyGas(GasType.REGULAR, 0.01, 2.0);
+        }
+
+        //Most diesel customers find it too expensive
+        for(int i = 0; i < 9; i++){
+            assertSame(stationManager.tryBuyGas(GasType.DIESEL, 0.01, 0.9), PurchaseResult.GAS_TOO_EXPENSIVE);
+        }
+        stationManager.buyGas(GasType.DIESEL, 0.01, 1.0);
+
+        assertTrue(pricingEngine.getSalesRate(GasType.REGULAR, TimeUnit.HOURS) > 0.5);
+        assertTrue(pricingEngine.getCancellationRateTooExpensive(GasType.DIESEL, TimeUnit.HOURS) > 9);
+
+        //A step per reprice towards the limits of the price range
+        assertEquals(pricingEngine.repriceNow(), 2);
+        assertEquals(stationManager.getPriceTable().getPrice(GasType.REGULAR), 1.575);
+        assertEquals(stationManager.getPriceTable().getPrice(GasType.DIESEL), 0.95);
+
+        for(int i = 0; i < 10; i++){
+            pricingEngine.repriceNow();
+        }
+
+        assertEquals(stationManager.getPriceTable().getPrice(GasType.REGULAR), 1.8, 0.0015);
+        //Nine in ten too expensive is eight ninths beyond the tolerated tenth , of the tenth discount at most
+        assertEquals(stationManager.getPriceTable().getPrice(GasType.DIESEL), 0.911);
+
+        //One pricing engine per gas station
+        try {
+            PricingEngine.builder(stationManager).build();
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // already attached
+        }
+
+        pricingEngine.close();
+
+        //Prices stay , demand is no longer counted
+        stationManager.buyGas(GasType.REGULAR, 0.01, 2.0);
+        assertEquals(stationManager.getPriceTable().getPrice(GasType.REGULAR), 1.8, 0.0015);
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that a started pricing engine publishes prices on its own while customers buy gas
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testBackgroundTick() throws Exception {
+
+        GasStationManager stationManager = new GasStationManager();
+        stationManager.setPrice(GasType.SUPER, 2.0);
+        stationManager.addGasPump(new GasPump(GasType.SUPER, 1));
+
+        PricingEngine pricingEngine = PricingEngine.builder(stationManager)
+                .tickInterval(5, TimeUnit.MILLISECONDS)
+                .maxStep(1)
+                .build();
+        pricingEngine.start();
+
+        for(int i = 0; i < 50; i++){
+            stationManager.buyGas(GasType.SUPER, 0.01, 3.0);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(stationManager.getPriceTable().getPrice(GasType.SUPER) == 2.0 && System.nanoTime() < deadline){
+            Thread.sleep(5);
+        }
+
+        assertTrue(stationManager.getPriceTable().getPrice(GasType.SUPER) > 2.0);
+
+        pricingEngine.close();
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that the background tick keeps repricing after a tick failed
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFailedTick() throws Exception {
+
+        final AtomicBoolean failing = new AtomicBoolean();
+
+        GasStationManager stationManager = new GasStationManager() {
+            @Override
+            public void setPrice(GasType type, double price) {
+                if(failing.get()){
+                    throw new IllegalStateException("Price board is down");
+                }
+                super.setPrice(type, price);
+            }
+        };
+        stationManager.setPrice(GasType.SUPER, 2.0);
+        stationManager.addGasPump(new GasPump(GasType.SUPER, 1));
+
+        PricingEngine pricingEngine = PricingEngine.builder(stationManager)
+                .tickInterval(5, TimeUnit.MILLISECONDS)
+                .build();
+
+        for(int i = 0; i < 50; i++){
+            stationManager.buyGas(GasType.SUPER, 0.01, 3.0);
+        }
+
+        //Every price published from here on fails
+        failing.set(true);
+        pricingEngine.start();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(pricingEngine.getNumberOfFailedTicks() < 3 && System.nanoTime() < deadline){
+            Thread.sleep(5);
+        }
+
+        assertTrue(pricingEngine.getNumberOfFailedTicks() >= 3);
+        assertEquals(stationManager.getPriceTable().getPrice(GasType.SUPER), 2.0);
+
+        //The tick keeps running and publishes once the price board works again
+        failing.set(false);
+
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(stationManager.getPriceTable().getPrice(GasType.SUPER) == 2.0 && System.nanoTime() < deadline){
+            Thread.sleep(5);
+        }
+
+        assertTrue(stationManager.getPriceTable().getPrice(GasType.SUPER) > 2.0);
+
+        pricingEngine.close();
+        stationManager.shutdown();
+    }
+
+}
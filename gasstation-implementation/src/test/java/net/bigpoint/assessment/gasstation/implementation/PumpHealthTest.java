@@ -0,0 +1,264 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for the health of gas pumps and their circuit breakers
+ */
+public class PumpHealthTest extends TestCase {
+
+    private final static long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * Test that the circuit opens after slow dispenses in a row or a stalled dispense and closes after a probe in time
+     */
+    @Test
+    public void testCircuitBreaker(){
+
+        //Dispenses should take 10 milliseconds and are slow after 20 , on a virtual clock
+        PumpHealth health = new PumpHealth();
+
+        health.startDispense(0, 10 * MILLISECOND, 20 * MILLISECOND);
+        health.endDispense(30 * MILLISECOND, false, 3);
+        health.startDispense(100 * MILLISECOND, 10 * MILLISECOND, 20 * MILLISECOND);
+        health.endDispense(130 * MILLISECOND, false, 3);
+
+        assertSame(health.getState(), CircuitState.CLOSED);
+        assertEquals(health.getConsecutiveFailures(), 2);
+
+        //A dispense in time starts counting again
+        health.startDispense(200 * MILLISECOND, 10 * MILLISECOND, 20 * MILLISECOND);
+        health.endDispense(210 * MILLISECOND, false, 3);
+        assertEquals(health.getConsecutiveFailures(), 0);
+
+        for(int i = 0; i < 3; i++){
+            health.startDispense(i * 100 * MILLISECOND + 300 * MILLISECOND, 10 * MILLISECOND, 20 * MILLISECOND);
+            health.endDispense(i * 100 * MILLISECOND + 330 * MILLISECOND, false, 3);
+        }
+
+        assertSame(health.getState(), CircuitState.OPEN);
+        assertFalse(health.isHealthy(600 * MILLISECOND));
+        assertEquals(health.trips.sum(), 1);
+
+        //Opened at 530 milliseconds for a second , one customer at a time probes it
+        assertFalse(health.tryProbe(1000 * MILLISECOND, 1000 * MILLISECOND));
+        assertTrue(health.isProbeDue(1530 * MILLISECOND, 1000 * MILLISECOND));
+        assertTrue(health.tryProbe(1530 * MILLISECOND, 1000 * MILLISECOND));
+        assertFalse(health.isProbeDue(1530 * MILLISECOND, 1000 * MILLISECOND));
+        assertFalse(health.tryProbe(1530 * MILLISECOND, 1000 * MILLISECOND));
+        assertSame(health.getState(), CircuitState.HALF_OPEN);
+
+        //A failed probe opens it again
+        health.startDispense(1530 * MILLISECOND, 10 * MILLISECOND, 20 * MILLISECOND);
+        health.endDispense(1535 * MILLISECOND, true, 3);
+        assertSame(health.getState(), CircuitState.OPEN);
+        assertEquals(health.trips.sum(), 1);
+
+        assertTrue(health.tryProbe(2535 * MILLISECOND, 1000 * MILLISECOND));
+        health.startDispense(2535 * MILLISECOND, 10 * MILLISECOND, 20 * MILLISECOND);
+        health.endDispense(2545 * MILLISECOND, false, 3);
+        assertSame(health.getState(), CircuitState.CLOSED);
+        assertTrue(health.isHealthy(2545 * MILLISECOND));
+
+        //A stalled dispense opens the circuit before it ends , and is not probed while stalled
+        health.startDispense(3000 * MILLISECOND, 10 * MILLISECOND, 20 * MILLISECOND);
+        assertTrue(health.isHealthy(3015 * MILLISECOND));
+        assertFalse(health.isHealthy(3025 * MILLISECOND));
+        assertSame(health.getState(), CircuitState.OPEN);
+        assertEquals(health.trips.sum(), 2);
+        assertFalse(health.tryProbe(9000 * MILLISECOND, 1000 * MILLISECOND));
+
+        health.endDispense(9000 * MILLISECOND, false, 3);
+        assertEquals(health.slowDispenses.sum(), 7);
+        assertEquals(health.dispenses.sum(), 9);
+
+        health.recordLockHold(5 * MILLISECOND);
+        health.recordLockHold(2 * MILLISECOND);
+        assertEquals(health.lockHoldNanos.sum(), 7 * MILLISECOND);
+        assertEquals(health.maxLockHoldNanos.get(), 5 * MILLISECOND);
+    }
+
+    /**
+     * Test that customers are served by the other gas pump of the type while one is stalled dispensing , and the
+     * stalled gas pump is probed back in once it recovered
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testStalledGasPumpBypassed() throws Exception {
+
+        GasStationManager stationManager = GasStationManager.builder()
+                .circuitBreaker(3, 200, TimeUnit.MILLISECONDS)
+                .slowDispense(2, 50, TimeUnit.MILLISECONDS)
+                .build();
+
+        stationManager.setPrice(GasType.REGULAR, 1.5);
+
+        GasPump stalledGasPump = new GasPump(GasType.REGULAR, 100);
+        GasPump gasPump = new GasPump(GasType.REGULAR, 100);
+        stationManager.addGasPumps(Arrays.asList(stalledGasPump, gasPump));
+
+        //A customer stuck dispensing on the first gas pump , first fit would make everybody wait for it
+        final ManagedPump stalledPump = stationManager.findManagedPump(stalledGasPump);
+        final CountDownLatch stalled = new CountDownLatch(1);
+        final CountDownLatch recovered = new CountDownLatch(1);
+
+        Thread stuckCustomer = new Thread(new Runnable() {
+            public void run() {
+
+                stalledPump.lock();
+                stalledPump.getHealth().startDispense(System.nanoTime(), 0, 50 * MILLISECOND);
+                stalled.countDown();
+
+                try {
+                    recovered.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+
+                stalledPump.getHealth().endDispense(System.nanoTime(), false, 3);
+                stalledPump.unlock();
+            }
+        });
+        stuckCustomer.start();
+
+        stalled.await();
+        Thread.sleep(100);
+
+        long start = System.nanoTime();
+        for(int i = 0; i < 5; i++){
+            assertEquals(stationManager.buyGas(GasType.REGULAR, 0.1, 2.0), 0.15);
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+
+        List<StationStatistics.PumpStatistics> pumpStatistics = stationManager.getStatistics().getPumpStatistics();
+        assertSame(pumpStatistics.get(0).getCircuitState(), CircuitState.OPEN);
+        assertEquals(pumpStatistics.get(0).getCircuitTrips(), 1);
+        assertEquals(pumpStatistics.get(0).getSales(), 0);
+        assertEquals(pumpStatistics.get(1).getSales(), 5);
+        assertSame(pumpStatistics.get(1).getCircuitState(), CircuitState.CLOSED);
+        assertTrue(pumpStatistics.get(1).getLockHoldNanos() > 0);
+
+        //The stuck customer finishes late , after the open time the next customer probes the gas pump
+        recovered.countDown();
+        stuckCustomer.join();
+        Thread.sleep(250);
+
+        stationManager.buyGas(GasType.REGULAR, 0.1, 2.0);
+
+        pumpStatistics = stationManager.getStatistics().getPumpStatistics();
+        assertSame(pumpStatistics.get(0).getCircuitState(), CircuitState.CLOSED);
+        assertEquals(pumpStatistics.get(0).getSales(), 1);
+        assertEquals(pumpStatistics.get(0).getSlowDispenses(), 1);
+        assertTrue(pumpStatistics.get(0).getMaxLockHoldNanos() >= 100 * MILLISECOND);
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that a gas pump with an open circuit still serves what the healthy gas pumps do not have enough gas for
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testOpenCircuitFallback() throws Exception {
+
+        GasStationManager stationManager = GasStationManager.builder()
+                .dispenseMode(DispenseMode.INSTANT)
+                .circuitBreaker(3, 1, TimeUnit.HOURS)
+                .build();
+
+        stationManager.setPrice(GasType.DIESEL, 1.0);
+
+        GasPump failingGasPump = new GasPump(GasType.DIESEL, 10);
+        GasPump gasPump = new GasPump(GasType.DIESEL, 10);
+        stationManager.addGasPumps(Arrays.asList(failingGasPump, gasPump));
+
+        PumpHealth health = stationManager.findManagedPump(failingGasPump).getHealth();
+        failDispenses(health);
+
+        stationManager.buyGas(GasType.DIESEL, 5, 1.0);
+        assertEquals(stationManager.getInventory().getRemainingAmount(1), 5.0);
+
+        //Only the gas pump with the open circuit has enough gas
+        stationManager.buyGas(GasType.DIESEL, 8, 1.0);
+        assertEquals(stationManager.getInventory().getRemainingAmount(0), 2.0);
+
+        //It dispensed in time , so it is closed again
+        assertSame(health.getState(), CircuitState.CLOSED);
+        failDispenses(health);
+
+        //Batches pack onto healthy gas pumps first too
+        List<PurchaseResult> results = stationManager.buyGasBatch(Arrays.asList(
+                new PurchaseRequest(GasType.DIESEL, 1, 1.0), new PurchaseRequest(GasType.DIESEL, 1, 1.0)));
+        assertTrue(results.get(0).isSold() && results.get(1).isSold());
+        assertEquals(stationManager.getInventory().getRemainingAmount(1), 3.0);
+        assertEquals(stationManager.getInventory().getRemainingAmount(0), 2.0);
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that a gas pump due for a probe stays open while customers are served by other gas pumps , the probe is
+     * only claimed by a customer it serves
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testProbeClaimedWhenServed() throws Exception {
+
+        GasStationManager stationManager = GasStationManager.builder()
+                .dispenseMode(DispenseMode.INSTANT)
+                .circuitBreaker(3, 50, TimeUnit.MILLISECONDS)
+                .build();
+
+        stationManager.setPrice(GasType.DIESEL, 1.0);
+
+        GasPump failingGasPump = new GasPump(GasType.DIESEL, 2);
+        GasPump gasPump = new GasPump(GasType.DIESEL, 10);
+        stationManager.addGasPumps(Arrays.asList(failingGasPump, gasPump));
+
+        PumpHealth health = stationManager.findManagedPump(failingGasPump).getHealth();
+        failDispenses(health);
+        Thread.sleep(60);
+
+        //Due for a probe but without enough gas , the customer is served by the other gas pump
+        stationManager.buyGas(GasType.DIESEL, 5, 1.0);
+        assertEquals(stationManager.getInventory().getRemainingAmount(1), 5.0);
+        assertSame(health.getState(), CircuitState.OPEN);
+        assertTrue(health.isProbeDue(System.nanoTime(), 50 * MILLISECOND));
+
+        //The next customer it has enough gas for probes it and closes it
+        stationManager.buyGas(GasType.DIESEL, 1, 1.0);
+        assertEquals(stationManager.getInventory().getRemainingAmount(0), 1.0);
+        assertSame(health.getState(), CircuitState.CLOSED);
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Fail dispenses until the circuit opens
+     *
+     * @param health
+     */
+    private static void failDispenses(PumpHealth health) {
+
+        for(int i = 0; i < 3; i++){
+            health.startDispense(System.nanoTime(), 0, MILLISECOND);
+            health.endDispense(System.nanoTime(), true, 3);
+        }
+
+        assertSame(health.getState(), CircuitState.OPEN);
+    }
+
+}
@@ -0,0 +1,269 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for refilling gas pumps and the scheduler ordering tanker deliveries
+ */
+public class RefillSchedulerTest extends TestCase {
+
+    /**
+     * Test that a gas pump at its low water mark is filled up to its refill level , together with the other gas
+     * pumps of its type low enough to be topped up
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDeliveryBatchedPerGasType() throws Exception {
+
+        GasStationManager stationManager = new GasStationManager();
+        stationManager.setPrice(GasType.REGULAR, 1.0);
+        stationManager.setPrice(GasType.DIESEL, 1.0);
+
+        GasPump low = new GasPump(GasType.REGULAR, 0.05);
+        GasPump half = new GasPump(GasType.REGULAR, 0.4);
+        GasPump full = new GasPump(GasType.REGULAR, 0.9);
+        GasPump diesel = new GasPump(GasType.DIESEL, 0.5);
+
+        stationManager.addGasPump(low);
+        stationManager.addGasPump(half);
+        stationManager.addGasPump(full);
+        stationManager.addGasPump(diesel);
+
+        RefillScheduler refillScheduler = RefillScheduler.builder(stationManager)
+                .deliveryDelay(1, TimeUnit.HOURS)
+                .build();
+
+        refillScheduler.setRefillLevels(GasType.REGULAR, 0.1, 1.0);
+        refillScheduler.setRefillLevels(diesel, 0.1, 1.0);
+
+        //Only regular reached its low water mark , the full gas pump is not worth a top up
+        assertEquals(refillScheduler.checkNow(), 1);
+        assertEquals(stationManager.getPendingLitres(GasType.REGULAR), 0.95 + 0.6, 0.0005);
+        assertEquals(stationManager.getPendingLitres(GasType.DIESEL), 0.0);
+
+        StationStatistics.PumpStatistics lowStatistics = stationManager.getStatistics().getPumpStatistics().get(0);
+        assertEquals(lowStatistics.getPendingAmount(), 0.95, 0.0005);
+        assertTrue(lowStatistics.isInRotation());
+
+        //Pending gas pumps are not ordered for twice
+        assertEquals(refillScheduler.checkNow(), 0);
+
+        refillScheduler.close();
+        stationManager.shutdown();
+
+        //Delivered right away
+        stationManager = new GasStationManager();
+        stationManager.setPrice(GasType.REGULAR, 1.0);
+        low = new GasPump(GasType.REGULAR, 0.05);
+        half = new GasPump(GasType.REGULAR, 0.4);
+        stationManager.addGasPump(low);
+        stationManager.addGasPump(half);
+
+        refillScheduler = RefillScheduler.builder(stationManager).build();
+        refillScheduler.setRefillLevels(GasType.REGULAR, 0.1, 1.0);
+
+        assertEquals(refillScheduler.checkNow(), 1);
+        refillScheduler.close();
+        awaitDeliveries(refillScheduler, 1);
+
+        assertEquals(refillScheduler.getDeliveredLitres(), 1.55, 0.0005);
+        assertEquals(stationManager.getInventory().getRemainingAmount(0), 1.0, 0.0005);
+        assertEquals(stationManager.getInventory().getRemainingAmount(1), 1.0, 0.0005);
+        assertEquals(stationManager.getAvailableLitres(GasType.REGULAR), 2.0, 0.0005);
+        assertEquals(stationManager.getPendingLitres(GasType.REGULAR), 0.0);
+
+        //The refilled gas serves customers
+        assertEquals(stationManager.buyGas(GasType.REGULAR, 0.9, 1.0), 0.9, 0.0005);
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that a gas pump is out of rotation while refilled and the scheduler keeps checking once started
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testOutOfRotationWhileRefilled() throws Exception {
+
+        GasStationManager stationManager = new GasStationManager();
+        stationManager.setPrice(GasType.SUPER, 1.0);
+
+        GasPump refilled = new GasPump(GasType.SUPER, 0.05);
+        GasPump other = new GasPump(GasType.SUPER, 0.5);
+        stationManager.addGasPump(refilled);
+        stationManager.addGasPump(other);
+
+        //Refilling a litre takes 300 milliseconds
+        RefillScheduler refillScheduler = RefillScheduler.builder(stationManager)
+                .checkInterval(10, TimeUnit.MILLISECONDS)
+                .refillSecondsPerLitre(0.3)
+                .topUpFraction(0)
+                .build();
+
+        refillScheduler.setRefillLevels(refilled, 0.1, 1.05);
+        refillScheduler.start();
+
+        ManagedPump managedPump = stationManager.getManagedPumps(GasType.SUPER).get(0);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while(managedPump.isInRotation() && System.nanoTime() < deadline){
+            Thread.yield();
+        }
+        assertFalse(managedPump.isInRotation());
+
+        //The other gas pump serves customers meanwhile , the refilled one none
+        assertEquals(stationManager.tryBuyGas(GasType.SUPER, 0.01, 1.0).getPriceToPay(), 0.01, 0.0005);
+        assertEquals(other.getRemainingAmount(), 0.49, 0.0005);
+        assertSame(stationManager.tryBuyGas(GasType.SUPER, 0.6, 1.0), PurchaseResult.NOT_ENOUGH_GAS);
+
+        awaitDeliveries(refillScheduler, 1);
+        refillScheduler.close();
+
+        assertTrue(managedPump.isInRotation());
+        assertEquals(stationManager.getInventory().getRemainingAmount(0), 1.05, 0.0005);
+        assertEquals(refillScheduler.getNumberOfDeliveries(), 1);
+        assertEquals(stationManager.tryBuyGas(GasType.SUPER, 0.6, 1.0).getPriceToPay(), 0.6, 0.0005);
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that delivered gas survives a snapshot and invalid refills are rejected
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRefillSnapshotAndInvalid() throws Exception {
+
+        GasStationManager stationManager = new GasStationManager();
+        stationManager.setPrice(GasType.DIESEL, 1.0);
+
+        GasPump pump = new GasPump(GasType.DIESEL, 0.2);
+        stationManager.addGasPump(pump);
+        stationManager.buyGas(GasType.DIESEL, 0.1, 1.0);
+        stationManager.refillGasPump(pump, 2.5);
+
+        assertEquals(stationManager.getInventory().getRemainingAmount(0), 2.6, 0.0005);
+
+        GasStationManager restored = GasStationManager.restore(stationManager.export());
+        assertEquals(restored.getGasPumps().iterator().next().getRemainingAmount(), 2.6, 0.0005);
+        assertEquals(restored.getAvailableLitres(GasType.DIESEL), 2.6, 0.0005);
+        assertEquals(restored.getStatistics().getPumpStatistics().get(0).getLitresDispensed(), 0.1, 0.0005);
+
+        try {
+            stationManager.refillGasPump(new GasPump(GasType.DIESEL, 1), 1.0);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // not part of the gas station
+        }
+
+        try {
+            stationManager.refillGasPump(pump, 0);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // nothing to deliver
+        }
+
+        RefillScheduler refillScheduler = RefillScheduler.builder(stationManager).build();
+
+        try {
+            refillScheduler.setRefillLevels(pump, 1.0, 1.0);
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // low water mark not below the refill level
+        }
+
+        refillScheduler.close();
+        restored.shutdown();
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that a failed refill does not stop the other gas pumps of the delivery and clears their pending litres
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFailedRefill() throws Exception {
+
+        final AtomicBoolean failing = new AtomicBoolean();
+
+        GasStationManager stationManager = new GasStationManager() {
+            @Override
+            void deliverGas(ManagedPump managedPump, long milliLitres, long refillNanos) {
+                if(failing.get()){
+                    throw new IllegalStateException("Tanker broke down");
+                }
+                super.deliverGas(managedPump, milliLitres, refillNanos);
+            }
+        };
+        stationManager.setPrice(GasType.REGULAR, 1.0);
+        stationManager.addGasPump(new GasPump(GasType.REGULAR, 0.05));
+        stationManager.addGasPump(new GasPump(GasType.REGULAR, 0.05));
+
+        RefillScheduler refillScheduler = RefillScheduler.builder(stationManager)
+                .deliveryDelay(200, TimeUnit.MILLISECONDS)
+                .build();
+        refillScheduler.setRefillLevels(GasType.REGULAR, 0.1, 1.0);
+
+        assertEquals(refillScheduler.checkNow(), 1);
+
+        //Both refills fail when the tanker arrives
+        failing.set(true);
+        awaitDeliveries(refillScheduler, 1);
+        refillScheduler.close();
+
+        assertEquals(refillScheduler.getNumberOfFailedRefills(), 2);
+        assertEquals(refillScheduler.getDeliveredLitres(), 0.0);
+        assertEquals(stationManager.getPendingLitres(GasType.REGULAR), 0.0);
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that a refill keeps the interrupt of the thread and is only kept in the ledger of the gas station
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRefillKeepsInterrupt() throws Exception {
+
+        GasStationManager stationManager = new GasStationManager();
+        stationManager.setPrice(GasType.SUPER, 1.0);
+
+        GasPump pump = new GasPump(GasType.SUPER, 1.0);
+        stationManager.addGasPump(pump);
+
+        Thread.currentThread().interrupt();
+        stationManager.refillGasPump(pump, 0.005);
+
+        assertTrue(Thread.interrupted());
+        assertEquals(pump.getRemainingAmount(), 1.0);
+        assertEquals(stationManager.getInventory().getRemainingAmount(0), 1.005, 0.0005);
+        assertEquals(stationManager.getAvailableLitres(GasType.SUPER), 1.005, 0.0005);
+
+        stationManager.shutdown();
+    }
+
+    private static void awaitDeliveries(RefillScheduler refillScheduler, long deliveries) throws InterruptedException {
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+
+        while(refillScheduler.getNumberOfDeliveries() < deliveries && System.nanoTime() < deadline){
+            Thread.sleep(5);
+        }
+
+        assertEquals(refillScheduler.getNumberOfDeliveries(), deliveries);
+    }
+
+}
@@ -0,0 +1,178 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for snapshots of gas stations
+ */
+public class StationSnapshotTest extends TestCase {
+
+    /**
+     * Test that prices , gas pumps and counters survive a snapshot and its binary format
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExportAndRestore() throws Exception {
+
+        GasStationManager stationManager = new GasStationManager();
+
+        stationManager.setPrice(GasType.REGULAR, 0.5);
+        stationManager.setPrice(GasType.DIESEL, 1.25);
+        stationManager.addGasPump(new GasPump(GasType.REGULAR, 100));
+        stationManager.addGasPump(new GasPump(GasType.REGULAR, 20));
+        stationManager.addGasPump(new GasPump(GasType.DIESEL, 50));
+
+        for(int i = 1; i <= 10; i++){
+            stationManager.buyGas(GasType.REGULAR, 0.01 * i, 0.5);
+        }
+        assertSame(stationManager.tryBuyGas(GasType.DIESEL, 0.1, 1.0), PurchaseResult.GAS_TOO_EXPENSIVE);
+        assertSame(stationManager.tryBuyGas(GasType.DIESEL, 60, 2.0), PurchaseResult.NOT_ENOUGH_GAS);
+        GasStationTestSupport.timeOutOnBusyGasPump(stationManager, GasType.DIESEL);
+        stationManager.setPrice(GasType.REGULAR, 0.75);
+
+        StationSnapshot snapshot = StationSnapshot.fromByteArray(stationManager.export().toByteArray());
+        GasStationManager restored = GasStationManager.restore(snapshot);
+
+        assertEquals(restored.getRevenue(), stationManager.getRevenue());
+        assertEquals(restored.getNumberOfSales(), stationManager.getNumberOfSales());
+        assertEquals(restored.getNumberOfCancellationsNoGas(), 1);
+        assertEquals(restored.getNumberOfCancellationsTooExpensive(), 1);
+        assertEquals(restored.getNumberOfCancellationsTimedOut(), 1);
+        assertEquals(restored.getPriceTable().toString(), stationManager.getPriceTable().toString());
+
+        List<StationStatistics.PumpStatistics> restoredPumps = restored.getStatistics().getPumpStatistics();
+        List<StationStatistics.PumpStatistics> originalPumps = stationManager.getStatistics().getPumpStatistics();
+
+        assertEquals(restoredPumps.size(), 3);
+
+        for(int i = 0; i < originalPumps.size(); i++){
+            assertEquals(restoredPumps.get(i).getGasType(), originalPumps.get(i).getGasType());
+            assertEquals(restoredPumps.get(i).getGasPump().getRemainingAmount(), originalPumps.get(i).getGasPump().getRemainingAmount(), 0.0005);
+            assertEquals(restoredPumps.get(i).getSales(), originalPumps.get(i).getSales());
+            assertEquals(restoredPumps.get(i).getRevenue(), originalPumps.get(i).getRevenue());
+            assertEquals(restoredPumps.get(i).getLockWaitNanos(), originalPumps.get(i).getLockWaitNanos());
+            assertEquals(restoredPumps.get(i).getSlowDispenses(), originalPumps.get(i).getSlowDispenses());
+            assertEquals(restoredPumps.get(i).getCircuitTrips(), originalPumps.get(i).getCircuitTrips());
+            assertEquals(restoredPumps.get(i).getDispenseDeviationNanos(), originalPumps.get(i).getDispenseDeviationNanos());
+            assertEquals(restoredPumps.get(i).getLockHoldNanos(), originalPumps.get(i).getLockHoldNanos());
+            assertEquals(restoredPumps.get(i).getMaxLockHoldNanos(), originalPumps.get(i).getMaxLockHoldNanos());
+        }
+
+        //The diesel gas pump was held by another customer
+        assertTrue(restoredPumps.get(2).getLockHoldNanos() > 0);
+        assertEquals(restored.getStatistics().getGasTypeStatistics(GasType.REGULAR).getLockWaitNanos(),
+                stationManager.getStatistics().getGasTypeStatistics(GasType.REGULAR).getLockWaitNanos());
+
+        //The restored gas station carries on independently
+        assertEquals(restored.buyGas(GasType.DIESEL, 1.0, 2.0), 1.25);
+        assertEquals(stationManager.getStatistics().getGasTypeStatistics().get(GasType.DIESEL).getSales(), 0);
+
+        restored.shutdown();
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that snapshots taken while customers buy gas never see a sale half counted
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testExportDuringPurchases() throws Exception {
+
+        final GasStationManager stationManager = new GasStationManager(PumpSelectionMode.TRY_LOCK);
+
+        stationManager.setPrice(GasType.REGULAR, 1.0);
+        for(int i = 0; i < 4; i++){
+            stationManager.addGasPump(new GasPump(GasType.REGULAR, 10000));
+        }
+
+        final AtomicBoolean buying = new AtomicBoolean(true);
+        List<Thread> customers = new ArrayList<Thread>();
+
+        for(int i = 0; i < 4; i++){
+            Thread customer = new Thread(new Runnable() {
+                public void run() {
+                    while(buying.get()){
+                        stationManager.tryBuyGas(GasType.REGULAR, 0.001, 1.0);
+                    }
+                }
+            });
+            customer.start();
+            customers.add(customer);
+        }
+
+        long previousSales = 0;
+
+        for(int i = 0; i < 200; i++){
+
+            GasStationManager restored = GasStationManager.restore(stationManager.export());
+            StationStatistics statistics = restored.getStatistics();
+
+            long sales = 0;
+            long milliLitres = 0;
+            for(StationStatistics.PumpStatistics pumpStatistics : statistics.getPumpStatistics()){
+                sales += pumpStatistics.getSales();
+                milliLitres += ManagedPump.toMilliLitres(pumpStatistics.getLitresDispensed());
+                assertEquals(pumpStatistics.getGasPump().getRemainingAmount() + pumpStatistics.getLitresDispensed(), 10000.0, 0.0005);
+            }
+
+            StationStatistics.GasTypeStatistics regular = statistics.getGasTypeStatistics().get(GasType.REGULAR);
+
+            assertEquals(regular.getSales(), sales);
+            assertEquals(ManagedPump.toMilliLitres(regular.getLitresDispensed()), milliLitres);
+            assertEquals(restored.getRevenue(), milliLitres / 1000.0, 0.0005);
+            assertTrue(sales >= previousSales);
+
+            previousSales = sales;
+            restored.shutdown();
+        }
+
+        buying.set(false);
+        for(Thread customer : customers){
+            customer.join();
+        }
+
+        assertEquals(GasStationManager.restore(stationManager.export()).getNumberOfSales(), stationManager.getNumberOfSales());
+
+        stationManager.shutdown();
+    }
+
+    /**
+     * Test that bytes which are not a snapshot are rejected
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testInvalidSnapshot() throws Exception {
+
+        try {
+            StationSnapshot.fromByteArray(new byte[] {1, 2, 3, 4, 5});
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // no magic
+        }
+
+        byte[] data = new GasStationManager().export().toByteArray();
+        byte[] truncated = new byte[data.length - 1];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+        try {
+            GasStationManager.restore(StationSnapshot.fromByteArray(truncated));
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // last gas pump count missing
+        }
+    }
+
+}
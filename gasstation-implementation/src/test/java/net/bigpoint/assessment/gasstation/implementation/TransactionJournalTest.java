@@ -0,0 +1,266 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ *
+ * Tests for rebuilding gas stations from their journal
+ */
+public class TransactionJournalTest extends TestCase {
+
+    //Small segments so a few purchases fill several of them
+    private final static int RECORDS_PER_SEGMENT = 16;
+
+    private Path directory;
+
+    @Override
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("gas-station-journal");
+    }
+
+    @Override
+    public void tearDown() throws IOException {
+        for(String file : files()){
+            Files.delete(directory.resolve(file));
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Test that prices , gas pumps , deliveries and counters survive a restart , also after compaction
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRestart() throws Exception {
+
+        TransactionJournal journal = openJournal();
+        GasStationManager stationManager = GasStationManager.builder().journal(journal).build();
+
+        stationManager.setPrice(GasType.REGULAR, 0.5);
+        stationManager.setPrice(GasType.DIESEL, 1.25);
+        stationManager.addGasPump(new GasPump(GasType.REGULAR, 100));
+        GasPump diesel = new GasPump(GasType.DIESEL, 50);
+        stationManager.addGasPump(diesel);
+
+        for(int i = 1; i <= 30; i++){
+            stationManager.buyGas(GasType.REGULAR, 0.01 * i, 0.5);
+        }
+
+        assertSame(stationManager.tryBuyGas(GasType.DIESEL, 0.1, 1.0), PurchaseResult.GAS_TOO_EXPENSIVE);
+        assertSame(stationManager.tryBuyGas(GasType.DIESEL, 60, 2.0), PurchaseResult.NOT_ENOUGH_GAS);
+        GasStationTestSupport.timeOutOnBusyGasPump(stationManager, GasType.DIESEL);
+        stationManager.setPrice(GasType.REGULAR, 0.75);
+        stationManager.refillGasPump(diesel, 25);
+
+        journal.awaitCommitted();
+        assertEquals(journal.getCommittedRecords(), journal.getAppendedRecords());
+
+        journal.close();
+        stationManager.shutdown();
+
+        //Restarts from the segments
+        journal = openJournal();
+        GasStationManager restored = GasStationManager.builder().journal(journal).build();
+        assertRestored(restored, stationManager);
+
+        assertEquals(restored.buyGas(GasType.DIESEL, 1.0, 2.0), 1.25);
+
+        //Restarts from a checkpoint and the segment written after it
+        journal.compact();
+        journal.close();
+        restored.shutdown();
+
+        assertTrue(files().get(0).startsWith("checkpoint-"));
+
+        journal = openJournal();
+        GasStationManager compacted = GasStationManager.builder().journal(journal).build();
+        assertRestored(compacted, restored);
+
+        journal.close();
+        compacted.shutdown();
+    }
+
+    /**
+     * Test that replay stops at a record torn by a crash
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testTornRecord() throws Exception {
+
+        TransactionJournal journal = openJournal();
+        GasStationManager stationManager = GasStationManager.builder().journal(journal).build();
+
+        stationManager.setPrice(GasType.SUPER, 1.0);
+        stationManager.addGasPump(new GasPump(GasType.SUPER, 10));
+        stationManager.buyGas(GasType.SUPER, 0.5, 1.0);
+        stationManager.buyGas(GasType.SUPER, 0.5, 1.0);
+
+        journal.close();
+        stationManager.shutdown();
+
+        //Flips a bit of the last sale
+        try (FileChannel segment = FileChannel.open(directory.resolve(files().get(0)), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), 3 * TransactionJournal.RECORD_SIZE + 8);
+        }
+
+        journal = openJournal();
+        GasStationManager restored = GasStationManager.builder().journal(journal).build();
+
+        assertEquals(restored.getNumberOfSales(), 1);
+        assertEquals(restored.getGasPumps().iterator().next().getRemainingAmount(), 9.5);
+
+        journal.close();
+        restored.shutdown();
+    }
+
+    /**
+     * Test that opening a journal without appending to it leaves no segment behind
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReopenWithoutAppending() throws Exception {
+
+        TransactionJournal journal = openJournal();
+        GasStationManager stationManager = GasStationManager.builder().journal(journal).build();
+        stationManager.setPrice(GasType.SUPER, 1.0);
+
+        journal.close();
+        stationManager.shutdown();
+
+        for(int i = 0; i < 3; i++){
+            journal = openJournal();
+            GasStationManager.builder().journal(journal).build().shutdown();
+            journal.close();
+        }
+
+        assertEquals(files().size(), 1);
+
+        journal = openJournal();
+        GasStationManager restored = GasStationManager.builder().journal(journal).build();
+        assertEquals(restored.getPrice(GasType.SUPER), 1.0);
+
+        journal.close();
+        restored.shutdown();
+    }
+
+    /**
+     * Test that a sale made after the journal was closed still succeeds , its record is dropped and counted
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testSaleAfterClose() throws Exception {
+
+        TransactionJournal journal = openJournal();
+        GasStationManager stationManager = GasStationManager.builder().journal(journal).build();
+        stationManager.setPrice(GasType.SUPER, 1.0);
+        stationManager.addGasPump(new GasPump(GasType.SUPER, 10));
+
+        journal.close();
+
+        assertEquals(stationManager.buyGas(GasType.SUPER, 1.0, 1.0), 1.0);
+        assertEquals(stationManager.getNumberOfSales(), 1);
+        assertEquals(journal.getDroppedRecords(), 1);
+        assertEquals(journal.getCommittedRecords(), journal.getAppendedRecords());
+
+        stationManager.shutdown();
+
+        //The sale is not replayed
+        journal = openJournal();
+        GasStationManager restored = GasStationManager.builder().journal(journal).build();
+        assertEquals(restored.getNumberOfSales(), 0);
+        assertEquals(restored.getGasPumps().iterator().next().getRemainingAmount(), 10.0);
+
+        journal.close();
+        restored.shutdown();
+    }
+
+    /**
+     * Test that replaying a sale of a gas pump that was never added fails as a corrupt journal
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecordOfUnknownGasPump() throws Exception {
+
+        TransactionJournal journal = openJournal();
+        journal.appendTransaction(TransactionLog.Kind.SALE, GasType.SUPER, 3, 1000, 100);
+        journal.close();
+
+        journal = openJournal();
+
+        try {
+            GasStationManager.builder().journal(journal).build();
+            fail("Expected InvalidParameterException");
+        } catch (InvalidParameterException ex) {
+            // the add record of gas pump 3 is missing
+        }
+
+        journal.close();
+    }
+
+    private TransactionJournal openJournal() throws IOException {
+        return new TransactionJournal(directory, RECORDS_PER_SEGMENT, 5, TimeUnit.MILLISECONDS);
+    }
+
+    private void assertRestored(GasStationManager restored, GasStationManager original) {
+
+        assertEquals(restored.getRevenue(), original.getRevenue());
+        assertEquals(restored.getNumberOfSales(), original.getNumberOfSales());
+        assertEquals(restored.getNumberOfCancellationsNoGas(), original.getNumberOfCancellationsNoGas());
+        assertEquals(restored.getNumberOfCancellationsTooExpensive(), original.getNumberOfCancellationsTooExpensive());
+        assertEquals(restored.getNumberOfCancellationsTimedOut(), original.getNumberOfCancellationsTimedOut());
+        assertEquals(restored.getPriceTable().toString(), original.getPriceTable().toString());
+
+        List<StationStatistics.PumpStatistics> restoredPumps = restored.getStatistics().getPumpStatistics();
+        List<StationStatistics.PumpStatistics> originalPumps = original.getStatistics().getPumpStatistics();
+
+        assertEquals(restoredPumps.size(), originalPumps.size());
+
+        for(int i = 0; i < originalPumps.size(); i++){
+            assertEquals(restoredPumps.get(i).getGasType(), originalPumps.get(i).getGasType());
+            assertEquals(restoredPumps.get(i).getAvailableAmount(), originalPumps.get(i).getAvailableAmount());
+            assertEquals(restoredPumps.get(i).getSales(), originalPumps.get(i).getSales());
+            assertEquals(restoredPumps.get(i).getRevenue(), originalPumps.get(i).getRevenue());
+        }
+    }
+
+    /**
+     * Names of the journal files , lowest first
+     */
+    private List<String> files() throws IOException {
+
+        List<String> names = new ArrayList<String>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for(Path file : files){
+                names.add(file.getFileName().toString());
+            }
+        }
+
+        Collections.sort(names);
+
+        return names;
+    }
+
+}
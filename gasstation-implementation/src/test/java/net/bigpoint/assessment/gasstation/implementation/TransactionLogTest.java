@@ -0,0 +1,116 @@
+package net.bigpoint.assessment.gasstation.implementation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+import net.bigpoint.assessment.gasstation.GasPump;
+import net.bigpoint.assessment.gasstation.GasType;
+import net.bigpoint.assessment.gasstation.exceptions.GasTooExpensiveException;
+import net.bigpoint.assessment.gasstation.exceptions.NotEnoughGasException;
+import org.junit.Test;
+
+/**
+ *
+ * @author limanadamu
+ * 
+ * Tests for the asynchronous transaction log
+ */
+public class TransactionLogTest extends TestCase {
+    
+    private Logger logger;
+    
+    private List<String> messages;
+    
+    @Override
+    public void setUp(){
+        
+        messages = new CopyOnWriteArrayList<String>();
+        
+        logger = Logger.getLogger(TransactionLogTest.class.getName());
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.INFO);
+        logger.addHandler(new Handler() {
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+            public void flush() {
+            }
+            public void close() {
+            }
+        });
+    }
+    
+    /**
+     * Test that sales and both kinds of cancellations are written in order
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testTransactionsWritten() throws Exception{
+        
+        TransactionLog transactionLog = new TransactionLog(logger);
+        GasStationManager stationManager = createStation(transactionLog);
+        
+        stationManager.buyGas(GasType.REGULAR, 0.5, 1.0);
+        
+        try {
+            stationManager.buyGas(GasType.REGULAR, 0.5, 0.25);
+            fail("Expected GasTooExpensiveException");
+        } catch (GasTooExpensiveException ex) {
+            // logged
+        }
+        
+        try {
+            stationManager.buyGas(GasType.REGULAR, 100, 1.0);
+            fail("Expected NotEnoughGasException");
+        } catch (NotEnoughGasException ex) {
+            // logged
+        }
+        
+        transactionLog.close();
+        
+        assertEquals(messages.size(), 3);
+        assertTrue(messages.get(0).contains("SALE REGULAR 0.500 litres , price to pay 0.500"));
+        assertTrue(messages.get(1).contains("CANCELLED_TOO_EXPENSIVE REGULAR 0.500 litres , maximum price per litre 0.250"));
+        assertTrue(messages.get(2).contains("CANCELLED_NO_GAS REGULAR 100.000 litres"));
+        assertEquals(transactionLog.getDropped(), 0);
+    }
+    
+    /**
+     * Test that nothing is recorded while the level is not loggable
+     * 
+     * @throws Exception 
+     */
+    @Test
+    public void testLevelGuard() throws Exception{
+        
+        logger.setLevel(Level.WARNING);
+        
+        TransactionLog transactionLog = new TransactionLog(logger);
+        GasStationManager stationManager = createStation(transactionLog);
+        
+        assertFalse(transactionLog.isEnabled());
+        
+        stationManager.buyGas(GasType.REGULAR, 0.5, 1.0);
+        
+        transactionLog.close();
+        
+        assertTrue(messages.isEmpty());
+    }
+    
+    private GasStationManager createStation(TransactionLog transactionLog){
+        
+        GasStationManager stationManager = GasStationManager.builder()
+                .transactionLog(transactionLog)
+                .build();
+        stationManager.setPrice(GasType.REGULAR, 1.0);
+        stationManager.addGasPump(new GasPump(GasType.REGULAR, 10));
+        
+        return stationManager;
+    }
+    
+}